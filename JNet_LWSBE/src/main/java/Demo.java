@@ -23,6 +23,7 @@ import org.lwjgl.opengl.GL11;
 import jnet.JNet;
 import jnet.physic.PhysicSolver;
 import jnet.physic.PhysicWorld;
+import jnet.physic.SnapshotBuffer;
 import jnet.physic.SoftBody;
 import jnet.physic.SoftBody.Constrain;
 import jnet.render.ShapeBeamRenderer;
@@ -149,19 +150,20 @@ public class Demo {
 		this.world.addJoint(joint);
 		
 		this.solver = JNet.setupSolver(world);
+		this.solver.setSnapshotBuffer(new SnapshotBuffer());
 		
 		glfwSetKeyCallback(window, (window, key, scancode, action, mods) -> {
 			if (key == GLFW_KEY_RIGHT) {
-				this.world.getSoftBodys().get(0).getConstrains().get(3).pointA.acceleration.x += 200F;
+				this.world.getSoftBodys().get(0).getConstrains().get(3).pointA.addAcceleration(200F, 0);
 				
 			} else if (key == GLFW_KEY_LEFT) {
-				this.world.getSoftBodys().get(0).getConstrains().get(8).pointA.acceleration.x -= 200F;
+				this.world.getSoftBodys().get(0).getConstrains().get(8).pointA.addAcceleration(-200F, 0);
 				
 			} else if (key == GLFW_KEY_UP) {
-				this.world.getSoftBodys().get(0).getConstrains().get(26).pointA.acceleration.y += 200F;
+				this.world.getSoftBodys().get(0).getConstrains().get(26).pointA.addAcceleration(0, 200F);
 				
 			} else if (key == GLFW_KEY_DOWN) {
-				this.world.getSoftBodys().get(0).getConstrains().get(9).pointA.acceleration.y -= 200F;
+				this.world.getSoftBodys().get(0).getConstrains().get(9).pointA.addAcceleration(0, -200F);
 				
 			} else if (key == GLFW.GLFW_KEY_Q) {
 				if (!pressed) {
@@ -170,7 +172,8 @@ public class Demo {
 				}
 			} else if (key == GLFW.GLFW_KEY_S) {
 				if (!pressed) {
-					this.solver.solve(1 / 10F);
+					// Only the physic thread may run the solver, the step is performed in its next tick
+					this.singleStep = true;
 					this.pressed = true;
 				}
 			} else {
@@ -182,6 +185,7 @@ public class Demo {
 	
 	protected boolean pressed;
 	protected boolean run;
+	protected volatile boolean singleStep;
 	
 	public void renderTick() {
 		
@@ -194,13 +198,8 @@ public class Demo {
 		GL11.glPushMatrix();
 		GL11.glColor4f(1, 1, 1, 1);
 		
-		this.world.getSoftBodys().forEach((shape) -> {
-
-			this.renderer.drawShape(shape);
-			
-		});
-		
-		this.renderer.drawJoints(world);
+		// The physic thread changes the Particles, only the published snapshot (with its interpolation factor) is safe to read
+		this.renderer.drawSnapshot(this.solver.getSnapshotBuffer().acquire());
 		
 		GL11.glPopMatrix();
 		
@@ -208,9 +207,19 @@ public class Demo {
 		
 	}
 	
+	protected long lastTick = System.nanoTime();
+	
 	public void physicTick() {
 		
-		if (run) this.solver.solve(1 / 10F);
+		// The simulation runs 10 time units per second
+		long time = System.nanoTime();
+		if (run) this.solver.step((time - this.lastTick) / 1000000000D * 10);
+		this.lastTick = time;
+		
+		if (this.singleStep) {
+			this.singleStep = false;
+			this.solver.solve(1 / 10F);
+		}
 		
 	}
 	
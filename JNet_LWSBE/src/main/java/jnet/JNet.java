@@ -2,8 +2,10 @@ package jnet;
 
 import java.awt.Color;
 
+import jnet.physic.ISegmentKernel;
 import jnet.physic.PhysicSolver;
 import jnet.physic.PhysicWorld;
+import jnet.physic.ScalarSegmentKernel;
 import jnet.render.ShapeBeamRenderer;
 import jnet.shapefactory.Material;
 import jnet.shapefactory.ShapeFactory;
@@ -25,6 +27,36 @@ public class JNet {
 	
 	/** The default number of iterations used in the PhysicSolver **/
 	public static final int DEFAULT_NUM_ITTERATIONS = 20;
+	/** The default minimal number of iterations, if the PhysicSolver uses an adaptive number of iterations **/
+	public static final int DEFAULT_MIN_ITTERATIONS = 2;
+	/** The default tolerance for the length error of the Constrains (relative to their length), if the PhysicSolver uses an adaptive number of iterations **/
+	public static final double DEFAULT_LENGTH_TOLERANCE = 0.001;
+	/** The default tolerance for the depth of the collisions, if the PhysicSolver uses an adaptive number of iterations **/
+	public static final double DEFAULT_DEPTH_TOLERANCE = 0.01;
+	/** The default collision category of all SoftBodys, the bits of the layers the SoftBody belongs to **/
+	public static final int DEFAULT_COLLISION_CATEGORY = 0x00000001;
+	/** The default collision mask of all SoftBodys, the bits of the layers the SoftBody collides with **/
+	public static final int DEFAULT_COLLISION_MASK = 0xFFFFFFFF;
+	/** The default part of the collision-corrections of the last step that is applied at the start of the next step (warm start), 0 disables the contact cache, so the warm start is off unless enabled **/
+	public static final float DEFAULT_WARM_START_FACTOR = 0F;
+	/** The default number of steps a collision is kept in the contact cache, after it was solved the last time **/
+	public static final int DEFAULT_CONTACT_LIFETIME = 3;
+	/** The default maximal distance of two nodes of a Shape that are welded together by the ShapeFactory, 0 welds only nodes at exactly the same position **/
+	public static final double DEFAULT_WELD_TOLERANCE = 0;
+	/** The default maximal distance of the ParticleDefinitions to the searched position, used by Shape.searchNode() and Shape.searchBeam() **/
+	public static final double DEFAULT_SEARCH_TOLERANCE = 0;
+	/** The default cell size of the collision grid used in the PhysicSolver **/
+	public static final double DEFAULT_GRID_CELL_SIZE = 100;
+	/** The default minimal number of Constrains per task, if the PhysicSolver solves the Constrains in parallel **/
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+	/** The default motion per step under that a Particle counts as resting, used by the PhysicSolver to put SoftBodys to sleep, 0 disables the sleeping (it has to be enabled with PhysicSolver.setSleepThreshold()) **/
+	public static final double DEFAULT_SLEEP_THRESHOLD = 0;
+	/** The default number of steps that all Particles of a SoftBody have to rest, before it is put to sleep **/
+	public static final int DEFAULT_SLEEP_STEPS = 60;
+	/** The default size of the fixed simulation-steps, used by the PhysicSolver if it is stepped with the elapsed time **/
+	public static final float DEFAULT_FIXED_TIME_STEP = 1 / 10F;
+	/** The default maximal number of fixed simulation-steps per call, if the PhysicSolver is stepped with the elapsed time **/
+	public static final int DEFAULT_MAX_SUB_STEPS = 5;
 	
 	/**
 	 * Creates a new PhysicSolver for the given world, with default parameters. The Solver handles the physic-simulation. This is only a helper method, the solver can also created manually.
@@ -35,6 +67,23 @@ public class JNet {
 		return new PhysicSolver(world);
 	}
 	
+	/**
+	 * Creates the fastest ISegmentKernel that is available, the VectorSegmentKernel if its jar (classifier 'vector') is on the classpath and the jdk.incubator.vector module is enabled (--add-modules jdk.incubator.vector) and the ScalarSegmentKernel otherwise.
+	 * This is used by the PhysicSolver by default.
+	 * @return A new ISegmentKernel
+	 */
+	public static ISegmentKernel setupSegmentKernel() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				// Loaded by name, so the class is not linked if the module or the vector jar is not available
+				return (ISegmentKernel) Class.forName("jnet.physic.VectorSegmentKernel").getConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// Fall back to the scalar kernel
+			}
+		}
+		return new ScalarSegmentKernel();
+	}
+	
 	/**
 	 * Creates a new PhysicWorld to hold all SoftBodys to simulate. Every world needs a PhysicSolver to simulate. This is only a helper method, the world can also created manually.
 	 * @param gravity The gravity (also called global-force) for the world, it can be changes every time.
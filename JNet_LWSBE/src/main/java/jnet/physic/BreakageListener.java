@@ -0,0 +1,31 @@
+package jnet.physic;
+
+import jnet.physic.SoftBody.Constrain;
+
+/**
+ * An abstract class to extend from that receives all Constrains and Joints that broke in a PhysicWorld.
+ * The events are sent at the end of the simulation-step, after the broken Constrains have been moved out of the Constrain-list of their SoftBody (see SoftBody.getBrokenConstrains()) or out of the Joints of the PhysicWorld.
+ * @author M_Marvin
+ *
+ */
+public abstract class BreakageListener {
+	
+	/**
+	 * Called when a Constrain of a SoftBody has broken
+	 * @param body The SoftBody of the Constrain
+	 * @param constrain The broken Constrain
+	 */
+	public abstract void constrainBroken(SoftBody body, Constrain constrain);
+	
+	/**
+	 * Called when a Joint of the PhysicWorld has broken, it is no longer part of the world
+	 * @param joint The broken Joint
+	 */
+	public abstract void jointBroken(Constrain joint);
+	
+	public static class DummyListener extends BreakageListener {
+		public void constrainBroken(SoftBody body, Constrain constrain) {}
+		public void jointBroken(Constrain joint) {}
+	}
+	
+}
@@ -0,0 +1,281 @@
+package jnet.physic;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jnet.physic.SoftBody.Constrain;
+
+/**
+ * A uniform grid that is used by the PhysicSolver as broad-phase for the Particle-Constrain collisions.
+ * Every Constrain is inserted in all cells that are covered by its swept bounding-box (the current and the last positions of both of its Particles), padded by the motion of its Particles.
+ * A query with the swept bounding-box of a Particle then only returns the Constrains that are near enough to collide with it.
+ * The cells are stored in a hash-table, so the grid has no bounds and only occupied cells use memory.
+ * @author M_Marvin
+ *
+ */
+public class CollisionGrid {
+
+	protected static final int INITIAL_CAPACITY = 256;
+	/** The largest cell coordinate, the loops over the cells would never end at Integer.MAX_VALUE **/
+	protected static final int MAX_CELL = Integer.MAX_VALUE - 1;
+
+	protected double cellSize;
+
+	// Hash-table of the occupied cells, a slot is only valid if its stamp matches the current build
+	protected long[] cellKeys;
+	protected int[] cellHeads;
+	protected int[] cellStamps;
+	protected int cellCount;
+	protected int buildStamp;
+
+	// Linked lists of the entries in the cells
+	protected Constrain[] entryConstrains;
+	protected SoftBody[] entryBodies;
+	protected int[] entryIndices;
+	protected int[] entryMinCellX;
+	protected int[] entryMinCellY;
+	protected int[] entryNext;
+	protected int entryCount;
+
+	public CollisionGrid(double cellSize) {
+		setCellSize(cellSize);
+		this.cellKeys = new long[INITIAL_CAPACITY];
+		this.cellHeads = new int[INITIAL_CAPACITY];
+		this.cellStamps = new int[INITIAL_CAPACITY];
+		this.entryConstrains = new Constrain[INITIAL_CAPACITY];
+		this.entryBodies = new SoftBody[INITIAL_CAPACITY];
+		this.entryIndices = new int[INITIAL_CAPACITY];
+		this.entryMinCellX = new int[INITIAL_CAPACITY];
+		this.entryMinCellY = new int[INITIAL_CAPACITY];
+		this.entryNext = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Changes the size of the cells, takes effect on the next rebuild of the grid
+	 * @param cellSize The edge length of a single cell
+	 * @throws RuntimeException of an IllegalArgumentException if the size is not positive
+	 */
+	public void setCellSize(double cellSize) {
+		if (!(cellSize > 0)) throw new RuntimeException(new IllegalArgumentException("The cell size of the CollisionGrid has to be positive!"));
+		this.cellSize = cellSize;
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Removes all Constrains from the grid, the allocated memory is kept for the next build
+	 */
+	public void clear() {
+		this.buildStamp++;
+		if (this.buildStamp == 0) {
+			// Stamp overflow, old slots could become valid again
+			for (int i = 0; i < this.cellStamps.length; i++) this.cellStamps[i] = 0;
+			this.buildStamp = 1;
+		}
+		this.cellCount = 0;
+		this.entryCount = 0;
+	}
+
+	/**
+	 * Clears the grid and inserts all non-broken Constrains of the given SoftBodys
+	 * @param bodys The SoftBodys to insert
+	 */
+	public void rebuild(List<SoftBody> bodys) {
+		clear();
+		for (int i = 0; i < bodys.size(); i++) {
+			SoftBody body = bodys.get(i);
+			List<Constrain> constrains = body.getConstrains();
+			for (int i2 = 0; i2 < constrains.size(); i2++) {
+				Constrain constrain = constrains.get(i2);
+				if (!constrain.broken) insert(constrain, i2, body);
+			}
+		}
+	}
+
+	/**
+	 * Inserts a single Constrain in all cells that are covered by its swept bounding-box, the positions are taken from the ParticleStorages.
+	 * The bounding-box is padded by the largest motion of the two Particles along one axis, so the Constrain is still found if its Particles are moved during the iterations of the step.
+	 * Constrains with a non-finite position (a diverged simulation) are not inserted.
+	 * @param constrain The Constrain to insert, has to be bound to its ParticleStorages
+	 * @param index The index of the Constrain in the Constrain-list of its SoftBody
+	 * @param body The SoftBody that owns the Constrain
+	 */
+	public void insert(Constrain constrain, int index, SoftBody body) {
+		ParticleStorage storageA = constrain.storageA;
+		ParticleStorage storageB = constrain.storageB;
+		int a = constrain.indexA;
+		int b = constrain.indexB;
+		double minX = Math.min(Math.min(storageA.x[a], storageA.lastX[a]), Math.min(storageB.x[b], storageB.lastX[b]));
+		double minY = Math.min(Math.min(storageA.y[a], storageA.lastY[a]), Math.min(storageB.y[b], storageB.lastY[b]));
+		double maxX = Math.max(Math.max(storageA.x[a], storageA.lastX[a]), Math.max(storageB.x[b], storageB.lastX[b]));
+		double maxY = Math.max(Math.max(storageA.y[a], storageA.lastY[a]), Math.max(storageB.y[b], storageB.lastY[b]));
+		double margin = Math.max(Math.max(Math.abs(storageA.x[a] - storageA.lastX[a]), Math.abs(storageA.y[a] - storageA.lastY[a])), Math.max(Math.abs(storageB.x[b] - storageB.lastX[b]), Math.abs(storageB.y[b] - storageB.lastY[b])));
+		// Infinite or NaN positions would cover no or all cells
+		if (!Double.isFinite(minX) || !Double.isFinite(minY) || !Double.isFinite(maxX) || !Double.isFinite(maxY)) return;
+		int minCellX = cellCoord(minX - margin);
+		int minCellY = cellCoord(minY - margin);
+		int maxCellX = cellCoord(maxX + margin);
+		int maxCellY = cellCoord(maxY + margin);
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				int slot = findOrCreateSlot(cellX, cellY);
+				int entry = newEntry();
+				this.entryConstrains[entry] = constrain;
+				this.entryBodies[entry] = body;
+				this.entryIndices[entry] = index;
+				this.entryMinCellX[entry] = minCellX;
+				this.entryMinCellY[entry] = minCellY;
+				this.entryNext[entry] = this.cellHeads[slot];
+				this.cellHeads[slot] = entry;
+			}
+		}
+	}
+
+	/**
+	 * Collects all Constrains whose cells overlap the given bounding-box, every Constrain is only reported once.
+	 * A bounding-box with a non-finite coordinate finds no Constrains.
+	 * @param minX The min x of the bounding-box
+	 * @param minY The min y of the bounding-box
+	 * @param maxX The max x of the bounding-box
+	 * @param maxY The max y of the bounding-box
+	 * @param candidates The Candidates to fill with the result, its previous content is removed
+	 * @return The number of found Constrains
+	 */
+	public int query(double minX, double minY, double maxX, double maxY, Candidates candidates) {
+		candidates.clear();
+		if (!Double.isFinite(minX) || !Double.isFinite(minY) || !Double.isFinite(maxX) || !Double.isFinite(maxY)) return 0;
+		int minCellX = cellCoord(minX);
+		int minCellY = cellCoord(minY);
+		int maxCellX = cellCoord(maxX);
+		int maxCellY = cellCoord(maxY);
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				int slot = findSlot(cellX, cellY);
+				if (slot < 0) continue;
+				for (int entry = this.cellHeads[slot]; entry >= 0; entry = this.entryNext[entry]) {
+					// Only report the entry in the first cell that is covered by the Constrain and the query, this removes the duplicates
+					if (cellX != Math.max(minCellX, this.entryMinCellX[entry]) || cellY != Math.max(minCellY, this.entryMinCellY[entry])) continue;
+					candidates.add(this.entryConstrains[entry], this.entryIndices[entry], this.entryBodies[entry]);
+				}
+			}
+		}
+		return candidates.size;
+	}
+
+	protected int cellCoord(double coord) {
+		return (int) Math.max(-MAX_CELL, Math.min(MAX_CELL, Math.floor(coord / this.cellSize)));
+	}
+
+	protected static int hash(int cellX, int cellY) {
+		int h = cellX * 0x9E3779B1 + cellY * 0x85EBCA77;
+		return h ^ (h >>> 15);
+	}
+
+	protected static long key(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	protected int findSlot(int cellX, int cellY) {
+		long key = key(cellX, cellY);
+		int mask = this.cellKeys.length - 1;
+		for (int slot = hash(cellX, cellY) & mask; this.cellStamps[slot] == this.buildStamp; slot = (slot + 1) & mask) {
+			if (this.cellKeys[slot] == key) return slot;
+		}
+		return -1;
+	}
+
+	protected int findOrCreateSlot(int cellX, int cellY) {
+		if ((this.cellCount + 1) * 2 > this.cellKeys.length) growCells();
+		long key = key(cellX, cellY);
+		int mask = this.cellKeys.length - 1;
+		int slot = hash(cellX, cellY) & mask;
+		for (; this.cellStamps[slot] == this.buildStamp; slot = (slot + 1) & mask) {
+			if (this.cellKeys[slot] == key) return slot;
+		}
+		this.cellStamps[slot] = this.buildStamp;
+		this.cellKeys[slot] = key;
+		this.cellHeads[slot] = -1;
+		this.cellCount++;
+		return slot;
+	}
+
+	protected void growCells() {
+		long[] oldKeys = this.cellKeys;
+		int[] oldHeads = this.cellHeads;
+		int[] oldStamps = this.cellStamps;
+		int oldStamp = this.buildStamp;
+		this.cellKeys = new long[oldKeys.length * 2];
+		this.cellHeads = new int[oldKeys.length * 2];
+		this.cellStamps = new int[oldKeys.length * 2];
+		this.buildStamp = 1;
+		int mask = this.cellKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldStamps[i] != oldStamp) continue;
+			int slot = hash((int) (oldKeys[i] >> 32), (int) oldKeys[i]) & mask;
+			while (this.cellStamps[slot] == this.buildStamp) slot = (slot + 1) & mask;
+			this.cellStamps[slot] = this.buildStamp;
+			this.cellKeys[slot] = oldKeys[i];
+			this.cellHeads[slot] = oldHeads[i];
+		}
+	}
+
+	protected int newEntry() {
+		if (this.entryCount == this.entryNext.length) {
+			int capacity = this.entryNext.length * 2;
+			this.entryConstrains = Arrays.copyOf(this.entryConstrains, capacity);
+			this.entryBodies = Arrays.copyOf(this.entryBodies, capacity);
+			this.entryIndices = Arrays.copyOf(this.entryIndices, capacity);
+			this.entryMinCellX = Arrays.copyOf(this.entryMinCellX, capacity);
+			this.entryMinCellY = Arrays.copyOf(this.entryMinCellY, capacity);
+			this.entryNext = Arrays.copyOf(this.entryNext, capacity);
+		}
+		return this.entryCount++;
+	}
+
+	/**
+	 * The result of a query on the CollisionGrid, it can be reused for multiple queries to avoid allocations.
+	 */
+	public static class Candidates {
+
+		protected Constrain[] constrains = new Constrain[64];
+		protected SoftBody[] bodys = new SoftBody[64];
+		protected int[] indices = new int[64];
+		protected int size;
+
+		public void clear() {
+			this.size = 0;
+		}
+
+		public void add(Constrain constrain, int index, SoftBody body) {
+			if (this.size == this.constrains.length) {
+				this.constrains = Arrays.copyOf(this.constrains, this.size * 2);
+				this.bodys = Arrays.copyOf(this.bodys, this.size * 2);
+				this.indices = Arrays.copyOf(this.indices, this.size * 2);
+			}
+			this.constrains[this.size] = constrain;
+			this.bodys[this.size] = body;
+			this.indices[this.size] = index;
+			this.size++;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public Constrain getConstrain(int index) {
+			return constrains[index];
+		}
+
+		public SoftBody getBody(int index) {
+			return bodys[index];
+		}
+		
+		public int getIndex(int index) {
+			return indices[index];
+		}
+
+	}
+
+}
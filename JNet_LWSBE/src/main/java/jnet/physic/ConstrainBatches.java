@@ -0,0 +1,199 @@
+package jnet.physic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import jnet.physic.SoftBody.Constrain;
+
+/**
+ * The compiled form of the Constrains of a SoftBody, the Constrains are grouped in batches of the same material (stiffness, deformForce and maxBending).
+ * Every batch holds a table with the stiffness for each iteration and every Constrain the weights of its two Particles (from their inverse masses), so the PhysicSolver does not recalculate them in every iteration.
+ * The batches have to be rebuilt if Constrains are added or broken or the material or the mass of a Particle changes (SoftBody.markTopologyChanged()).
+ * @author M_Marvin
+ *
+ */
+public class ConstrainBatches {
+
+	protected int[] order;
+	protected int[] batchStart;
+	protected int batchCount;
+	protected double[][] stiffnessTables;
+	protected float[] batchStiffness;
+	protected int[] batchOf;
+	protected double[] weightA;
+	protected double[] weightB;
+	protected int version = -1;
+	protected int itterationCount;
+
+	public ConstrainBatches() {
+		this.order = new int[0];
+		this.batchStart = new int[1];
+		this.stiffnessTables = new double[0][];
+		this.batchStiffness = new float[0];
+		this.batchOf = new int[0];
+		this.weightA = new double[0];
+		this.weightB = new double[0];
+	}
+
+	/**
+	 * Checks if the batches have to be rebuilt, because the Constrains of the SoftBody or the number of iterations have changed
+	 * @param body The SoftBody of this batches
+	 * @param itterationCount The number of iterations of the PhysicSolver
+	 * @return true if the batches are up to date
+	 */
+	public boolean isValid(SoftBody body, int itterationCount) {
+		return this.version == body.topologyVersion && this.itterationCount == itterationCount;
+	}
+
+	/**
+	 * Groups all non-broken Constrains of the SoftBody by their material and precomputes the weights of their Particles and the stiffness tables, the Constrains have to be bound to their ParticleStorages
+	 * @param body The SoftBody to compile
+	 * @param itterationCount The number of iterations of the PhysicSolver
+	 */
+	public void build(SoftBody body, int itterationCount) {
+
+		List<Constrain> constrains = body.getConstrains();
+		HashMap<List<Float>, Integer> batchIndices = new HashMap<List<Float>, Integer>();
+		List<Float> stiffnesses = new ArrayList<Float>();
+		int[] batchSizes = new int[8];
+		if (this.weightA.length < constrains.size()) {
+			this.batchOf = new int[constrains.size()];
+			this.weightA = new double[constrains.size()];
+			this.weightB = new double[constrains.size()];
+		}
+		int[] batches = this.batchOf;
+
+		for (int i = 0; i < constrains.size(); i++) {
+			Constrain constrain = constrains.get(i);
+			batches[i] = -1;
+			if (constrain.broken || constrain.storageA == null || constrain.storageB == null) continue;
+
+			// Find the batch of the material
+			List<Float> material = Arrays.asList(constrain.stiffness, constrain.deformForce, constrain.maxBending);
+			Integer batch = batchIndices.get(material);
+			if (batch == null) {
+				batch = stiffnesses.size();
+				batchIndices.put(material, batch);
+				stiffnesses.add(constrain.stiffness);
+				if (batch >= batchSizes.length) batchSizes = Arrays.copyOf(batchSizes, batchSizes.length * 2);
+			}
+			batches[i] = batch;
+			batchSizes[batch]++;
+
+			// The lighter Particle is moved more, Particles without mass are not moved
+			double invMassA = constrain.storageA.invMass[constrain.indexA];
+			double invMassB = constrain.storageB.invMass[constrain.indexB];
+			double invMassSum = invMassA + invMassB;
+			this.weightA[i] = invMassSum > 0 ? invMassA / invMassSum : 0;
+			this.weightB[i] = invMassSum > 0 ? invMassB / invMassSum : 0;
+		}
+
+		// Sort the Constrains by their batches
+		this.batchCount = stiffnesses.size();
+		this.batchStart = new int[this.batchCount + 1];
+		for (int batch = 0; batch < this.batchCount; batch++) {
+			this.batchStart[batch + 1] = this.batchStart[batch] + batchSizes[batch];
+		}
+		this.order = new int[this.batchStart[this.batchCount]];
+		int[] fill = Arrays.copyOf(this.batchStart, this.batchCount);
+		for (int i = 0; i < constrains.size(); i++) {
+			if (batches[i] >= 0) this.order[fill[batches[i]]++] = i;
+		}
+
+		// The stiffness of each iteration, later iterations correct less
+		this.batchStiffness = new float[this.batchCount];
+		this.stiffnessTables = new double[this.batchCount][];
+		for (int batch = 0; batch < this.batchCount; batch++) {
+			this.batchStiffness[batch] = stiffnesses.get(batch);
+			this.stiffnessTables[batch] = new double[itterationCount + 1];
+			for (int itteration = 1; itteration <= itterationCount; itteration++) {
+				this.stiffnessTables[batch][itteration] = stiffnessForItteration(this.batchStiffness[batch], itteration);
+			}
+		}
+
+		this.itterationCount = itterationCount;
+		this.version = body.topologyVersion;
+
+	}
+
+	/**
+	 * Calculates the stiffness that is used in a single iteration
+	 * @param stiffness The stiffness of the material
+	 * @param itteration The number of the iteration, starting at 1
+	 * @return The stiffness for the iteration
+	 */
+	public static double stiffnessForItteration(float stiffness, int itteration) {
+		return 1 - Math.pow(1 - stiffness, 1D / itteration);
+	}
+
+	public int getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * Gets the position of the first Constrain of the batch in the order array
+	 * @param batch The batch
+	 * @return The start of the batch in the order array
+	 */
+	public int getBatchStart(int batch) {
+		return batchStart[batch];
+	}
+
+	/**
+	 * Gets the position after the last Constrain of the batch in the order array
+	 * @param batch The batch
+	 * @return The end (exclusive) of the batch in the order array
+	 */
+	public int getBatchEnd(int batch) {
+		return batchStart[batch + 1];
+	}
+
+	/**
+	 * Gets the index of a Constrain in the Constrain-list of the SoftBody
+	 * @param position The position in the order array
+	 * @return The index of the Constrain
+	 */
+	public int getConstrain(int position) {
+		return order[position];
+	}
+
+	/**
+	 * Gets the precomputed stiffness of the batch in the given iteration
+	 * @param batch The batch
+	 * @param itteration The number of the iteration, starting at 1
+	 * @return The stiffness for the iteration
+	 */
+	public double getStiffness(int batch, int itteration) {
+		return stiffnessTables[batch][itteration];
+	}
+
+	/**
+	 * Gets the batch of a Constrain
+	 * @param constrain The index of the Constrain in the Constrain-list of the SoftBody
+	 * @return The batch or -1 if the Constrain was broken or not bound to its Particles when the batches where built
+	 */
+	public int getBatch(int constrain) {
+		return batchOf[constrain];
+	}
+
+	/**
+	 * Gets the weight of the first Particle of a Constrain, the part of the correction that is applied to it
+	 * @param constrain The index of the Constrain in the Constrain-list of the SoftBody
+	 * @return The weight of Particle A
+	 */
+	public double getWeightA(int constrain) {
+		return weightA[constrain];
+	}
+
+	/**
+	 * Gets the weight of the second Particle of a Constrain, the part of the correction that is applied to it
+	 * @param constrain The index of the Constrain in the Constrain-list of the SoftBody
+	 * @return The weight of Particle B
+	 */
+	public double getWeightB(int constrain) {
+		return weightB[constrain];
+	}
+
+}
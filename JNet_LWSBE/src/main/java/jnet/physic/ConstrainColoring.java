@@ -0,0 +1,139 @@
+package jnet.physic;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jnet.physic.SoftBody.Constrain;
+
+/**
+ * A coloring of the Constrain-graph of a SoftBody, no two Constrains with the same color share a Particle.
+ * All Constrains of one color can be solved at the same time without synchronization, the PhysicSolver uses this to solve them in parallel.
+ * Constrains that use Particles of other SoftBodys can not be colored and are solved sequentially after the colors.
+ * @author M_Marvin
+ *
+ */
+public class ConstrainColoring {
+
+	protected int[] order;
+	protected int[] colorStart;
+	protected int colorCount;
+	protected int[] sequential;
+	protected int sequentialCount;
+	protected int version = -1;
+
+	public ConstrainColoring() {
+		this.order = new int[0];
+		this.colorStart = new int[1];
+		this.sequential = new int[0];
+	}
+
+	/**
+	 * Checks if the coloring has to be rebuilt, because Constrains where added to or broken in the SoftBody
+	 * @param body The SoftBody of this coloring
+	 * @return true if the coloring is up to date
+	 */
+	public boolean isValid(SoftBody body) {
+		return this.version == body.topologyVersion;
+	}
+
+	/**
+	 * Colors all non-broken Constrains of the SoftBody using a greedy coloring, each Constrain gets the smallest color that is not used by a neighbor.
+	 * @param body The SoftBody to color
+	 */
+	public void build(SoftBody body) {
+
+		List<Constrain> constrains = body.getConstrains();
+		ParticleStorage storage = body.getStorage();
+		int[] colors = new int[constrains.size()];
+		int[] colorSizes = new int[8];
+		long[][] usedColors = new long[1][storage.size()];
+		this.colorCount = 0;
+		this.sequentialCount = 0;
+		if (this.sequential.length < constrains.size()) this.sequential = new int[constrains.size()];
+
+		for (int i = 0; i < constrains.size(); i++) {
+			Constrain constrain = constrains.get(i);
+			colors[i] = -1;
+			if (constrain.broken) continue;
+			if (constrain.storageA != storage || constrain.storageB != storage || constrain.indexA == constrain.indexB) {
+				this.sequential[this.sequentialCount++] = i;
+				continue;
+			}
+
+			// Find the first color that is not used by the two Particles
+			int color = -1;
+			for (int word = 0; color < 0; word++) {
+				if (word == usedColors.length) usedColors = Arrays.copyOf(usedColors, word + 1);
+				if (usedColors[word] == null) usedColors[word] = new long[storage.size()];
+				long free = ~(usedColors[word][constrain.indexA] | usedColors[word][constrain.indexB]);
+				if (free != 0) color = word * 64 + Long.numberOfTrailingZeros(free);
+			}
+			usedColors[color >> 6][constrain.indexA] |= 1L << (color & 63);
+			usedColors[color >> 6][constrain.indexB] |= 1L << (color & 63);
+
+			colors[i] = color;
+			if (color >= colorSizes.length) colorSizes = Arrays.copyOf(colorSizes, Math.max(color + 1, colorSizes.length * 2));
+			colorSizes[color]++;
+			this.colorCount = Math.max(this.colorCount, color + 1);
+		}
+
+		// Sort the Constrains by their colors
+		this.colorStart = new int[this.colorCount + 1];
+		for (int color = 0; color < this.colorCount; color++) {
+			this.colorStart[color + 1] = this.colorStart[color] + colorSizes[color];
+		}
+		this.order = new int[this.colorStart[this.colorCount]];
+		int[] fill = Arrays.copyOf(this.colorStart, this.colorCount);
+		for (int i = 0; i < colors.length; i++) {
+			if (colors[i] >= 0) this.order[fill[colors[i]]++] = i;
+		}
+
+		this.version = body.topologyVersion;
+
+	}
+
+	public int getColorCount() {
+		return colorCount;
+	}
+
+	/**
+	 * Gets the position of the first Constrain of the color in the order array
+	 * @param color The color
+	 * @return The start of the color in the order array
+	 */
+	public int getColorStart(int color) {
+		return colorStart[color];
+	}
+
+	/**
+	 * Gets the position after the last Constrain of the color in the order array
+	 * @param color The color
+	 * @return The end (exclusive) of the color in the order array
+	 */
+	public int getColorEnd(int color) {
+		return colorStart[color + 1];
+	}
+
+	/**
+	 * Gets the index of a Constrain in the Constrain-list of the SoftBody
+	 * @param position The position in the order array
+	 * @return The index of the Constrain
+	 */
+	public int getConstrain(int position) {
+		return order[position];
+	}
+
+	public int getSequentialCount() {
+		return sequentialCount;
+	}
+
+	/**
+	 * Gets the index of a Constrain, that could not be colored, in the Constrain-list of the SoftBody
+	 * @param position The position in the list of uncolored Constrains
+	 * @return The index of the Constrain
+	 */
+	public int getSequential(int position) {
+		return sequential[position];
+	}
+
+}
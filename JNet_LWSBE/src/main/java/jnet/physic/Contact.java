@@ -16,14 +16,27 @@ public class Contact {
 	protected Particle particle;
 	protected Constrain constrain;
 	
+	/** The shared Contact instance without collision data, returned by noContact() **/
+	protected static final Contact NO_CONTACT = new Contact();
+	
 	protected Contact() {}
 	
 	/**
-	 * Creates a empty Contact instance, that contains no collision data
-	 * @return A new Contact instance
+	 * Gets the empty Contact instance, that contains no collision data, the instance is shared and is never changed
+	 * @return The Contact instance without collision
 	 */
 	public static Contact noContact() {
-		return new Contact();
+		return NO_CONTACT;
+	}
+	
+	/**
+	 * Creates a empty Contact instance that can be filled again and again by PhysicSolver.checkContact(particle, constrain, out)
+	 * @return A new Contact instance
+	 */
+	public static Contact reusableContact() {
+		Contact contact = new Contact();
+		contact.collisionNormal = new Vec2d();
+		return contact;
 	}
 	
 	/**
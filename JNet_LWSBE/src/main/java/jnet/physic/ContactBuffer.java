@@ -0,0 +1,115 @@
+package jnet.physic;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer for the collisions found by the PhysicSolver, all informations are stored in primitive arrays.
+ * The buffer is cleared and reused instead of being reallocated, so it does not produce garbage once it has reached its required size.
+ * The contacts are stored in the order they are found, which makes the order in that they are solved stable.
+ * @author M_Marvin
+ *
+ */
+public class ContactBuffer {
+
+	protected static final int INITIAL_CAPACITY = 64;
+
+	protected double[] normalX;
+	protected double[] normalY;
+	protected double[] depth;
+	protected int[] particles;
+	protected int[] constrains;
+	protected SoftBody[] particleBodys;
+	protected SoftBody[] constrainBodys;
+	protected int size;
+
+	public ContactBuffer() {
+		this.normalX = new double[INITIAL_CAPACITY];
+		this.normalY = new double[INITIAL_CAPACITY];
+		this.depth = new double[INITIAL_CAPACITY];
+		this.particles = new int[INITIAL_CAPACITY];
+		this.constrains = new int[INITIAL_CAPACITY];
+		this.particleBodys = new SoftBody[INITIAL_CAPACITY];
+		this.constrainBodys = new SoftBody[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Removes all contacts, the allocated memory is kept
+	 */
+	public void clear() {
+		// Drop the references, so that removed SoftBodys are not kept alive
+		Arrays.fill(this.particleBodys, 0, this.size, null);
+		Arrays.fill(this.constrainBodys, 0, this.size, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a new contact to the buffer
+	 * @param normalX The x component of the normalized vector of the collision
+	 * @param normalY The y component of the normalized vector of the collision
+	 * @param depth The intersection-depth of the collision
+	 * @param particleBody The SoftBody of the Particle
+	 * @param particle The index of the Particle in the ParticleStorage of its SoftBody
+	 * @param constrainBody The SoftBody of the Constrain
+	 * @param constrain The index of the Constrain in the Constrain-list of its SoftBody
+	 * @return The index of the new contact
+	 */
+	public int add(double normalX, double normalY, double depth, SoftBody particleBody, int particle, SoftBody constrainBody, int constrain) {
+		if (this.size == this.depth.length) grow(this.size * 2);
+		int index = this.size++;
+		this.normalX[index] = normalX;
+		this.normalY[index] = normalY;
+		this.depth[index] = depth;
+		this.particleBodys[index] = particleBody;
+		this.particles[index] = particle;
+		this.constrainBodys[index] = constrainBody;
+		this.constrains[index] = constrain;
+		return index;
+	}
+
+	protected void grow(int capacity) {
+		this.normalX = Arrays.copyOf(this.normalX, capacity);
+		this.normalY = Arrays.copyOf(this.normalY, capacity);
+		this.depth = Arrays.copyOf(this.depth, capacity);
+		this.particles = Arrays.copyOf(this.particles, capacity);
+		this.constrains = Arrays.copyOf(this.constrains, capacity);
+		this.particleBodys = Arrays.copyOf(this.particleBodys, capacity);
+		this.constrainBodys = Arrays.copyOf(this.constrainBodys, capacity);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public double getNormalX(int contact) {
+		return normalX[contact];
+	}
+
+	public double getNormalY(int contact) {
+		return normalY[contact];
+	}
+
+	public double getDepth(int contact) {
+		return depth[contact];
+	}
+
+	public SoftBody getParticleBody(int contact) {
+		return particleBodys[contact];
+	}
+
+	public int getParticle(int contact) {
+		return particles[contact];
+	}
+
+	public SoftBody getConstrainBody(int contact) {
+		return constrainBodys[contact];
+	}
+
+	public int getConstrain(int contact) {
+		return constrains[contact];
+	}
+
+}
@@ -0,0 +1,233 @@
+package jnet.physic;
+
+import java.util.Arrays;
+
+import jnet.physic.SoftBody.Constrain;
+
+/**
+ * Keeps the collisions of the Particles of a SoftBody over multiple simulation-steps, keyed by the Particle and the Constrain instance (the index of a Constrain changes when broken Constrains are removed).
+ * Every entry holds the normal and the summed correction (the displacement of the Particle) of the collision in the last step it was solved, the PhysicSolver uses them to warm start the next step.
+ * Entries that are not touched for a number of steps expire, all informations are stored in primitive arrays and the memory is reused.
+ * @author M_Marvin
+ *
+ */
+public class ContactCache {
+
+	protected static final int INITIAL_CAPACITY = 16;
+
+	protected int[] particles;
+	protected SoftBody[] constrainBodys;
+	protected Constrain[] constrains;
+	protected double[] normalX;
+	protected double[] normalY;
+	protected double[] correction;
+	protected double[] warmCorrection;
+	protected int[] age;
+	protected int size;
+
+	// Open addressing hash-table, holds the index of the entry + 1 or 0 for empty slots
+	protected int[] table;
+
+	public ContactCache() {
+		this.particles = new int[INITIAL_CAPACITY];
+		this.constrainBodys = new SoftBody[INITIAL_CAPACITY];
+		this.constrains = new Constrain[INITIAL_CAPACITY];
+		this.normalX = new double[INITIAL_CAPACITY];
+		this.normalY = new double[INITIAL_CAPACITY];
+		this.correction = new double[INITIAL_CAPACITY];
+		this.warmCorrection = new double[INITIAL_CAPACITY];
+		this.age = new int[INITIAL_CAPACITY];
+		this.table = new int[INITIAL_CAPACITY * 2];
+	}
+
+	/**
+	 * Removes all entries, the allocated memory is kept
+	 */
+	public void clear() {
+		Arrays.fill(this.constrainBodys, 0, this.size, null);
+		Arrays.fill(this.constrains, 0, this.size, null);
+		Arrays.fill(this.table, 0);
+		this.size = 0;
+	}
+
+	/**
+	 * Starts a new simulation-step, the corrections of the last step become the warm start corrections of the entries.
+	 * Entries that were not touched in the last step get older and are removed if they are older than the lifetime.
+	 * @param lifetime The number of steps an entry is kept without being touched
+	 */
+	public void update(int lifetime) {
+		int kept = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (this.correction[i] > 0) {
+				this.warmCorrection[i] = this.correction[i];
+				this.age[i] = 0;
+			} else {
+				this.age[i]++;
+			}
+			if (this.age[i] >= lifetime) continue;
+			this.particles[kept] = this.particles[i];
+			this.constrainBodys[kept] = this.constrainBodys[i];
+			this.constrains[kept] = this.constrains[i];
+			this.normalX[kept] = this.normalX[i];
+			this.normalY[kept] = this.normalY[i];
+			this.correction[kept] = 0;
+			this.warmCorrection[kept] = this.warmCorrection[i];
+			this.age[kept] = this.age[i];
+			kept++;
+		}
+		Arrays.fill(this.constrainBodys, kept, this.size, null);
+		Arrays.fill(this.constrains, kept, this.size, null);
+		this.size = kept;
+		rehash(this.table.length);
+	}
+
+	/**
+	 * Records that a collision was solved in the current simulation-step, the correction is added to the correction of the entry
+	 * @param particle The index of the Particle in the ParticleStorage of the SoftBody of this cache
+	 * @param constrainBody The SoftBody of the Constrain
+	 * @param constrain The Constrain
+	 * @param normalX The x component of the normal of the collision
+	 * @param normalY The y component of the normal of the collision
+	 * @param correction The displacement of the Particle that was applied to solve the collision
+	 */
+	public void touch(int particle, SoftBody constrainBody, Constrain constrain, double normalX, double normalY, double correction) {
+		int entry = find(particle, constrain);
+		if (entry < 0) {
+			if (this.size == this.particles.length) grow(this.size * 2);
+			entry = this.size++;
+			this.particles[entry] = particle;
+			this.constrainBodys[entry] = constrainBody;
+			this.constrains[entry] = constrain;
+			this.correction[entry] = 0;
+			this.warmCorrection[entry] = 0;
+			this.age[entry] = 0;
+			if (this.size * 2 > this.table.length) {
+				rehash(this.table.length * 2);
+			} else {
+				insert(entry);
+			}
+		}
+		this.normalX[entry] = normalX;
+		this.normalY[entry] = normalY;
+		this.correction[entry] += correction;
+	}
+
+	/**
+	 * Adds an entry with all its values, used by the WorldFile to restore a saved PhysicWorld
+	 * @param particle The index of the Particle in the ParticleStorage of the SoftBody of this cache
+	 * @param constrainBody The SoftBody of the Constrain
+	 * @param constrain The Constrain
+	 * @param normalX The x component of the normal of the collision
+	 * @param normalY The y component of the normal of the collision
+	 * @param correction The correction of the current step
+	 * @param warmCorrection The correction of the last step
+	 * @param age The number of steps since the collision was solved the last time
+	 */
+	protected void restore(int particle, SoftBody constrainBody, Constrain constrain, double normalX, double normalY, double correction, double warmCorrection, int age) {
+		if (this.size == this.particles.length) grow(this.size * 2);
+		int entry = this.size++;
+		this.particles[entry] = particle;
+		this.constrainBodys[entry] = constrainBody;
+		this.constrains[entry] = constrain;
+		this.normalX[entry] = normalX;
+		this.normalY[entry] = normalY;
+		this.correction[entry] = correction;
+		this.warmCorrection[entry] = warmCorrection;
+		this.age[entry] = age;
+		if (this.size * 2 > this.table.length) {
+			rehash(this.table.length * 2);
+		} else {
+			insert(entry);
+		}
+	}
+
+	/**
+	 * Finds the entry of a collision
+	 * @param particle The index of the Particle in the ParticleStorage of the SoftBody of this cache
+	 * @param constrain The Constrain
+	 * @return The index of the entry or -1 if the collision is not cached
+	 */
+	public int find(int particle, Constrain constrain) {
+		int mask = this.table.length - 1;
+		for (int slot = hash(particle, constrain) & mask; this.table[slot] != 0; slot = (slot + 1) & mask) {
+			int entry = this.table[slot] - 1;
+			if (this.particles[entry] == particle && this.constrains[entry] == constrain) return entry;
+		}
+		return -1;
+	}
+
+	protected static int hash(int particle, Constrain constrain) {
+		int hash = particle * 0x9E3779B1 + System.identityHashCode(constrain);
+		return hash ^ (hash >>> 16);
+	}
+
+	protected void insert(int entry) {
+		int mask = this.table.length - 1;
+		int slot = hash(this.particles[entry], this.constrains[entry]) & mask;
+		while (this.table[slot] != 0) slot = (slot + 1) & mask;
+		this.table[slot] = entry + 1;
+	}
+
+	protected void rehash(int tableSize) {
+		if (this.table.length != tableSize) {
+			this.table = new int[tableSize];
+		} else {
+			Arrays.fill(this.table, 0);
+		}
+		for (int i = 0; i < this.size; i++) insert(i);
+	}
+
+	protected void grow(int capacity) {
+		this.particles = Arrays.copyOf(this.particles, capacity);
+		this.constrainBodys = Arrays.copyOf(this.constrainBodys, capacity);
+		this.constrains = Arrays.copyOf(this.constrains, capacity);
+		this.normalX = Arrays.copyOf(this.normalX, capacity);
+		this.normalY = Arrays.copyOf(this.normalY, capacity);
+		this.correction = Arrays.copyOf(this.correction, capacity);
+		this.warmCorrection = Arrays.copyOf(this.warmCorrection, capacity);
+		this.age = Arrays.copyOf(this.age, capacity);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getParticle(int entry) {
+		return particles[entry];
+	}
+
+	public SoftBody getConstrainBody(int entry) {
+		return constrainBodys[entry];
+	}
+
+	public Constrain getConstrain(int entry) {
+		return constrains[entry];
+	}
+
+	public double getNormalX(int entry) {
+		return normalX[entry];
+	}
+
+	public double getNormalY(int entry) {
+		return normalY[entry];
+	}
+
+	/**
+	 * Gets the summed correction of the collision in the last step it was solved, used to warm start the current step
+	 * @param entry The index of the entry
+	 * @return The correction of the last step
+	 */
+	public double getWarmCorrection(int entry) {
+		return warmCorrection[entry];
+	}
+
+	/**
+	 * Gets the number of steps since the collision was solved the last time
+	 * @param entry The index of the entry
+	 * @return The age of the entry, 0 if it was solved in the last step
+	 */
+	public int getAge(int entry) {
+		return age[entry];
+	}
+
+}
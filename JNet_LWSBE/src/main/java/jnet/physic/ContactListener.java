@@ -3,6 +3,7 @@ package jnet.physic;
 /**
  * An abstract class to extend from that recives all collisions of the object that is bound to it (can be a SoftBody or the PhysicWorld).
  * It also determines if a collision is solved or if the objects pass each other.
+ * The PhysicSolver reuses the same Contact instance for all events, a ContactListener must not keep a reference to it after the method has returned.
  * @author M_Marvin
  *
  */
@@ -0,0 +1,22 @@
+package jnet.physic;
+
+/**
+ * A kernel that tests a single Particle path against all segments of a SegmentBatch, used by the PhysicSolver for the first two phases of the collision check.
+ * The implementations have to produce exactly the same results, so the simulation does not depend on the used kernel.
+ * @author M_Marvin
+ *
+ */
+public interface ISegmentKernel {
+	
+	/**
+	 * Intersects the path with all segments of the batch, the ua and ub values and the indices of the intersected segments are written in the batch
+	 * @param pathAX The x of the first end point of the path (the current position of the Particle)
+	 * @param pathAY The y of the first end point of the path
+	 * @param pathBX The x of the second end point of the path (the last position of the Particle)
+	 * @param pathBY The y of the second end point of the path
+	 * @param batch The segments to test
+	 * @return The number of intersected segments
+	 */
+	public int intersect(double pathAX, double pathAY, double pathBX, double pathBY, SegmentBatch batch);
+	
+}
@@ -0,0 +1,249 @@
+package jnet.physic;
+
+import java.util.Arrays;
+
+import jnet.physic.SoftBody.Particle;
+
+/**
+ * Stores the state of multiple Particles in contiguous primitive arrays (structure of arrays), the PhysicSolver works only on this arrays.
+ * The Particles stay the public interface, they are views that read and write their slot in the arrays, so nothing has to be copied between the Particles and the storage.
+ * Every SoftBody owns one storage for its Particles, the PhysicWorld has an additional one for Particles that are only used by Joints.
+ * Particles that are not added to a SoftBody or the PhysicWorld keep their state in a detached storage with a single slot.
+ * @author M_Marvin
+ *
+ */
+public class ParticleStorage {
+
+	protected static final int INITIAL_CAPACITY = 16;
+
+	protected SoftBody owner;
+	protected Particle[] particles;
+	protected double[] x;
+	protected double[] y;
+	protected double[] lastX;
+	protected double[] lastY;
+	protected double[] prevX;
+	protected double[] prevY;
+	protected double[] ax;
+	protected double[] ay;
+	protected double[] mass;
+	protected double[] invMass;
+	protected boolean[] isolated;
+	protected int size;
+	protected boolean detached;
+	
+	// The location of the Particles in the WorldSnapshot that is currently captured
+	protected WorldSnapshot snapshot;
+	protected int snapshotStamp;
+	protected int snapshotSlot;
+
+	/**
+	 * Creates a new empty storage
+	 * @param owner The SoftBody that owns the storage or null if it is not owned by a SoftBody
+	 */
+	public ParticleStorage(SoftBody owner) {
+		this(owner, INITIAL_CAPACITY);
+	}
+	
+	protected ParticleStorage(SoftBody owner, int capacity) {
+		this.owner = owner;
+		this.particles = new Particle[capacity];
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.lastX = new double[capacity];
+		this.lastY = new double[capacity];
+		this.prevX = new double[capacity];
+		this.prevY = new double[capacity];
+		this.ax = new double[capacity];
+		this.ay = new double[capacity];
+		this.mass = new double[capacity];
+		this.invMass = new double[capacity];
+		this.isolated = new boolean[capacity];
+	}
+	
+	/**
+	 * Creates a storage with a single slot for a Particle that is not added to a SoftBody or the PhysicWorld
+	 * @return The new detached storage
+	 */
+	protected static ParticleStorage detached() {
+		ParticleStorage storage = new ParticleStorage(null, 1);
+		storage.detached = true;
+		return storage;
+	}
+
+	/**
+	 * Adds the Particle to this storage, if it is already stored in an other storage, it is moved to this one together with its state.
+	 * @param particle The Particle to add
+	 * @return The index of the Particle in this storage
+	 */
+	public int add(Particle particle) {
+		if (particle.storage == this) return particle.index;
+		if (this.size == this.particles.length) grow(Math.max(this.size * 2, 1));
+		int index = this.size++;
+		move(index, particle);
+		return index;
+	}
+
+	/**
+	 * Puts a Particle in a specific slot, the unused slots before it stay empty. Used by the WorldFile to restore the exact slots of a saved PhysicWorld.
+	 * @param index The index of the slot, it has to be empty
+	 * @param particle The Particle, it is moved from its current storage
+	 */
+	protected void put(int index, Particle particle) {
+		if (index < this.size && this.particles[index] != null) throw new RuntimeException(new IllegalArgumentException("The slot " + index + " is already used!"));
+		if (index >= this.particles.length) grow(Math.max(index + 1, this.particles.length * 2));
+		this.size = Math.max(this.size, index + 1);
+		move(index, particle);
+	}
+	
+	/**
+	 * Copies the state of the Particle from its current storage in the given slot and frees its old slot
+	 * @param index The index of the slot
+	 * @param particle The Particle
+	 */
+	protected void move(int index, Particle particle) {
+		ParticleStorage from = particle.storage;
+		int fromIndex = particle.index;
+		this.particles[index] = particle;
+		this.isolated[index] = false;
+		if (from != null) {
+			this.x[index] = from.x[fromIndex];
+			this.y[index] = from.y[fromIndex];
+			this.lastX[index] = from.lastX[fromIndex];
+			this.lastY[index] = from.lastY[fromIndex];
+			this.prevX[index] = from.prevX[fromIndex];
+			this.prevY[index] = from.prevY[fromIndex];
+			this.ax[index] = from.ax[fromIndex];
+			this.ay[index] = from.ay[fromIndex];
+			this.mass[index] = from.mass[fromIndex];
+			this.invMass[index] = from.invMass[fromIndex];
+			from.clear(fromIndex);
+		}
+		particle.storage = this;
+		particle.index = index;
+		// The compiled Constrains of the owner depend on the masses
+		if (this.owner != null) this.owner.markTopologyChanged();
+	}
+	
+	/**
+	 * Frees the slot of a Particle, the slot stays empty and is skipped by the PhysicSolver.
+	 * The Particle keeps its state in a new detached storage.
+	 * @param index The index of the Particle
+	 */
+	protected void release(int index) {
+		Particle particle = this.particles[index];
+		if (particle != null) {
+			detached().add(particle);
+		} else {
+			clear(index);
+		}
+	}
+	
+	protected void clear(int index) {
+		this.particles[index] = null;
+		this.mass[index] = 0;
+		this.invMass[index] = 0;
+		this.isolated[index] = false;
+	}
+
+	/**
+	 * Grows the arrays so that they can hold at least the given number of slots without growing again
+	 * @param capacity The number of slots
+	 */
+	public void ensureCapacity(int capacity) {
+		if (this.particles.length < capacity) grow(capacity);
+	}
+
+	protected void grow(int capacity) {
+		this.particles = Arrays.copyOf(this.particles, capacity);
+		this.x = Arrays.copyOf(this.x, capacity);
+		this.y = Arrays.copyOf(this.y, capacity);
+		this.lastX = Arrays.copyOf(this.lastX, capacity);
+		this.lastY = Arrays.copyOf(this.lastY, capacity);
+		this.prevX = Arrays.copyOf(this.prevX, capacity);
+		this.prevY = Arrays.copyOf(this.prevY, capacity);
+		this.ax = Arrays.copyOf(this.ax, capacity);
+		this.ay = Arrays.copyOf(this.ay, capacity);
+		this.mass = Arrays.copyOf(this.mass, capacity);
+		this.invMass = Arrays.copyOf(this.invMass, capacity);
+		this.isolated = Arrays.copyOf(this.isolated, capacity);
+	}
+
+	/**
+	 * Keeps the current positions of all Particles as their previous positions, called by the PhysicSolver at the start of every simulation-step
+	 */
+	public void savePrevious() {
+		System.arraycopy(this.x, 0, this.prevX, 0, this.size);
+		System.arraycopy(this.y, 0, this.prevY, 0, this.size);
+	}
+	
+	/**
+	 * Changes the mass of a Particle, the compiled Constrains of the owner are rebuilt in the next simulation-step
+	 * @param index The index of the slot
+	 * @param mass The new mass
+	 */
+	protected void setMass(int index, float mass) {
+		this.mass[index] = mass;
+		this.invMass[index] = mass > 0 ? 1 / (double) mass : 0;
+		if (this.owner != null) this.owner.markTopologyChanged();
+	}
+	
+	/**
+	 * Wakes up the owner of this storage, called if a Particle is changed from outside of the PhysicSolver
+	 */
+	protected void wakeOwner() {
+		if (this.owner != null && this.owner.sleeping) this.owner.wakeUp();
+	}
+
+	/**
+	 * Gets the SoftBody that owns this storage
+	 * @return The owner or null if the storage is not owned by a SoftBody
+	 */
+	public SoftBody getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Checks if this is the single-slot storage of a Particle that is not added to a SoftBody or the PhysicWorld
+	 * @return true if the storage is detached
+	 */
+	public boolean isDetached() {
+		return detached;
+	}
+
+	/**
+	 * Gets the number of slots in this storage, this includes the empty slots of moved Particles
+	 * @return The number of slots
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks if a Particle has lost all its Constrains, isolated Particles are still moved but do not collide with any Constrain
+	 * @param index The index of the slot
+	 * @return true if the Particle is isolated
+	 */
+	public boolean isIsolated(int index) {
+		return isolated[index];
+	}
+	
+	/**
+	 * Changes if a Particle is isolated, done by the SoftBody when its broken Constrains are removed or a new Constrain is added
+	 * @param index The index of the slot
+	 * @param isolated true if the Particle has no Constrains
+	 */
+	protected void setIsolated(int index, boolean isolated) {
+		this.isolated[index] = isolated;
+	}
+	
+	/**
+	 * Gets the Particle that uses the given slot
+	 * @param index The index of the slot
+	 * @return The Particle or null if the slot is empty
+	 */
+	public Particle getParticle(int index) {
+		return particles[index];
+	}
+
+}
@@ -1,6 +1,10 @@
 package jnet.physic;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import javax.management.RuntimeErrorException;
 
@@ -17,12 +21,70 @@ import jnet.util.Vec2d;
  */
 public class PhysicSolver {
 	
+	// The depth of a collision is divided by this value for the motion of the Particle and of the Constrain
+	protected static final float CONTACT_SPLIT = 1.9F;
+	
 	protected int itterationCount;
 	protected PhysicWorld world;
+	protected CollisionGrid collisionGrid;
+	protected SimulationIslands islands;
+	protected SolverContext context;
+	protected ForkJoinPool parallelPool;
+	protected int parallelThreshold;
+	protected boolean parallelIslands;
+	protected IslandPassTask islandPass;
+	protected double sleepThreshold;
+	protected int sleepSteps;
+	protected float fixedTimeStep;
+	protected int maxSubSteps;
+	protected double accumulator;
+	// Set during step(), the snapshot is published once with the interpolation factor at its end
+	protected boolean stepping;
+	protected ForceModel forceModel;
+	protected boolean adaptiveItterations;
+	protected int minItterationCount;
+	protected double lengthTolerance;
+	protected double depthTolerance;
+	protected int usedItterations;
+	protected ISegmentKernel segmentKernel;
+	protected float warmStartFactor;
+	protected int contactLifetime;
+	protected SnapshotBuffer snapshotBuffer;
+	protected StepListener stepListener;
+	protected long stepCount;
+	
+	// Temporary vectors, used by the methods that work directly on the Particles to avoid allocations
+	protected Vec2d tempA = new Vec2d();
+	protected Vec2d tempB = new Vec2d();
+	protected Vec2d tempC = new Vec2d();
+	protected Vec2d tempD = new Vec2d();
+	protected Vec2d tempPosA = new Vec2d();
+	protected Vec2d tempPosB = new Vec2d();
+	protected Vec2d tempPosC = new Vec2d();
+	protected Vec2d tempPosD = new Vec2d();
+	protected Contact tempContact = Contact.reusableContact();
 	
 	public PhysicSolver(PhysicWorld world) {
 		this.world = world;
 		this.itterationCount = JNet.DEFAULT_NUM_ITTERATIONS;
+		this.collisionGrid = new CollisionGrid(JNet.DEFAULT_GRID_CELL_SIZE);
+		this.islands = new SimulationIslands();
+		this.context = new SolverContext();
+		this.parallelThreshold = JNet.DEFAULT_PARALLEL_THRESHOLD;
+		this.parallelIslands = true;
+		this.islandPass = new IslandPassTask();
+		this.sleepThreshold = JNet.DEFAULT_SLEEP_THRESHOLD;
+		this.sleepSteps = JNet.DEFAULT_SLEEP_STEPS;
+		this.fixedTimeStep = JNet.DEFAULT_FIXED_TIME_STEP;
+		this.maxSubSteps = JNet.DEFAULT_MAX_SUB_STEPS;
+		this.forceModel = ForceModel.ANGLE;
+		this.minItterationCount = JNet.DEFAULT_MIN_ITTERATIONS;
+		this.lengthTolerance = JNet.DEFAULT_LENGTH_TOLERANCE;
+		this.depthTolerance = JNet.DEFAULT_DEPTH_TOLERANCE;
+		this.segmentKernel = JNet.setupSegmentKernel();
+		this.warmStartFactor = JNet.DEFAULT_WARM_START_FACTOR;
+		this.contactLifetime = JNet.DEFAULT_CONTACT_LIFETIME;
+		this.stepListener = new StepListener.DummyListener();
 	}
 	
 	/**
@@ -58,7 +120,362 @@ public class PhysicSolver {
 	}
 	
 	/**
-	 * Perform a single simulation-step in the current world
+	 * Enables the adaptive number of iterations, the Joints and each SoftBody stop iterating as soon as the largest relative length error of the Constrains and the largest collision depth of an iteration are under the tolerances.
+	 * The number of iterations is then between the minimal iteration count and the iteration count.
+	 * @param adaptiveItterations true to stop iterating if the tolerances are reached
+	 */
+	public void setAdaptiveItterations(boolean adaptiveItterations) {
+		this.adaptiveItterations = adaptiveItterations;
+	}
+	
+	public boolean isAdaptiveItterations() {
+		return adaptiveItterations;
+	}
+	
+	/**
+	 * Changes the number of iterations that are always performed, if the number of iterations is adaptive
+	 * @param minItterationCount The minimal number of iterations
+	 */
+	public void setMinItterationCount(int minItterationCount) {
+		if (minItterationCount < 1) throw new RuntimeException(new IllegalArgumentException("The minimal number of iterations has to be at least 1!"));
+		this.minItterationCount = minItterationCount;
+	}
+	
+	public int getMinItterationCount() {
+		return minItterationCount;
+	}
+	
+	/**
+	 * Changes the tolerances under that the iterations are stopped, if the number of iterations is adaptive
+	 * @param lengthTolerance The maximal length error of the Constrains, relative to their current length
+	 * @param depthTolerance The maximal depth of the collisions
+	 */
+	public void setTolerances(double lengthTolerance, double depthTolerance) {
+		if (lengthTolerance < 0 || depthTolerance < 0) throw new RuntimeException(new IllegalArgumentException("The tolerances can not be negative!"));
+		this.lengthTolerance = lengthTolerance;
+		this.depthTolerance = depthTolerance;
+	}
+	
+	public double getLengthTolerance() {
+		return lengthTolerance;
+	}
+	
+	public double getDepthTolerance() {
+		return depthTolerance;
+	}
+	
+	/**
+	 * Changes the part of the collision-corrections of the last step that is applied at the start of the next step.
+	 * Collisions that persist over multiple steps (like resting contacts) start close to their solution and need less iterations, the warm start never pushes a Particle past the Constrain.
+	 * @param warmStartFactor The part of the last correction between 0 and 1, 0 (the default) disables the contact cache
+	 */
+	public void setWarmStartFactor(float warmStartFactor) {
+		if (warmStartFactor < 0 || warmStartFactor > 1) throw new RuntimeException(new IllegalArgumentException("The warm start factor has to be between 0 and 1!"));
+		this.warmStartFactor = warmStartFactor;
+	}
+	
+	public float getWarmStartFactor() {
+		return warmStartFactor;
+	}
+	
+	/**
+	 * Changes the number of steps a collision is kept in the contact cache, after it was solved the last time
+	 * @param contactLifetime The number of steps, at least 1
+	 */
+	public void setContactLifetime(int contactLifetime) {
+		if (contactLifetime < 1) throw new RuntimeException(new IllegalArgumentException("The contact lifetime has to be at least 1!"));
+		this.contactLifetime = contactLifetime;
+	}
+	
+	public int getContactLifetime() {
+		return contactLifetime;
+	}
+	
+	/**
+	 * Gets the largest number of iterations that was used by the Joints or a SoftBody in the last step (see SoftBody.getUsedItterations())
+	 * @return The number of iterations of the last step
+	 */
+	public int getUsedItterations() {
+		return usedItterations;
+	}
+	
+	/**
+	 * Checks if the iterations can be stopped
+	 * @param itterations The number of performed iterations
+	 * @param lengthError The largest relative length error of the Constrains in the last iteration
+	 * @param depth The largest collision depth in the last iteration
+	 * @return true if the number of iterations is adaptive and the tolerances are reached
+	 */
+	protected boolean isConverged(int itterations, double lengthError, double depth) {
+		return this.adaptiveItterations && itterations >= this.minItterationCount && lengthError <= this.lengthTolerance && depth <= this.depthTolerance;
+	}
+	
+	/**
+	 * Changes the cell size of the collision grid, that is used to find the Constrains near a Particle.
+	 * Should be around the length of the typical Constrain, smaller cells make the queries more precise, but each Constrain covers more cells.
+	 * @param cellSize The edge length of a single cell of the collision grid
+	 */
+	public void setGridCellSize(double cellSize) {
+		this.collisionGrid.setCellSize(cellSize);
+	}
+	
+	/**
+	 * Gets the cell size of the collision grid, that is used to find the Constrains near a Particle
+	 * @return The edge length of a single cell of the collision grid
+	 */
+	public double getGridCellSize() {
+		return this.collisionGrid.getCellSize();
+	}
+	
+	/**
+	 * Enables the parallel solving on the given pool.
+	 * Independent simulation islands are solved at the same time (see setParallelIslands()), additionally the Constrains of each large SoftBody are colored so that no two Constrains of a color share a Particle.
+	 * The colors are solved one after another, the Constrains of a color are split in tasks that are solved at the same time.
+	 * @param parallelPool The ForkJoinPool to solve the SoftBodys and Constrains on or null to solve them sequentially
+	 */
+	public void setParallelPool(ForkJoinPool parallelPool) {
+		this.parallelPool = parallelPool;
+	}
+	
+	/**
+	 * Gets the ForkJoinPool used to solve the Constrains in parallel
+	 * @return The ForkJoinPool or null if the Constrains are solved sequentially
+	 */
+	public ForkJoinPool getParallelPool() {
+		return parallelPool;
+	}
+	
+	/**
+	 * Changes the minimal number of Constrains per task, colors with less Constrains are solved on the calling thread
+	 * @param parallelThreshold The minimal number of Constrains per task
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		if (parallelThreshold < 1) throw new RuntimeException(new IllegalArgumentException("The parallel threshold has to be at least 1!"));
+		this.parallelThreshold = parallelThreshold;
+	}
+	
+	/**
+	 * Gets the minimal number of Constrains per task, colors with less Constrains are solved on the calling thread
+	 * @return The minimal number of Constrains per task
+	 */
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Enables the parallel solving of the simulation islands, only has an effect if a ForkJoinPool is set.
+	 * SoftBodys that are not connected by Joints or shared Particles and whose swept bounding-boxes do not overlap can not interact in a step and are solved as independent tasks.
+	 * The result is the same as the sequential solving, but the ContactListeners are called from multiple threads and have to be thread-safe.
+	 * @param parallelIslands true to solve the islands in parallel
+	 */
+	public void setParallelIslands(boolean parallelIslands) {
+		this.parallelIslands = parallelIslands;
+	}
+	
+	/**
+	 * Checks if the simulation islands are solved in parallel
+	 * @return true if the islands are solved in parallel, when a ForkJoinPool is set
+	 */
+	public boolean isParallelIslands() {
+		return parallelIslands;
+	}
+	
+	/**
+	 * Changes the motion per step under that a Particle counts as resting, a SoftBody whose Particles all rest for the number of sleep steps is put to sleep.
+	 * Sleeping SoftBodys are not integrated and their Constrains are not solved, but other SoftBodys still collide with them.
+	 * They wake up if they get hit by a Particle of an other SoftBody, if a Joint to a moving SoftBody pulls on them, if one of their Particles is changed or if SoftBody.wakeUp() is called.
+	 * The sleeping is disabled by default (see JNet.DEFAULT_SLEEP_THRESHOLD).
+	 * @param sleepThreshold The length of the motion-vector under that a Particle counts as resting, 0 to disable the sleeping
+	 */
+	public void setSleepThreshold(double sleepThreshold) {
+		if (sleepThreshold < 0) throw new RuntimeException(new IllegalArgumentException("The sleep threshold can not be negative!"));
+		this.sleepThreshold = sleepThreshold;
+	}
+	
+	/**
+	 * Gets the motion per step under that a Particle counts as resting
+	 * @return The length of the motion-vector under that a Particle counts as resting, 0 if the sleeping is disabled
+	 */
+	public double getSleepThreshold() {
+		return sleepThreshold;
+	}
+	
+	/**
+	 * Changes the number of steps that all Particles of a SoftBody have to rest, before it is put to sleep
+	 * @param sleepSteps The number of steps
+	 */
+	public void setSleepSteps(int sleepSteps) {
+		if (sleepSteps < 1) throw new RuntimeException(new IllegalArgumentException("The number of sleep steps has to be at least 1!"));
+		this.sleepSteps = sleepSteps;
+	}
+	
+	/**
+	 * Gets the number of steps that all Particles of a SoftBody have to rest, before it is put to sleep
+	 * @return The number of steps
+	 */
+	public int getSleepSteps() {
+		return sleepSteps;
+	}
+	
+	/**
+	 * Changes the model that is used to estimate the force on a Constrain, the force decides if a Constrain with a deformForce deforms permanently
+	 * @param forceModel The ForceModel to use
+	 */
+	public void setForceModel(ForceModel forceModel) {
+		if (forceModel == null) throw new RuntimeException(new IllegalArgumentException("The force model can not be null!"));
+		this.forceModel = forceModel;
+	}
+	
+	/**
+	 * Gets the model that is used to estimate the force on a Constrain
+	 * @return The ForceModel
+	 */
+	public ForceModel getForceModel() {
+		return forceModel;
+	}
+	
+	/**
+	 * Changes the kernel that tests the paths of the Particles against the Constrains near them
+	 * @param segmentKernel The ISegmentKernel to use
+	 */
+	public void setSegmentKernel(ISegmentKernel segmentKernel) {
+		if (segmentKernel == null) throw new RuntimeException(new IllegalArgumentException("The segment kernel can not be null!"));
+		this.segmentKernel = segmentKernel;
+	}
+	
+	/**
+	 * Gets the kernel that tests the paths of the Particles against the Constrains near them
+	 * @return The ISegmentKernel, by default the fastest available one (see JNet.setupSegmentKernel())
+	 */
+	public ISegmentKernel getSegmentKernel() {
+		return segmentKernel;
+	}
+	
+	/**
+	 * Changes the size of the simulation-steps that are performed by step()
+	 * @param fixedTimeStep The size of a single simulation-step
+	 */
+	public void setFixedTimeStep(float fixedTimeStep) {
+		if (!(fixedTimeStep > 0)) throw new RuntimeException(new IllegalArgumentException("The fixed time step has to be positive!"));
+		this.fixedTimeStep = fixedTimeStep;
+	}
+	
+	/**
+	 * Gets the size of the simulation-steps that are performed by step()
+	 * @return The size of a single simulation-step
+	 */
+	public float getFixedTimeStep() {
+		return fixedTimeStep;
+	}
+	
+	/**
+	 * Changes the maximal number of simulation-steps that are performed by a single call of step(), the remaining time is dropped.
+	 * This prevents that the simulation falls further behind each call if a step takes longer than the time it simulates.
+	 * @param maxSubSteps The maximal number of simulation-steps per call
+	 */
+	public void setMaxSubSteps(int maxSubSteps) {
+		if (maxSubSteps < 1) throw new RuntimeException(new IllegalArgumentException("The maximal number of sub steps has to be at least 1!"));
+		this.maxSubSteps = maxSubSteps;
+	}
+	
+	/**
+	 * Gets the maximal number of simulation-steps that are performed by a single call of step()
+	 * @return The maximal number of simulation-steps per call
+	 */
+	public int getMaxSubSteps() {
+		return maxSubSteps;
+	}
+	
+	/**
+	 * Advances the simulation by the elapsed time, using simulation-steps of the fixed size.
+	 * The time that is not enough for a whole step is kept for the next call, so the simulated time matches the elapsed time independent of the rate this method is called with.
+	 * @param elapsedTime The elapsed time since the last call, in the time unit of the simulation (the real time has to be scaled to make the simulation run faster or slower)
+	 * @return The number of performed simulation-steps
+	 */
+	public int step(double elapsedTime) {
+		if (elapsedTime < 0) throw new RuntimeException(new IllegalArgumentException("The elapsed time can not be negative!"));
+		this.accumulator += elapsedTime;
+		int subSteps = 0;
+		this.stepping = true;
+		try {
+			while (this.accumulator >= this.fixedTimeStep && subSteps < this.maxSubSteps) {
+				solve(this.fixedTimeStep);
+				this.accumulator -= this.fixedTimeStep;
+				subSteps++;
+			}
+		} finally {
+			this.stepping = false;
+		}
+		// Drop the time that could not be simulated, only the fraction of a step is kept for the interpolation
+		if (this.accumulator >= this.fixedTimeStep) this.accumulator %= this.fixedTimeStep;
+		
+		// Publish the state together with its interpolation factor, also if no step was performed, so the reader sees the factor grow between the steps
+		if (this.snapshotBuffer != null) {
+			this.world.lock();
+			try {
+				this.snapshotBuffer.publish(this.world, this.stepCount, getInterpolationAlpha());
+			} finally {
+				this.world.unlock();
+			}
+		}
+		return subSteps;
+	}
+	
+	/**
+	 * Gets the factor to interpolate between the previous and the current positions of the Particles (Particle.getInterpolatedPos()), so that the rendering is smooth if the rate of step() calls and the rate of the steps differ.
+	 * Must only be called by the thread that calls step(), other threads have to use the factor of the published snapshot (see WorldSnapshot.getInterpolationAlpha()).
+	 * @return The fraction of a fixed step that is left in the accumulator of step(), between 0 and 1
+	 */
+	public double getInterpolationAlpha() {
+		return this.accumulator / this.fixedTimeStep;
+	}
+	
+	/**
+	 * Sets the SnapshotBuffer that receives a copy of the state of the world at the end of every simulation-step of solve(), or once at the end of every call of step() together with the interpolation factor.
+	 * Other threads (like the renderer) can read the snapshots without locks, while the solver runs the next step.
+	 * @param snapshotBuffer The SnapshotBuffer or null to disable the snapshots
+	 */
+	public void setSnapshotBuffer(SnapshotBuffer snapshotBuffer) {
+		this.snapshotBuffer = snapshotBuffer;
+	}
+	
+	public SnapshotBuffer getSnapshotBuffer() {
+		return snapshotBuffer;
+	}
+	
+	/**
+	 * Sets the StepListener that is called before and after every simulation-step (for example a ReplayRecorder)
+	 * @param stepListener The StepListener or null to remove the current one
+	 */
+	public void setStepListener(StepListener stepListener) {
+		this.stepListener = stepListener != null ? stepListener : new StepListener.DummyListener();
+	}
+	
+	public StepListener getStepListener() {
+		return stepListener;
+	}
+	
+	/**
+	 * Gets the number of simulation-steps performed by this solver
+	 * @return The number of steps
+	 */
+	public long getStepCount() {
+		return stepCount;
+	}
+	
+	/**
+	 * Gets the simulation islands of the last step
+	 * @return The SimulationIslands, only valid after a call to solve()
+	 */
+	public SimulationIslands getIslands() {
+		return islands;
+	}
+	
+	/**
+	 * Perform a single simulation-step in the current world.
+	 * The Particles are views of the ParticleStorages the step works on, ContactListeners that are called during the step see the positions of the current iteration.
+	 * SoftBodys and Joints that are added or removed during the step (for example by a ContactListener) are added or removed at its end.
+	 * The StepListener is called before the step and after these changes.
 	 * @param timeStep The size of the simulation-step, larger steps make the simulation faster, but less accurate
 	 */
 	public void solve(float timeStep) {
@@ -67,90 +484,400 @@ public class PhysicSolver {
 			throw new RuntimeErrorException(new Error("Cant run without world set!"), "Error on run PhysicSolver!");
 		}
 		
+		this.stepListener.beforeStep(this, timeStep);
+		
+		this.world.lock();
+		try {
+			solveStep(timeStep);
+		} finally {
+			this.world.unlock();
+		}
+		
+		this.stepListener.afterStep(this, timeStep);
+		
+	}
+	
+	/**
+	 * Performs the simulation-step, the world is locked during the call
+	 * @param timeStep The size of the simulation-step
+	 */
+	protected void solveStep(float timeStep) {
+		
+		List<SoftBody> bodys = this.world.getSoftBodys();
+		List<Constrain> joints = this.world.getJoints();
+		
+		// Keep the positions before the step for the interpolation, the Particles are views of the storages so nothing else has to be loaded
+		this.world.getJointStorage().savePrevious();
+		for (int i = 0; i < bodys.size(); i++) bodys.get(i).getStorage().savePrevious();
+		
 		// Solve Joints
-		for (int itteration = 0; itteration < itterationCount; itteration++) {
-			for (Constrain constrain : this.world.getJoints()) {
-				if (!constrain.broken) {
-					constrain(itteration + 1, constrain);
+		for (int i = 0; i < joints.size(); i++) {
+			Constrain constrain = joints.get(i);
+			if (!constrain.isBound()) {
+				constrain.bind();
+				this.world.indexJoint(constrain);
+			}
+			if (!constrain.broken && constrain.storageA != null && constrain.storageB != null) wakeByJoint(constrain);
+		}
+		int jointItterations = 0;
+		while (jointItterations < itterationCount && !joints.isEmpty()) {
+			double lengthError = 0;
+			for (int i = 0; i < joints.size(); i++) {
+				Constrain constrain = joints.get(i);
+				if (!constrain.broken && constrain.storageA != null && constrain.storageB != null && !isSleeping(constrain.storageA) && !isSleeping(constrain.storageB)) {
+					lengthError = Math.max(lengthError, solveConstrain(jointItterations + 1, constrain));
 				}
 			}
+			if (isConverged(++jointItterations, lengthError, 0)) break;
 		}
-				
-		// Solve Objects
-		this.world.getSoftBodys().forEach((shape) -> {
+		this.usedItterations = jointItterations;
+		
+		// Integrator, also updates the swept bounding-boxes of the objects, sleeping objects are not moved
+		for (int i = 0; i < bodys.size(); i++) {
+			SoftBody shape = bodys.get(i);
+			ParticleStorage storage = shape.getStorage();
+			shape.resetBounds();
+			for (int particle = 0; particle < storage.size; particle++) {
+				if (storage.particles[particle] == null) continue;
+				if (!shape.sleeping) integrate(timeStep, storage, particle);
+				shape.expandBounds(storage, particle);
+			}
+			shape.padBounds();
+		}
+		
+		// Broad-phase, sort the Constrains of all objects in the grid
+		this.collisionGrid.rebuild(bodys);
+		
+		// Solve Objects, independent islands in parallel if enabled
+		if (this.parallelPool != null && this.parallelIslands) {
+			this.islands.build(this.world);
+			if (this.islands.getIslandCount() > 1) {
+				this.islandPass.reinitialize();
+				invokeTask(this.islandPass);
+			} else {
+				for (int i = 0; i < bodys.size(); i++) solveBody(bodys.get(i), this.context);
+			}
+		} else {
+			for (int i = 0; i < bodys.size(); i++) solveBody(bodys.get(i), this.context);
+		}
+		
+		for (int i = 0; i < bodys.size(); i++) {
+			this.usedItterations = Math.max(this.usedItterations, bodys.get(i).usedItterations);
+		}
+		
+		// Move the broken Constrains and Joints out of the lists, the lists of broken ones only keep the ones of this step (clone instances share the lists, so all are cleared first)
+		this.world.clearBrokenJoints();
+		for (int i = 0; i < bodys.size(); i++) bodys.get(i).clearBrokenConstrains();
+		this.world.compactJoints();
+		List<Constrain> remainingJoints = this.world.getJoints();
+		BreakageListener breakageListener = this.world.getBreakageListener();
+		for (int i = 0; i < bodys.size(); i++) bodys.get(i).compactConstrains(breakageListener, remainingJoints);
+		
+		// Publish the new state for other threads
+		this.stepCount++;
+		if (this.snapshotBuffer != null && !this.stepping) this.snapshotBuffer.publish(this.world, this.stepCount);
+		
+	}
+	
+	/**
+	 * Solves the Constrains and collisions of a single SoftBody for all iterations and resets the accelerations of its Particles, used by solve()
+	 * @param shape The SoftBody to solve
+	 * @param context The SolverContext of the calling thread
+	 */
+	protected void solveBody(SoftBody shape, SolverContext context) {
+		
+		shape.usedItterations = 0;
+		if (shape.sleeping) return;
+		ParticleStorage storage = shape.getStorage();
+		List<Constrain> constrains = shape.getConstrains();
+		ConstrainBatches batches = shape.getBatches();
+		if (!batches.isValid(shape, this.itterationCount)) batches.build(shape, this.itterationCount);
+		
+		// Update the coloring, if the Constrains are solved in parallel
+		boolean parallel = this.parallelPool != null && constrains.size() >= this.parallelThreshold * 2;
+		if (parallel && !shape.getColoring().isValid(shape)) shape.getColoring().build(shape);
+		
+		// Apply the collisions of the last step
+		if (this.warmStartFactor > 0) warmStart(shape);
+		
+		for (int itteration = 0; itteration < itterationCount; itteration++) {
 			
-			// Integrator
-			shape.getParticles().forEach((point) -> {
-				integrate(timeStep, point);
-			});
+			// Satisfy Constrains
+			double lengthError = 0;
+			if (parallel) {
+				ConstrainPassTask constrainPass = context.constrainPass;
+				constrainPass.reinitialize();
+				constrainPass.body = shape;
+				constrainPass.itteration = itteration + 1;
+				invokeTask(constrainPass);
+				lengthError = constrainPass.lengthError;
+			} else {
+				for (int batch = 0; batch < batches.getBatchCount(); batch++) {
+					double stiffness = batches.getStiffness(batch, itteration + 1);
+					for (int i = batches.getBatchStart(batch); i < batches.getBatchEnd(batch); i++) {
+						int index = batches.getConstrain(i);
+						Constrain constrain = constrains.get(index);
+						if (!constrain.broken) {
+							lengthError = Math.max(lengthError, solveConstrain(constrain, stiffness, batches.getWeightA(index), batches.getWeightB(index)));
+						}
+					}
+				}
+			}
 			
-			for (int itteration = 0; itteration < itterationCount; itteration++) {
-				
-				// Satisfy Constrains
-				for (Constrain constrain : shape.getConstrains()) {
-					if (!constrain.broken) {
-						constrain(itteration + 1, constrain);
+			// Check Constrain-collisions
+			ContactBuffer contacts = context.contacts;
+			CollisionGrid.Candidates candidates = context.candidates;
+			SegmentBatch segments = context.segments;
+			contacts.clear();
+			// The Particles of a SoftBody without category or mask can not collide with anything
+			int collidingParticles = shape.collisionCategory != 0 && shape.collisionMask != 0 ? storage.size : 0;
+			for (int index = 0; index < collidingParticles; index++) {
+				Particle particle = storage.particles[index];
+				if (particle == null || storage.isolated[index]) continue;
+				double minX = Math.min(storage.x[index], storage.lastX[index]);
+				double minY = Math.min(storage.y[index], storage.lastY[index]);
+				double maxX = Math.max(storage.x[index], storage.lastX[index]);
+				double maxY = Math.max(storage.y[index], storage.lastY[index]);
+				int candidateCount = this.collisionGrid.query(minX, minY, maxX, maxY, candidates);
+				SoftBody lastBody = null;
+				boolean lastOverlaps = false;
+				boolean lastFiltered = false;
+				segments.clear();
+				for (int i = 0; i < candidateCount; i++) {
+					// Mid-phase, skip the Constrains of objects that can not touch this one in this step
+					SoftBody shape2 = candidates.getBody(i);
+					if (shape2 != lastBody) {
+						lastBody = shape2;
+						lastOverlaps = shape2 == shape ? shape.selfCollision : shape.overlaps(shape2);
+						lastFiltered = !shape.shouldCollide(shape2);
+					}
+					if (!lastOverlaps) continue;
+					
+					// Collision-filter, skip the Constrains that are on layers this SoftBody does not collide with
+					Constrain constrain = candidates.getConstrain(i);
+					if (constrain.overridesFilter ? !SoftBody.shouldCollide(shape.collisionCategory, shape.collisionMask, constrain.collisionCategory, constrain.collisionMask) : lastFiltered) continue;
+					if (constrain.pointA != particle && constrain.pointB != particle && !constrain.broken) {
+						segments.add(constrain.storageA.x[constrain.indexA], constrain.storageA.y[constrain.indexA], constrain.storageB.x[constrain.indexB], constrain.storageB.y[constrain.indexB], i);
 					}
 				}
 				
-				// Check Constrain-collisions
-				HashMap<Contact, SoftBody> collisions = new HashMap<Contact, SoftBody>();
-				shape.getParticles().forEach((particle) -> {
-					this.world.getSoftBodys().forEach((shape2) -> shape2.getConstrains().forEach((constrain) -> {
-						if (constrain.pointA != particle && constrain.pointB != particle && !constrain.broken) {
-							Contact contact = checkContact(particle, constrain);
-							if (contact.isCollision()) collisions.put(contact, shape2);
-						}
-					}));
-				});
-				
-				// Solve contacts
-				collisions.keySet().forEach((collision) -> {
-					if (this.world.getContactListener().beginContact(collision)) {
-						boolean processCollision = true;
-						SoftBody shape2 = collisions.get(collision);
-						if (shape == shape2) {
-							if (!shape.getContactListener().beginContact(collision)) processCollision = false;
-						} else {
-							if (!shape.getContactListener().beginContact(collision) && !shape2.getContactListener().beginContact(collision)) processCollision = false;
-						}
-						if (processCollision) {
-							solveCollision(collision);
-							shape.getContactListener().endContact(collision);
-							if (shape != shape2) shape2.getContactListener().endContact(collision);
-						}
-						this.world.getContactListener().endContact(collision);
+				// Intersect the path of the Particle with all remaining Constrains at once
+				int hitCount = this.segmentKernel.intersect(storage.x[index], storage.y[index], storage.lastX[index], storage.lastY[index], segments);
+				for (int hit = 0; hit < hitCount; hit++) {
+					int segment = segments.getHit(hit);
+					int candidate = segments.getTag(segment);
+					addContact(shape, index, candidates.getBody(candidate), candidates.getIndex(candidate), segments.getAX(segment), segments.getAY(segment), segments.getBX(segment), segments.getBY(segment), contacts);
+				}
+			}
+			
+			// Solve contacts
+			double depth = 0;
+			for (int i = 0; i < contacts.size(); i++) {
+				Contact collision = getContactView(context, i);
+				if (this.world.getContactListener().beginContact(collision)) {
+					boolean processCollision = true;
+					SoftBody shape2 = contacts.getConstrainBody(i);
+					if (shape == shape2) {
+						if (!shape.getContactListener().beginContact(collision)) processCollision = false;
+					} else {
+						if (!shape.getContactListener().beginContact(collision) && !shape2.getContactListener().beginContact(collision)) processCollision = false;
 					}
-				});
-				
+					if (processCollision) {
+						solveContact(contacts, i);
+						depth = Math.max(depth, contacts.getDepth(i));
+						if (this.warmStartFactor > 0) shape.contactCache.touch(contacts.getParticle(i), shape2, collision.constrain, contacts.getNormalX(i), contacts.getNormalY(i), contacts.getDepth(i) / CONTACT_SPLIT);
+						if (shape2.sleeping) shape2.wakeUp();
+						shape.getContactListener().endContact(collision);
+						if (shape != shape2) shape2.getContactListener().endContact(collision);
+					}
+					this.world.getContactListener().endContact(collision);
+				}
 			}
 			
-			// Accumulate Global Forces
-			shape.getParticles().forEach((point) -> {
-				point.acceleration = new Vec2d(world.getGlobalForce());
-			});
+			shape.usedItterations = itteration + 1;
+			if (isConverged(itteration + 1, lengthError, depth)) break;
 			
-		});
+		}
 		
+		// Accumulate Global Forces
+		Vec2d globalForce = world.getGlobalForce();
+		for (int index = 0; index < storage.size; index++) {
+			storage.ax[index] = globalForce.x;
+			storage.ay[index] = globalForce.y;
+		}
+		
+		// Put the object to sleep, if all Particles have rested long enough
+		if (this.sleepThreshold > 0) {
+			if (isResting(storage)) {
+				if (++shape.restSteps >= this.sleepSteps) {
+					shape.sleeping = true;
+					for (int index = 0; index < storage.size; index++) {
+						storage.lastX[index] = storage.x[index];
+						storage.lastY[index] = storage.y[index];
+					}
+				}
+			} else {
+				shape.restSteps = 0;
+			}
+		}
+		
+	}
+	
+	/**
+	 * Checks if the motion of all Particles in the ParticleStorage is under the sleep threshold
+	 * @param storage The ParticleStorage to check
+	 * @return true if all Particles are resting
+	 */
+	protected boolean isResting(ParticleStorage storage) {
+		double threshold2 = this.sleepThreshold * this.sleepThreshold;
+		for (int index = 0; index < storage.size; index++) {
+			if (storage.particles[index] == null) continue;
+			double motionX = storage.x[index] - storage.lastX[index];
+			double motionY = storage.y[index] - storage.lastY[index];
+			if (motionX * motionX + motionY * motionY >= threshold2) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks if a Particle belongs to a sleeping SoftBody
+	 * @param storage The ParticleStorage of the Particle
+	 * @return true if the owner of the storage is sleeping
+	 */
+	protected static boolean isSleeping(ParticleStorage storage) {
+		return storage.owner != null && storage.owner.sleeping;
+	}
+	
+	/**
+	 * Wakes up the SoftBody on one side of the Joint, if the Particle on the other side belongs to an awake SoftBody and is moving.
+	 * Joints with a sleeping side are not solved, so two resting SoftBodys that are connected by a Joint can sleep.
+	 * @param joint The Joint to check, has to be bound to its ParticleStorages
+	 */
+	protected void wakeByJoint(Constrain joint) {
+		ParticleStorage storageA = joint.storageA;
+		ParticleStorage storageB = joint.storageB;
+		if (isSleeping(storageA) && storageB.owner != null && !storageB.owner.sleeping && isMoving(storageB, joint.indexB)) storageA.owner.wakeUp();
+		if (isSleeping(storageB) && storageA.owner != null && !storageA.owner.sleeping && isMoving(storageA, joint.indexA)) storageB.owner.wakeUp();
+	}
+	
+	protected boolean isMoving(ParticleStorage storage, int index) {
+		double motionX = storage.x[index] - storage.lastX[index];
+		double motionY = storage.y[index] - storage.lastY[index];
+		return motionX * motionX + motionY * motionY >= this.sleepThreshold * this.sleepThreshold;
+	}
+	
+	/**
+	 * Runs a task on the ForkJoinPool, directly on the calling thread if it is already a worker of a pool
+	 * @param task The task to run
+	 */
+	protected void invokeTask(ForkJoinTask<?> task) {
+		if (ForkJoinTask.inForkJoinPool()) {
+			task.invoke();
+		} else {
+			this.parallelPool.invoke(task);
+		}
 	}
 	
 	/**
-	 * Solve a single constrain (restore original length, if deformed)
+	 * Solve a single constrain (restore original length, if deformed), works on the ParticleStorages and is used by solve() for the Joints
+	 * @param itteration The number of the iteration, used to calculate the strength of the "reform-force", higher number -> less strength
+	 * @param constrain The Constrain to reform, has to be bound to its ParticleStorages
+	 * @return The length error of the Constrain before the correction, relative to its current length
+	 */
+	public double solveConstrain(int itteration, Constrain constrain) {
+		double invMassA = constrain.storageA.invMass[constrain.indexA];
+		double invMassB = constrain.storageB.invMass[constrain.indexB];
+		double invMassSum = invMassA + invMassB;
+		double stiffness = ConstrainBatches.stiffnessForItteration(constrain.stiffness, itteration);
+		return solveConstrain(constrain, stiffness, invMassSum > 0 ? invMassA / invMassSum : 0, invMassSum > 0 ? invMassB / invMassSum : 0);
+	}
+	
+	/**
+	 * Solve a single constrain (restore original length, if deformed) with precomputed coefficients (see ConstrainBatches), works on the ParticleStorages and is used by solve()
+	 * @param constrain The Constrain to reform, has to be bound to its ParticleStorages
+	 * @param stiffness The stiffness for the current iteration
+	 * @param weightA The part of the correction that is applied to Particle A
+	 * @param weightB The part of the correction that is applied to Particle B
+	 * @return The length error of the Constrain before the correction, relative to its current length, the Constrain is marked as broken if it broke
+	 */
+	public double solveConstrain(Constrain constrain, double stiffness, double weightA, double weightB) {
+		
+		ParticleStorage storageA = constrain.storageA;
+		ParticleStorage storageB = constrain.storageB;
+		int a = constrain.indexA;
+		int b = constrain.indexB;
+		double ax = storageA.x[a];
+		double ay = storageA.y[a];
+		double bx = storageB.x[b];
+		double by = storageB.y[b];
+		
+		// Calculate spring deformation
+		double deltaX = bx - ax;
+		double deltaY = by - ay;
+		double deltalength = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+		double diff = (deltalength - constrain.length) / deltalength;
+		
+		// If force is to high, deform spring permanent
+		if (constrain.deformForce > -1) {
+			
+			// Calculate force on the constrain
+			double forceAX = (ax - storageA.lastX[a]) * storageA.mass[a];
+			double forceAY = (ay - storageA.lastY[a]) * storageA.mass[a];
+			double forceBX = (bx - storageB.lastX[b]) * storageA.mass[a];
+			double forceBY = (by - storageB.lastY[b]) * storageA.mass[a];
+			double force;
+			if (this.forceModel == ForceModel.PROJECTED) {
+				force = Math.abs(((forceAX - forceBX) * deltaX + (forceAY - forceBY) * deltaY) / deltalength);
+			} else {
+				double angle = Math.atan((bx - ax) / (by - ay));
+				double forceX = Math.sin(angle) * forceAX + Math.sin(angle + Math.PI) * forceBX;
+				double forceY = Math.cos(angle) * forceAY + Math.cos(angle + Math.PI) * forceBY;
+				force = Math.abs(forceX) + Math.abs(forceY);
+			}
+			
+			if (force > constrain.deformForce) {
+				constrain.length += diff * ((force - constrain.deformForce) / constrain.deformForce);
+			}
+			
+		}
+		if (constrain.length > constrain.originalLength * constrain.maxBending && constrain.maxBending > -1) constrain.broken = true;
+		
+		// Reform spring
+		double correction = diff * stiffness;
+		storageA.x[a] = ax + deltaX * weightA * correction;
+		storageA.y[a] = ay + deltaY * weightA * correction;
+		storageB.x[b] -= deltaX * weightB * correction;
+		storageB.y[b] -= deltaY * weightB * correction;
+		return diff < 0 ? -diff : diff;
+		
+	}
+	
+	/**
+	 * Solve a single constrain (restore original length, if deformed), works directly on the Particles and can be used outside of a simulation-step
 	 * @param itteration The number of the iteration, used to calculate the strength of the "reform-force", higher number -> less strength
 	 * @param constrain The Constrain to reform
 	 */
 	public void constrain(int itteration, Constrain constrain) {
 		
 		// Calculate force on the constrain
-		Vec2d forceA = constrain.pointA.getMotion().mul(constrain.pointA.mass);
-		Vec2d forceB = constrain.pointB.getMotion().mul(constrain.pointA.mass);
-		double angle = constrain.pointA.pos.angle(constrain.pointB.pos);
-		double force = forceA.forceByAngle(angle).add(forceB.forceByAngle(angle + Math.PI)).summ();
+		float massA = constrain.pointA.getMass();
+		float massB = constrain.pointB.getMass();
+		Vec2d posA = constrain.pointA.getPos(this.tempPosA);
+		Vec2d posB = constrain.pointB.getPos(this.tempPosB);
+		Vec2d forceA = constrain.pointA.getMotion(this.tempA).mulLocal(massA);
+		Vec2d forceB = constrain.pointB.getMotion(this.tempB).mulLocal(massA);
+		Vec2d delta = posB.sub(posA, this.tempC);
+		double deltalength = Math.sqrt(delta.dot(delta));
+		double force;
+		if (this.forceModel == ForceModel.PROJECTED) {
+			force = forceA.subLocal(forceB).dot(delta) / deltalength;
+		} else {
+			double angle = posA.angle(posB);
+			force = forceA.forceByAngle(angle, this.tempD).addLocal(forceB.forceByAngle(angle + Math.PI, this.tempA)).summ();
+		}
 		force = (force < 0 ? -force : force);
 		
 		// Calculate spring deformation
-		Vec2d delta = constrain.pointB.pos.sub(constrain.pointA.pos);
-		double deltalength = Math.sqrt(delta.dot(delta));
 		double diff = (deltalength - constrain.length) / deltalength;
 		
 		// If force is to high, deform spring permanent
@@ -162,38 +889,55 @@ public class PhysicSolver {
 		if (constrain.length > constrain.originalLength * constrain.maxBending && constrain.maxBending > -1) constrain.broken = true;
 		
 		// Reform spring
-		double stiffnessLinear = 1 - Math.pow((1 - constrain.stiffness), 1 / itteration);
-		constrain.pointA.pos = constrain.pointA.pos.add(delta.mul(constrain.pointB.mass / (constrain.pointA.mass + constrain.pointB.mass)).mul(diff).mul(stiffnessLinear));
-		constrain.pointB.pos = constrain.pointB.pos.sub(delta.mul(constrain.pointA.mass / (constrain.pointA.mass + constrain.pointB.mass)).mul(diff).mul(stiffnessLinear));
+		double stiffnessLinear = ConstrainBatches.stiffnessForItteration(constrain.stiffness, itteration);
+		Vec2d moveA = delta.mul(massB / (massA + massB), this.tempB).mulLocal(diff).mulLocal(stiffnessLinear);
+		constrain.pointA.move(moveA.x, moveA.y);
+		Vec2d moveB = delta.mul(massA / (massA + massB), this.tempB).mulLocal(diff).mulLocal(stiffnessLinear);
+		constrain.pointB.move(-moveB.x, -moveB.y);
 		
 	}
 	
 	/**
-	 * Integrate a single Particle, handles motion and acceleration
+	 * Integrate a single Particle, handles motion and acceleration, works directly on the Particle and can be used outside of a simulation-step
 	 * @param deltaT The size of the simulation-step, larger steps make the simulation faster, but less accurate 
 	 * @param point The Particle to integrate
 	 */
 	public void integrate(float deltaT, Particle point) {
-		Vec2d temp = point.pos;
-		point.pos = point.pos.add(point.pos.sub(point.lastPos).add(point.acceleration.mul(deltaT * deltaT)));
-		point.lastPos = temp;
+		integrate(deltaT, point.storage, point.index);
+		point.storage.wakeOwner();
 	}
 	
 	/**
-	 * Check if there is a collision between the given particle and the Constrain since the last simulation step
+	 * Check if there is a collision between the given particle and the Constrain since the last simulation step, works directly on the Particles and can be used outside of a simulation-step
 	 * @param particle The Particle
 	 * @param constrain The Constrain
-	 * @return A Contact representing the collision between the two instances, its variables are null if there is no collision
+	 * @return A Contact representing the collision between the two instances, Contact.noContact() if there is no collision
 	 */
 	public Contact checkContact(Particle particle, Constrain constrain) {
+		Contact contact = checkContact(particle, constrain, this.tempContact);
+		if (!contact.isCollision()) return contact;
+		return Contact.contact(new Vec2d(contact.collisionNormal.x, contact.collisionNormal.y), contact.collisionDepth, particle, constrain);
+	}
+	
+	/**
+	 * Check if there is a collision between the given particle and the Constrain since the last simulation step and writes it in the given Contact, does not allocate any objects
+	 * @param particle The Particle
+	 * @param constrain The Constrain
+	 * @param out The Contact that receives the collision (see Contact.reusableContact())
+	 * @return The out Contact if there is a collision, Contact.noContact() otherwise
+	 * @throws RuntimeException of an IllegalArgumentException if the out Contact is the shared Contact.noContact() instance
+	 */
+	public Contact checkContact(Particle particle, Constrain constrain, Contact out) {
+		
+		if (out == Contact.noContact()) throw new RuntimeException(new IllegalArgumentException("The shared noContact instance can not receive a collision!"));
 		
 		// Phase 1 check: Vector (infinity line) intersectioncheck
-		Vec2d line1a = constrain.pointA.pos;
-		Vec2d line1b = constrain.pointB.pos;
-		Vec2d line2a = particle.pos;
-		Vec2d line2b = particle.lastPos;
+		Vec2d line1a = constrain.pointA.getPos(this.tempPosA);
+		Vec2d line1b = constrain.pointB.getPos(this.tempPosB);
+		Vec2d line2a = particle.getPos(this.tempPosC);
+		Vec2d line2b = this.tempPosD.set(particle.getLastX(), particle.getLastY());
 		double denom =	(line2b.y - line2a.y) * (line1b.x - line1a.x) - (line2b.x - line2a.x) * (line1b.y - line1a.y);
-		if (Math.abs(denom) < 0.000000008) return Contact.noContact();
+		if (Math.abs(denom) < ScalarSegmentKernel.PARALLEL_EPSILON) return Contact.noContact();
 		
 		// Phase 2 check: Line intersection check
 		double ua = ((line2b.x - line2a.x) * (line1a.y - line2a.y) - (line2b.y - line2a.y) * (line1a.x - line2a.x)) / denom;
@@ -201,19 +945,24 @@ public class PhysicSolver {
 		if (!(ua >= 0 && ua <= 1 && ub >= 0 && ub <= 1)) return Contact.noContact();
 		
 		// Calculate nearest point on constrain
-		Vec2d v = line1b.sub(line1a);
-		Vec2d w = particle.pos.sub(line1a);
+		Vec2d v = line1b.sub(line1a, this.tempA);
+		Vec2d w = line2a.sub(line1a, this.tempB);
 		double b = w.dot(v) / v.dot(v);
-		Vec2d nearestOnConstrain = line1a.add(v.mul(b));
+		Vec2d nearestOnConstrain = line1a.add(v.mulLocal(b), this.tempC);
 		
-		double collisionDepth = particle.pos.distance(nearestOnConstrain);
-		Vec2d collisionNormal = particle.pos.noramlVec(nearestOnConstrain);
-		return Contact.contact(collisionNormal, collisionDepth, particle, constrain);
+		double collisionDepth = line2a.distance(nearestOnConstrain);
+		if (collisionDepth == 0) return Contact.noContact();
+		if (out.collisionNormal == null) out.collisionNormal = new Vec2d();
+		line2a.noramlVec(nearestOnConstrain, out.collisionNormal);
+		out.collisionDepth = collisionDepth;
+		out.particle = particle;
+		out.constrain = constrain;
+		return out;
 		
-	};
+	}
 	
 	/**
-	 * Sets position and forces to solve the given collision
+	 * Sets position and forces to solve the given collision, works directly on the Particles and can be used outside of a simulation-step
 	 * @param contact The Contact that represents the collision
 	 * @throws A RuntimeException of an IllegalStateException if the given Contact is not a collision
 	 */
@@ -225,15 +974,432 @@ public class PhysicSolver {
 		Particle particle2A = contact.getConstrain().pointA;
 		Particle particle2B = contact.getConstrain().pointB;
 		
-		particle1.pos = particle1.pos.add(contact.getCollisionNormal().mul(contact.getCollisionDepth() / 1.9F));
+		Vec2d move1 = contact.getCollisionNormal().mul(contact.getCollisionDepth() / CONTACT_SPLIT, this.tempA);
+		particle1.move(move1.x, move1.y);
 		
-		double distA = particle1.pos.distance(particle2A.pos);
-		double distB = particle1.pos.distance(particle2B.pos);
+		double distA = particle1.distance(particle2A);
+		double distB = particle1.distance(particle2B);
 		double ca = distA / (distA + distB);
 		double cb = distB / (distA + distB);
 		
-		particle2A.pos = particle2A.pos.add(contact.getCollisionNormal().mul(-contact.getCollisionDepth() * cb / 1.9F));
-		particle2B.pos = particle2B.pos.add(contact.getCollisionNormal().mul(-contact.getCollisionDepth() * ca / 1.9F));
+		Vec2d move2A = contact.getCollisionNormal().mul(-contact.getCollisionDepth() * cb / CONTACT_SPLIT, this.tempA);
+		particle2A.move(move2A.x, move2A.y);
+		Vec2d move2B = contact.getCollisionNormal().mul(-contact.getCollisionDepth() * ca / CONTACT_SPLIT, this.tempA);
+		particle2B.move(move2B.x, move2B.y);
+		
+	}
+	
+	/**
+	 * Integrate a single Particle in a ParticleStorage, handles motion and acceleration, used by solve()
+	 * @param deltaT The size of the simulation-step, larger steps make the simulation faster, but less accurate 
+	 * @param storage The ParticleStorage that holds the Particle
+	 * @param index The index of the Particle in the storage
+	 */
+	public void integrate(float deltaT, ParticleStorage storage, int index) {
+		float deltaT2 = deltaT * deltaT;
+		double x = storage.x[index];
+		double y = storage.y[index];
+		storage.x[index] = x + ((x - storage.lastX[index]) + storage.ax[index] * deltaT2);
+		storage.y[index] = y + ((y - storage.lastY[index]) + storage.ay[index] * deltaT2);
+		storage.lastX[index] = x;
+		storage.lastY[index] = y;
+	}
+	
+	/**
+	 * Check if there is a collision between the Particle and the Constrain since the last simulation step and adds it to the ContactBuffer, used by solve()
+	 * @param particleBody The SoftBody of the Particle
+	 * @param index The index of the Particle in the ParticleStorage of its SoftBody
+	 * @param constrainBody The SoftBody of the Constrain
+	 * @param constrainIndex The index of the Constrain in the Constrain-list of its SoftBody
+	 * @param contacts The ContactBuffer that receives the collision
+	 * @return true if there is a collision
+	 */
+	public boolean findContact(SoftBody particleBody, int index, SoftBody constrainBody, int constrainIndex, ContactBuffer contacts) {
+		
+		ParticleStorage storage = particleBody.storage;
+		Constrain constrain = constrainBody.constrains.get(constrainIndex);
+		
+		// Phase 1 check: Vector (infinity line) intersectioncheck
+		double line1ax = constrain.storageA.x[constrain.indexA];
+		double line1ay = constrain.storageA.y[constrain.indexA];
+		double line1bx = constrain.storageB.x[constrain.indexB];
+		double line1by = constrain.storageB.y[constrain.indexB];
+		double line2ax = storage.x[index];
+		double line2ay = storage.y[index];
+		double line2bx = storage.lastX[index];
+		double line2by = storage.lastY[index];
+		double denom =	(line2by - line2ay) * (line1bx - line1ax) - (line2bx - line2ax) * (line1by - line1ay);
+		if (Math.abs(denom) < ScalarSegmentKernel.PARALLEL_EPSILON) return false;
+		
+		// Phase 2 check: Line intersection check
+		double ua = ((line2bx - line2ax) * (line1ay - line2ay) - (line2by - line2ay) * (line1ax - line2ax)) / denom;
+		double ub = ((line1bx - line1ax) * (line1ay - line2ay) - (line1by - line1ay) * (line1ax - line2ax)) / denom;
+		if (!(ua >= 0 && ua <= 1 && ub >= 0 && ub <= 1)) return false;
+		
+		return addContact(particleBody, index, constrainBody, constrainIndex, line1ax, line1ay, line1bx, line1by, contacts);
+		
+	}
+	
+	/**
+	 * Calculates the depth and the normal of a collision, after the path of the Particle was found to intersect the Constrain, and adds it to the ContactBuffer
+	 * @param particleBody The SoftBody of the Particle
+	 * @param index The index of the Particle in the ParticleStorage of its SoftBody
+	 * @param constrainBody The SoftBody of the Constrain
+	 * @param constrainIndex The index of the Constrain in the Constrain-list of its SoftBody
+	 * @param line1ax The x of the position of Particle A of the Constrain
+	 * @param line1ay The y of the position of Particle A of the Constrain
+	 * @param line1bx The x of the position of Particle B of the Constrain
+	 * @param line1by The y of the position of Particle B of the Constrain
+	 * @param contacts The ContactBuffer that receives the collision
+	 * @return true if there is a collision, false if the Particle lies exactly on the Constrain
+	 */
+	protected boolean addContact(SoftBody particleBody, int index, SoftBody constrainBody, int constrainIndex, double line1ax, double line1ay, double line1bx, double line1by, ContactBuffer contacts) {
+		
+		ParticleStorage storage = particleBody.storage;
+		double line2ax = storage.x[index];
+		double line2ay = storage.y[index];
+		
+		// Calculate nearest point on constrain
+		double vx = line1bx - line1ax;
+		double vy = line1by - line1ay;
+		double wx = line2ax - line1ax;
+		double wy = line2ay - line1ay;
+		double b = (wx * vx + wy * vy) / (vx * vx + vy * vy);
+		double nearestX = line1ax + vx * b;
+		double nearestY = line1ay + vy * b;
+		
+		double normalX = nearestX - line2ax;
+		double normalY = nearestY - line2ay;
+		double collisionDepth = Math.sqrt(normalX * normalX + normalY * normalY);
+		if (collisionDepth == 0) return false;
+		double normalSumm = Math.abs(normalX) + Math.abs(normalY);
+		contacts.add(normalX / normalSumm, normalY / normalSumm, collisionDepth, particleBody, index, constrainBody, constrainIndex);
+		return true;
+		
+	}
+	
+	/**
+	 * Fills the reusable Contact instance of the SolverContext with a collision from its ContactBuffer, used to call the ContactListeners without allocations.
+	 * The returned instance is overwritten by the next call, ContactListeners must not keep a reference to it.
+	 * @param context The SolverContext that holds the collision
+	 * @param contact The index of the collision in the buffer
+	 * @return The reusable Contact instance representing the collision
+	 */
+	protected Contact getContactView(SolverContext context, int contact) {
+		ContactBuffer contacts = context.contacts;
+		Contact view = context.contactView;
+		view.collisionNormal.set(contacts.getNormalX(contact), contacts.getNormalY(contact));
+		view.collisionDepth = contacts.getDepth(contact);
+		view.particle = contacts.getParticleBody(contact).storage.particles[contacts.getParticle(contact)];
+		view.constrain = contacts.getConstrainBody(contact).constrains.get(contacts.getConstrain(contact));
+		return view;
+	}
+	
+	/**
+	 * Applies the cached collisions of the last steps to the Particles of a SoftBody, scaled by the warm start factor.
+	 * A cached collision is only applied if the Particle is still behind the Constrain, and never pushes it further than to the Constrain.
+	 * The last positions are moved too, so the warm start does not add motion to the Particles.
+	 * @param shape The SoftBody, the ContactCache is updated for the new step
+	 */
+	protected void warmStart(SoftBody shape) {
+		
+		ContactCache cache = shape.contactCache;
+		cache.update(this.contactLifetime);
+		ParticleStorage storage = shape.storage;
+		for (int i = 0; i < cache.size(); i++) {
+			
+			double correction = cache.getWarmCorrection(i) * this.warmStartFactor;
+			int particle = cache.getParticle(i);
+			SoftBody shape2 = cache.getConstrainBody(i);
+			Constrain constrain = cache.getConstrain(i);
+			if (correction <= 0 || particle >= storage.size || storage.particles[particle] == null) continue;
+			
+			// Only SoftBodys that overlap are in the same island, and the collision-filter could have changed
+			if (shape2 != shape && (shape2.world != shape.world || !shape.overlaps(shape2))) continue;
+			if (constrain.broken || !constrain.isBound()) continue;
+			if (constrain.overridesFilter ? !SoftBody.shouldCollide(shape.collisionCategory, shape.collisionMask, constrain.collisionCategory, constrain.collisionMask) : !shape.shouldCollide(shape2)) continue;
+			
+			// Penetration of the Particle along the normal of the collision
+			double line1ax = constrain.storageA.x[constrain.indexA];
+			double line1ay = constrain.storageA.y[constrain.indexA];
+			double vx = constrain.storageB.x[constrain.indexB] - line1ax;
+			double vy = constrain.storageB.y[constrain.indexB] - line1ay;
+			double wx = storage.x[particle] - line1ax;
+			double wy = storage.y[particle] - line1ay;
+			double b = (wx * vx + wy * vy) / (vx * vx + vy * vy);
+			if (!(b >= 0 && b <= 1)) continue;
+			double normalX = cache.getNormalX(i);
+			double normalY = cache.getNormalY(i);
+			double penetration = ((vx * b - wx) * normalX + (vy * b - wy) * normalY) / Math.sqrt(normalX * normalX + normalY * normalY);
+			if (penetration <= 0) continue;
+			
+			// The cache holds the displacement of the Particle, applyContact() moves the Particle by depth / CONTACT_SPLIT
+			applyContact(storage, particle, constrain, normalX, normalY, Math.min(penetration, correction * CONTACT_SPLIT), true);
+			if (shape2.sleeping) shape2.wakeUp();
+			
+		}
+		
+	}
+	
+	/**
+	 * Sets the positions in the ParticleStorages to solve a collision in the ContactBuffer, used by solve()
+	 * @param contacts The ContactBuffer that holds the collision
+	 * @param contact The index of the collision in the buffer
+	 */
+	public void solveContact(ContactBuffer contacts, int contact) {
+		Constrain constrain = contacts.getConstrainBody(contact).constrains.get(contacts.getConstrain(contact));
+		applyContact(contacts.getParticleBody(contact).storage, contacts.getParticle(contact), constrain, contacts.getNormalX(contact), contacts.getNormalY(contact), contacts.getDepth(contact), false);
+	}
+	
+	/**
+	 * Moves the Particle and the two Particles of the Constrain apart, to solve a collision
+	 * @param storage1 The ParticleStorage of the Particle
+	 * @param particle1 The index of the Particle in the storage
+	 * @param constrain The Constrain
+	 * @param normalX The x component of the normal of the collision
+	 * @param normalY The y component of the normal of the collision
+	 * @param depth The intersection-depth to solve
+	 * @param keepMotion true to move the last positions too, so that the correction does not change the motion of the Particles
+	 */
+	protected void applyContact(ParticleStorage storage1, int particle1, Constrain constrain, double normalX, double normalY, double depth, boolean keepMotion) {
+		
+		ParticleStorage storage2A = constrain.storageA;
+		int particle2A = constrain.indexA;
+		ParticleStorage storage2B = constrain.storageB;
+		int particle2B = constrain.indexB;
+		
+		double moveX = normalX * (depth / CONTACT_SPLIT);
+		double moveY = normalY * (depth / CONTACT_SPLIT);
+		storage1.x[particle1] += moveX;
+		storage1.y[particle1] += moveY;
+		if (keepMotion) {
+			storage1.lastX[particle1] += moveX;
+			storage1.lastY[particle1] += moveY;
+		}
+		
+		double distAX = storage1.x[particle1] - storage2A.x[particle2A];
+		double distAY = storage1.y[particle1] - storage2A.y[particle2A];
+		double distBX = storage1.x[particle1] - storage2B.x[particle2B];
+		double distBY = storage1.y[particle1] - storage2B.y[particle2B];
+		double distA = Math.sqrt(distAX * distAX + distAY * distAY);
+		double distB = Math.sqrt(distBX * distBX + distBY * distBY);
+		double ca = distA / (distA + distB);
+		double cb = distB / (distA + distB);
+		
+		double moveAX = normalX * (-depth * cb / CONTACT_SPLIT);
+		double moveAY = normalY * (-depth * cb / CONTACT_SPLIT);
+		double moveBX = normalX * (-depth * ca / CONTACT_SPLIT);
+		double moveBY = normalY * (-depth * ca / CONTACT_SPLIT);
+		storage2A.x[particle2A] += moveAX;
+		storage2A.y[particle2A] += moveAY;
+		storage2B.x[particle2B] += moveBX;
+		storage2B.y[particle2B] += moveBY;
+		if (keepMotion) {
+			storage2A.lastX[particle2A] += moveAX;
+			storage2A.lastY[particle2A] += moveAY;
+			storage2B.lastX[particle2B] += moveBX;
+			storage2B.lastY[particle2B] += moveBY;
+		}
+		
+	}
+	
+	/**
+	 * Solves all Constrains of a SoftBody once, color by color, the Constrains of a color are split in chunks that run in parallel.
+	 * The instance is reused for every pass to avoid allocations.
+	 */
+	protected class ConstrainPassTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		protected SoftBody body;
+		protected int itteration;
+		protected double lengthError;
+		protected ConstrainChunkTask[] chunks = new ConstrainChunkTask[0];
+		
+		@Override
+		protected void compute() {
+			
+			this.lengthError = 0;
+			ConstrainColoring coloring = this.body.getColoring();
+			List<Constrain> constrains = this.body.getConstrains();
+			int parallelism = PhysicSolver.this.parallelPool.getParallelism();
+			
+			for (int color = 0; color < coloring.getColorCount(); color++) {
+				
+				int start = coloring.getColorStart(color);
+				int end = coloring.getColorEnd(color);
+				int chunkCount = Math.min(parallelism, (end - start) / PhysicSolver.this.parallelThreshold);
+				if (chunkCount <= 1) {
+					this.lengthError = Math.max(this.lengthError, solveConstrains(this.body, coloring, start, end, this.itteration));
+					continue;
+				}
+				
+				if (this.chunks.length < chunkCount) {
+					this.chunks = Arrays.copyOf(this.chunks, chunkCount);
+					for (int i = 0; i < chunkCount; i++) if (this.chunks[i] == null) this.chunks[i] = new ConstrainChunkTask();
+				}
+				
+				// Fork all chunks except the first one, that is solved on this thread, joining them is the barrier between the colors
+				int chunkSize = (end - start + chunkCount - 1) / chunkCount;
+				for (int i = 1; i < chunkCount; i++) {
+					ConstrainChunkTask chunk = this.chunks[i];
+					chunk.reinitialize();
+					chunk.body = this.body;
+					chunk.start = start + i * chunkSize;
+					chunk.end = Math.min(end, chunk.start + chunkSize);
+					chunk.itteration = this.itteration;
+					chunk.fork();
+				}
+				this.lengthError = Math.max(this.lengthError, solveConstrains(this.body, coloring, start, start + chunkSize, this.itteration));
+				for (int i = 1; i < chunkCount; i++) {
+					this.chunks[i].join();
+					this.lengthError = Math.max(this.lengthError, this.chunks[i].lengthError);
+				}
+				
+			}
+			
+			// The Constrains that could not be colored
+			ConstrainBatches batches = this.body.getBatches();
+			for (int i = 0; i < coloring.getSequentialCount(); i++) {
+				int index = coloring.getSequential(i);
+				Constrain constrain = constrains.get(index);
+				// Constrains without a batch are not bound to their Particles
+				if (!constrain.broken && batches.getBatch(index) >= 0) this.lengthError = Math.max(this.lengthError, solveConstrain(constrain, batches.getStiffness(batches.getBatch(index), this.itteration), batches.getWeightA(index), batches.getWeightB(index)));
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Solves a part of the Constrains of a single color
+	 */
+	protected class ConstrainChunkTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		protected SoftBody body;
+		protected int start;
+		protected int end;
+		protected int itteration;
+		protected double lengthError;
+		
+		@Override
+		protected void compute() {
+			this.lengthError = solveConstrains(this.body, this.body.getColoring(), this.start, this.end, this.itteration);
+		}
+		
+	}
+	
+	/**
+	 * Solves the Constrains of a SoftBody in the given range of the order of its ConstrainColoring
+	 * @param body The SoftBody of the Constrains
+	 * @param coloring The ConstrainColoring of the SoftBody
+	 * @param start The first position in the order of the coloring
+	 * @param end The position after the last Constrain in the order of the coloring
+	 * @param itteration The number of the iteration
+	 * @return The largest relative length error of the Constrains
+	 */
+	protected double solveConstrains(SoftBody body, ConstrainColoring coloring, int start, int end, int itteration) {
+		List<Constrain> constrains = body.getConstrains();
+		ConstrainBatches batches = body.getBatches();
+		double lengthError = 0;
+		for (int i = start; i < end; i++) {
+			int index = coloring.getConstrain(i);
+			Constrain constrain = constrains.get(index);
+			// Constrains without a batch are not bound to their Particles
+			if (!constrain.broken && batches.getBatch(index) >= 0) lengthError = Math.max(lengthError, solveConstrain(constrain, batches.getStiffness(batches.getBatch(index), itteration), batches.getWeightA(index), batches.getWeightB(index)));
+		}
+		return lengthError;
+	}
+	
+	/**
+	 * The models to estimate the force on a Constrain, that decides if it deforms permanently
+	 */
+	public static enum ForceModel {
+		
+		/** The original model, splits the motion of the Particles in the direction of the Constrain using sin and cos **/
+		ANGLE,
+		/** Projects the relative motion of the Particles on the axis of the Constrain, only needs one dot product and no trigonometric functions **/
+		PROJECTED;
+		
+	}
+	
+	/**
+	 * The temporary buffers that are used to solve a SoftBody, every thread that solves SoftBodys needs its own instance.
+	 */
+	protected class SolverContext {
+		
+		protected CollisionGrid.Candidates candidates = new CollisionGrid.Candidates();
+		protected ContactBuffer contacts = new ContactBuffer();
+		protected SegmentBatch segments = new SegmentBatch();
+		protected Contact contactView = new Contact();
+		protected ConstrainPassTask constrainPass = new ConstrainPassTask();
+		
+		public SolverContext() {
+			this.contactView.collisionNormal = new Vec2d();
+		}
+		
+	}
+	
+	/**
+	 * Splits the simulation islands in contiguous ranges and solves them in parallel, the islands of a range are solved in order on one thread.
+	 * The instance is reused for every step to avoid allocations.
+	 */
+	protected class IslandPassTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		protected IslandChunkTask[] chunks = new IslandChunkTask[0];
+		
+		@Override
+		protected void compute() {
+			
+			// More chunks than threads, so that threads that finish early can steal the remaining work
+			int islandCount = PhysicSolver.this.islands.getIslandCount();
+			int chunkCount = Math.min(islandCount, PhysicSolver.this.parallelPool.getParallelism() * 4);
+			if (this.chunks.length < chunkCount) {
+				this.chunks = Arrays.copyOf(this.chunks, chunkCount);
+				for (int i = 0; i < chunkCount; i++) if (this.chunks[i] == null) this.chunks[i] = new IslandChunkTask();
+			}
+			
+			for (int i = 0; i < chunkCount; i++) {
+				IslandChunkTask chunk = this.chunks[i];
+				chunk.reinitialize();
+				chunk.start = (int) ((long) islandCount * i / chunkCount);
+				chunk.end = (int) ((long) islandCount * (i + 1) / chunkCount);
+				if (i > 0) chunk.fork();
+			}
+			this.chunks[0].compute();
+			for (int i = 1; i < chunkCount; i++) {
+				this.chunks[i].join();
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Solves a range of simulation islands, uses its own SolverContext
+	 */
+	protected class IslandChunkTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		protected SolverContext context = new SolverContext();
+		protected int start;
+		protected int end;
+		
+		@Override
+		protected void compute() {
+			SimulationIslands islands = PhysicSolver.this.islands;
+			List<SoftBody> bodys = PhysicSolver.this.world.getSoftBodys();
+			for (int island = this.start; island < this.end; island++) {
+				for (int i = islands.getIslandStart(island); i < islands.getIslandEnd(island); i++) {
+					solveBody(bodys.get(islands.getBody(i)), this.context);
+				}
+			}
+		}
 		
 	}
 	
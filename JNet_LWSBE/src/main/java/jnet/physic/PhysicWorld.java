@@ -1,52 +1,375 @@
 package jnet.physic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import jnet.physic.SoftBody.Constrain;
+import jnet.util.HandleRegistry;
 import jnet.util.Vec2d;
 
 /**
  * The PhysicWorld contains all SoftBodys to simulate, it must be bound to a PhysicSolver.
+ * SoftBodys and Joints get a stable handle when they are added, adding and removing them takes constant time. Changes made during a simulation-step (for example by a ContactListener) are applied at the end of the step.
  * @author M_Marvin
  *
  */
 public class PhysicWorld {
 	
 	protected Vec2d globalForce;
-	protected List<SoftBody> shapes;
-	protected List<Constrain> joints;
+	protected HandleRegistry<SoftBody> shapes;
+	protected HandleRegistry<Constrain> joints;
+	protected ParticleStorage jointStorage;
+	protected int[] jointParticleUses;
 	protected ContactListener contactListener;
+	protected BreakageListener breakageListener;
+	protected List<Constrain> brokenJoints;
+	
+	// Changes that are applied at the end of the current simulation-step
+	protected boolean locked;
+	protected List<Runnable> pendingChanges;
 	
 	public PhysicWorld() {
-		this.shapes = new ArrayList<SoftBody>();
+		this.shapes = new HandleRegistry<SoftBody>();
 		this.globalForce = new Vec2d(0, 0);
-		this.joints = new ArrayList<SoftBody.Constrain>();
+		this.joints = new HandleRegistry<Constrain>();
+		this.jointStorage = new ParticleStorage(null);
+		this.jointParticleUses = new int[0];
 		this.contactListener = new ContactListener.DummyListener();
+		this.breakageListener = new BreakageListener.DummyListener();
+		this.brokenJoints = new ArrayList<Constrain>();
+		this.pendingChanges = new ArrayList<Runnable>();
 	}
 	
 	/**
-	 * Adds the given SoftBody to this world and the simulation
+	 * Adds the given SoftBody to this world and the simulation, if called during a simulation-step the SoftBody is added at the end of the step
 	 * @param shape Shape to add
+	 * @return The handle of the SoftBody, or its current handle if it is already added
+	 */
+	public synchronized int addSoftBody(SoftBody shape) {
+		if (shape.world == this) {
+			// A removal during the current step is undone
+			shape.releasePending = false;
+			return shape.handle;
+		}
+		if (shape.world != null) throw new RuntimeException(new IllegalArgumentException("The SoftBody is already added to an other PhysicWorld!"));
+		shape.world = this;
+		shape.handle = this.shapes.reserve(shape);
+		if (this.locked) {
+			int handle = shape.handle;
+			this.pendingChanges.add(() -> this.shapes.insert(handle));
+		} else {
+			this.shapes.insert(shape.handle);
+		}
+		return shape.handle;
+	}
+	
+	/**
+	 * Adds all given SoftBodys to this world
+	 * @param shapes The SoftBodys to add
+	 * @return The handles of the SoftBodys, in the order of the collection
+	 */
+	public synchronized int[] addSoftBodys(Collection<SoftBody> shapes) {
+		this.shapes.ensureCapacity(this.shapes.size() + shapes.size());
+		int[] handles = new int[shapes.size()];
+		int i = 0;
+		for (SoftBody shape : shapes) handles[i++] = addSoftBody(shape);
+		return handles;
+	}
+	
+	/**
+	 * Removes the SoftBody from this world, the last SoftBody of the list takes its position. All Joints connected to the SoftBody are removed too.
+	 * If called during a simulation-step the SoftBody is removed at the end of the step.
+	 * @param shape The SoftBody to remove
+	 * @return true if the SoftBody was part of this world
+	 */
+	public synchronized boolean removeSoftBody(SoftBody shape) {
+		if (shape.world != this) return false;
+		int handle = shape.handle;
+		if (this.locked) {
+			// The SoftBody stays part of the world until the end of the step, adding it again cancels the removal
+			if (!shape.releasePending) {
+				shape.releasePending = true;
+				this.pendingChanges.add(() -> {
+					if (shape.releasePending) releaseSoftBody(handle);
+				});
+			}
+		} else {
+			releaseSoftBody(handle);
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes the SoftBody of the handle from this world (see removeSoftBody(SoftBody))
+	 * @param handle The handle of the SoftBody
+	 * @return The removed SoftBody or null if the handle is not valid
 	 */
-	public void addSoftBody(SoftBody shape) {
-		if (!this.shapes.contains(shape)) this.shapes.add(shape);
+	public synchronized SoftBody removeSoftBody(int handle) {
+		SoftBody shape = this.shapes.get(handle);
+		if (shape == null || shape.world != this) return null;
+		removeSoftBody(shape);
+		return shape;
+	}
+	
+	protected void releaseSoftBody(int handle) {
+		SoftBody shape = this.shapes.remove(handle);
+		if (shape == null) return;
+		shape.releasePending = false;
+		if (shape.handle == handle) {
+			shape.world = null;
+			shape.handle = -1;
+		}
+		// Releasing a Joint removes it from the list
+		List<Constrain> joints = shape.joints;
+		for (int i = joints.size() - 1; i >= 0; i--) releaseJoint(joints.get(i).handle);
 	}
 	
+	/**
+	 * Gets the SoftBody of a handle
+	 * @param handle The handle of the SoftBody
+	 * @return The SoftBody or null if the handle is not valid or the SoftBody was removed
+	 */
+	public SoftBody getSoftBody(int handle) {
+		SoftBody shape = this.shapes.get(handle);
+		return shape != null && shape.world == this ? shape : null;
+	}
+	
+	/**
+	 * Gets all SoftBodys of this world, the list can not be modified and the order changes when SoftBodys are removed
+	 * @return A view of the SoftBodys
+	 */
 	public List<SoftBody> getSoftBodys() {
-		return shapes;
+		return shapes.getItems();
 	}
 	
 	/**
 	 * Adds the given Constrain to a separate list of Constrains, it is not affected by collisions and operates like a joint.
+	 * If called during a simulation-step the Joint is added at the end of the step.
 	 * @param jointConstrain The Constrain to add as join
+	 * @return The handle of the Joint, or its current handle if it is already added
 	 */
-	public void addJoint(Constrain jointConstrain) {
-		if (!this.joints.contains(jointConstrain)) this.joints.add(jointConstrain);
+	public synchronized int addJoint(Constrain jointConstrain) {
+		if (jointConstrain.world == this) {
+			// A removal during the current step is undone
+			jointConstrain.releasePending = false;
+			return jointConstrain.handle;
+		}
+		if (jointConstrain.world != null) throw new RuntimeException(new IllegalArgumentException("The Joint is already added to an other PhysicWorld!"));
+		jointConstrain.world = this;
+		jointConstrain.handle = this.joints.reserve(jointConstrain);
+		if (this.locked) {
+			int handle = jointConstrain.handle;
+			this.pendingChanges.add(() -> insertJoint(handle));
+		} else {
+			insertJoint(jointConstrain.handle);
+		}
+		return jointConstrain.handle;
+	}
+	
+	/**
+	 * Adds all given Constrains as Joints
+	 * @param jointConstrains The Constrains to add as Joints
+	 * @return The handles of the Joints, in the order of the collection
+	 */
+	public synchronized int[] addJoints(Collection<Constrain> jointConstrains) {
+		this.joints.ensureCapacity(this.joints.size() + jointConstrains.size());
+		int[] handles = new int[jointConstrains.size()];
+		int i = 0;
+		for (Constrain jointConstrain : jointConstrains) handles[i++] = addJoint(jointConstrain);
+		return handles;
+	}
+	
+	protected void insertJoint(int handle) {
+		Constrain jointConstrain = this.joints.get(handle);
+		if (jointConstrain.pointA.storage.isDetached()) this.jointStorage.add(jointConstrain.pointA);
+		if (jointConstrain.pointB.storage.isDetached()) this.jointStorage.add(jointConstrain.pointB);
+		jointConstrain.bind();
+		useJointParticle(jointConstrain.storageA, jointConstrain.indexA, 1);
+		useJointParticle(jointConstrain.storageB, jointConstrain.indexB, 1);
+		if (jointConstrain.storageA != null) jointConstrain.storageA.setIsolated(jointConstrain.indexA, false);
+		if (jointConstrain.storageB != null) jointConstrain.storageB.setIsolated(jointConstrain.indexB, false);
+		indexJoint(jointConstrain);
+		this.joints.insert(handle);
+	}
+	
+	/**
+	 * Updates the Joint-lists of the SoftBodys that own the Particles of the Joint (see SoftBody.getJoints()), has to be called when the Joint was bound again
+	 * @param jointConstrain The Joint
+	 */
+	protected void indexJoint(Constrain jointConstrain) {
+		SoftBody ownerA = jointConstrain.storageA != null ? jointConstrain.storageA.getOwner() : null;
+		SoftBody ownerB = jointConstrain.storageB != null ? jointConstrain.storageB.getOwner() : null;
+		if (ownerA == jointConstrain.jointOwnerA && ownerB == jointConstrain.jointOwnerB) return;
+		unindexJoint(jointConstrain);
+		jointConstrain.jointOwnerA = ownerA;
+		jointConstrain.jointOwnerB = ownerB;
+		if (ownerA != null) ownerA.joints.add(jointConstrain);
+		if (ownerB != null && ownerB != ownerA) ownerB.joints.add(jointConstrain);
+	}
+	
+	protected void unindexJoint(Constrain jointConstrain) {
+		if (jointConstrain.jointOwnerA != null) jointConstrain.jointOwnerA.joints.remove(jointConstrain);
+		if (jointConstrain.jointOwnerB != null && jointConstrain.jointOwnerB != jointConstrain.jointOwnerA) jointConstrain.jointOwnerB.joints.remove(jointConstrain);
+		jointConstrain.jointOwnerA = null;
+		jointConstrain.jointOwnerB = null;
+	}
+	
+	/**
+	 * Removes the Joint from this world, the last Joint of the list takes its position.
+	 * If called during a simulation-step the Joint is removed at the end of the step.
+	 * @param jointConstrain The Joint to remove
+	 * @return true if the Joint was part of this world
+	 */
+	public synchronized boolean removeJoint(Constrain jointConstrain) {
+		if (jointConstrain.world != this) return false;
+		int handle = jointConstrain.handle;
+		if (this.locked) {
+			// The Joint stays part of the world until the end of the step, adding it again cancels the removal
+			if (!jointConstrain.releasePending) {
+				jointConstrain.releasePending = true;
+				this.pendingChanges.add(() -> {
+					if (jointConstrain.releasePending) releaseJoint(handle);
+				});
+			}
+		} else {
+			releaseJoint(handle);
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes the Joint of the handle from this world (see removeJoint(Constrain))
+	 * @param handle The handle of the Joint
+	 * @return The removed Joint or null if the handle is not valid
+	 */
+	public synchronized Constrain removeJoint(int handle) {
+		Constrain jointConstrain = this.joints.get(handle);
+		if (jointConstrain == null || jointConstrain.world != this) return null;
+		removeJoint(jointConstrain);
+		return jointConstrain;
+	}
+	
+	protected void releaseJoint(int handle) {
+		boolean inserted = this.joints.contains(handle);
+		Constrain jointConstrain = this.joints.remove(handle);
+		if (jointConstrain == null) return;
+		jointConstrain.releasePending = false;
+		if (jointConstrain.handle == handle) {
+			jointConstrain.world = null;
+			jointConstrain.handle = -1;
+		}
+		if (!inserted) return;
+		unindexJoint(jointConstrain);
+		// Free the Particles that are only used by Joints, when the last Joint releases them
+		useJointParticle(jointConstrain.storageA, jointConstrain.indexA, -1);
+		useJointParticle(jointConstrain.storageB, jointConstrain.indexB, -1);
 	}
 	
+	protected void useJointParticle(ParticleStorage storage, int index, int uses) {
+		if (storage != this.jointStorage) return;
+		if (index >= this.jointParticleUses.length) this.jointParticleUses = Arrays.copyOf(this.jointParticleUses, Math.max(index + 1, this.jointParticleUses.length * 2));
+		this.jointParticleUses[index] += uses;
+		if (this.jointParticleUses[index] == 0) this.jointStorage.release(index);
+	}
+	
+	/**
+	 * Gets the Joint of a handle
+	 * @param handle The handle of the Joint
+	 * @return The Joint or null if the handle is not valid or the Joint was removed
+	 */
+	public Constrain getJoint(int handle) {
+		Constrain jointConstrain = this.joints.get(handle);
+		return jointConstrain != null && jointConstrain.world == this ? jointConstrain : null;
+	}
+	
+	/**
+	 * Gets all Joints of this world, the list can not be modified and the order changes when Joints are removed
+	 * @return A view of the Joints
+	 */
 	public List<Constrain> getJoints() {
-		return joints;
+		return joints.getItems();
+	}
+	
+	/**
+	 * Moves all broken Joints out of the Joints of this world into the list of broken Joints, called by the PhysicSolver at the end of every simulation-step
+	 * @return The number of moved Joints
+	 */
+	protected int compactJoints() {
+		int broken = 0;
+		List<Constrain> joints = this.joints.getItems();
+		// Backwards, the swap-remove only moves Joints that were already checked
+		for (int i = joints.size() - 1; i >= 0; i--) {
+			Constrain joint = joints.get(i);
+			if (!joint.broken || joint.world != this) continue;
+			releaseJoint(joint.handle);
+			this.brokenJoints.add(joint);
+			this.breakageListener.jointBroken(joint);
+			broken++;
+		}
+		return broken;
+	}
+	
+	/**
+	 * Gets the Joints that have broken in the last simulation-step and were removed from this world, the PhysicSolver clears the list in every step.
+	 * Use a BreakageListener to receive every broken Joint.
+	 * @return The list of broken Joints
+	 */
+	public List<Constrain> getBrokenJoints() {
+		return brokenJoints;
+	}
+	
+	/**
+	 * Removes all broken Joints from the list of broken Joints
+	 */
+	public void clearBrokenJoints() {
+		this.brokenJoints.clear();
+	}
+	
+	/**
+	 * Sets the BreakageListener which receives all Constrains and Joints that break in this world.
+	 * @param breakageListener The BreakageListener that receives all events
+	 */
+	public void setBreakageListener(BreakageListener breakageListener) {
+		if (breakageListener == null) throw new RuntimeException(new IllegalArgumentException("Cant set the BreakageListener to null!"));
+		this.breakageListener = breakageListener;
+	}
+	
+	public BreakageListener getBreakageListener() {
+		return breakageListener;
+	}
+	
+	/**
+	 * Locks this world during a simulation-step, all changes are queued until it is unlocked
+	 */
+	protected synchronized void lock() {
+		this.locked = true;
+	}
+	
+	/**
+	 * Unlocks this world at the end of a simulation-step and applies the queued changes in the order they were made
+	 */
+	protected synchronized void unlock() {
+		this.locked = false;
+		for (int i = 0; i < this.pendingChanges.size(); i++) this.pendingChanges.get(i).run();
+		this.pendingChanges.clear();
+	}
+	
+	/**
+	 * Checks if a simulation-step is running, changes are applied at the end of the step
+	 * @return true if this world is locked by the PhysicSolver
+	 */
+	public synchronized boolean isLocked() {
+		return locked;
+	}
+	
+	/**
+	 * Gets the ParticleStorage for the Particles of Joints, that are not part of any SoftBody
+	 * @return The ParticleStorage for the Particles of the Joints
+	 */
+	public ParticleStorage getJointStorage() {
+		return jointStorage;
 	}
 	
 	/**
@@ -0,0 +1,209 @@
+package jnet.physic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import jnet.physic.PhysicSolver.ForceModel;
+import jnet.physic.SoftBody.Particle;
+import jnet.util.Vec2d;
+
+/**
+ * Simulates a simulation recorded by a ReplayRecorder again, with exactly the same results as the recorded simulation.
+ * The PhysicWorld is restored from the start of the log and the recorded changes are applied before every step, the steps are performed as fast as possible and not in real time.
+ * A log that ends in the middle of a step (for example because the recording application crashed) is played until the last complete step.
+ * @author M_Marvin
+ *
+ */
+public class ReplayPlayer {
+
+	protected ByteBuffer buffer;
+	protected PhysicWorld world;
+	protected PhysicSolver solver;
+	protected ForkJoinPool parallelPool;
+	protected long stepCount;
+
+	/**
+	 * Loads a replay file, the file is mapped in memory
+	 * @param path The file to load
+	 * @return A new ReplayPlayer at the start of the replay
+	 * @throws IOException If the file can not be read
+	 * @throws RuntimeException of a IllegalArgumentException if the file is not a valid replay file
+	 */
+	public static ReplayPlayer load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new ReplayPlayer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Creates a player for the data of a replay file, starting at the position of the buffer
+	 * @param buffer The buffer with the data
+	 * @throws RuntimeException of a IllegalArgumentException if the data is not a valid replay file
+	 */
+	public ReplayPlayer(ByteBuffer buffer) {
+		this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (this.buffer.remaining() < 8 || this.buffer.getInt() != ReplayRecorder.MAGIC) throw new RuntimeException(new IllegalArgumentException("The data is not a replay file!"));
+		int version = this.buffer.getInt();
+		if (version != ReplayRecorder.VERSION) throw new RuntimeException(new IllegalArgumentException("The version " + version + " of the replay file is not supported!"));
+		this.world = WorldFile.read(this.buffer);
+		this.solver = new PhysicSolver(this.world);
+		this.parallelPool = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Performs the next recorded simulation-step, with all changes that were recorded before it
+	 * @return true if a step was performed, false if the replay has ended
+	 * @throws RuntimeException of a IllegalArgumentException if the replay file is damaged
+	 */
+	public boolean step() {
+		// The changes are only applied if the step is complete
+		int end = findStepEnd();
+		if (end < 0) return false;
+		try {
+			while (this.buffer.position() < end) {
+				byte record = this.buffer.get();
+				switch (record) {
+				case ReplayRecorder.RECORD_STEP:
+					this.solver.solve(this.buffer.getFloat());
+					this.stepCount++;
+					break;
+				case ReplayRecorder.RECORD_GLOBAL_FORCE:
+					this.world.setGlobalForce(new Vec2d(this.buffer.getDouble(), this.buffer.getDouble()));
+					break;
+				case ReplayRecorder.RECORD_ACCELERATION:
+					int body = this.buffer.getInt();
+					ParticleStorage storage = body < 0 ? this.world.getJointStorage() : this.world.getSoftBodys().get(body).storage;
+					Particle particle = storage.particles[this.buffer.getInt()];
+					particle.setAcceleration(this.buffer.getDouble(), this.buffer.getDouble());
+					break;
+				case ReplayRecorder.RECORD_ADD_BODY:
+					this.buffer.getInt();
+					this.world.addSoftBody(WorldFile.readSoftBody(this.world, this.buffer));
+					break;
+				case ReplayRecorder.RECORD_REMOVE_BODY:
+					this.world.removeSoftBody(this.world.getSoftBodys().get(this.buffer.getInt()));
+					break;
+				case ReplayRecorder.RECORD_SETTINGS:
+					readSettings();
+					break;
+				}
+			}
+		} catch (IndexOutOfBoundsException | NullPointerException e) {
+			throw new RuntimeException(new IllegalArgumentException("The replay file is damaged!", e));
+		}
+		return true;
+	}
+
+	/**
+	 * Performs multiple recorded simulation-steps
+	 * @param steps The maximal number of steps
+	 * @return The number of performed steps, less than the given number if the replay has ended
+	 */
+	public long play(long steps) {
+		long performed = 0;
+		while (performed < steps && step()) performed++;
+		return performed;
+	}
+
+	/**
+	 * Performs all remaining simulation-steps of the replay
+	 * @return The number of performed steps
+	 */
+	public long playToEnd() {
+		return play(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Finds the end of the next step record
+	 * @return The position behind the next step record or -1 if the replay has no further complete step
+	 * @throws RuntimeException of a IllegalArgumentException if the replay file contains an unknown record
+	 */
+	protected int findStepEnd() {
+		int position = this.buffer.position();
+		int limit = this.buffer.limit();
+		while (position < limit) {
+			byte record = this.buffer.get(position++);
+			int size;
+			switch (record) {
+			case ReplayRecorder.RECORD_STEP: size = 4; break;
+			case ReplayRecorder.RECORD_GLOBAL_FORCE: size = 8 + 8; break;
+			case ReplayRecorder.RECORD_ACCELERATION: size = 4 + 4 + 8 + 8; break;
+			case ReplayRecorder.RECORD_ADD_BODY:
+				if (limit - position < 4) return -1;
+				size = 4 + this.buffer.getInt(position);
+				if (size < 4) throw new RuntimeException(new IllegalArgumentException("The replay file is damaged!"));
+				break;
+			case ReplayRecorder.RECORD_REMOVE_BODY: size = 4; break;
+			case ReplayRecorder.RECORD_SETTINGS: size = ReplayRecorder.SETTINGS_SIZE; break;
+			default: throw new RuntimeException(new IllegalArgumentException("The replay file is damaged!"));
+			}
+			if (limit - position < size) return -1;
+			position += size;
+			if (record == ReplayRecorder.RECORD_STEP) return position;
+		}
+		return -1;
+	}
+
+	/**
+	 * Applies the recorded settings to the PhysicSolver, in the order written by ReplayRecorder.recordSettings()
+	 */
+	protected void readSettings() {
+		this.solver.setItterationCount(this.buffer.getInt());
+		this.solver.setAdaptiveItterations(this.buffer.get() != 0);
+		this.solver.setMinItterationCount(this.buffer.getInt());
+		this.solver.setTolerances(this.buffer.getDouble(), this.buffer.getDouble());
+		this.solver.setWarmStartFactor(this.buffer.getFloat());
+		this.solver.setContactLifetime(this.buffer.getInt());
+		this.solver.setGridCellSize(this.buffer.getDouble());
+		this.solver.setParallelPool(this.buffer.get() != 0 ? this.parallelPool : null);
+		this.solver.setParallelThreshold(this.buffer.getInt());
+		this.solver.setParallelIslands(this.buffer.get() != 0);
+		this.solver.setSleepThreshold(this.buffer.getDouble());
+		this.solver.setSleepSteps(this.buffer.getInt());
+		this.solver.setForceModel(ForceModel.values()[this.buffer.getInt()]);
+	}
+
+	/**
+	 * Sets the ForkJoinPool that is used if the recorded simulation was solved in parallel, the common pool by default
+	 * @param parallelPool The ForkJoinPool to use
+	 */
+	public void setParallelPool(ForkJoinPool parallelPool) {
+		if (parallelPool == null) throw new RuntimeException(new IllegalArgumentException("The pool can not be null!"));
+		if (this.solver.getParallelPool() != null) this.solver.setParallelPool(parallelPool);
+		this.parallelPool = parallelPool;
+	}
+
+	public ForkJoinPool getParallelPool() {
+		return parallelPool;
+	}
+
+	/**
+	 * Gets the restored PhysicWorld, it is changed by every step of the replay
+	 * @return The PhysicWorld of the replay
+	 */
+	public PhysicWorld getWorld() {
+		return world;
+	}
+
+	/**
+	 * Gets the PhysicSolver of the replay, its settings are changed by the recorded settings
+	 * @return The PhysicSolver of the replay
+	 */
+	public PhysicSolver getSolver() {
+		return solver;
+	}
+
+	/**
+	 * Gets the number of performed simulation-steps
+	 * @return The number of steps
+	 */
+	public long getStepCount() {
+		return stepCount;
+	}
+
+}
@@ -0,0 +1,336 @@
+package jnet.physic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+
+/**
+ * Records a simulation as an input log that the ReplayPlayer can simulate again with exactly the same results.
+ * Instead of the state of every step, only the state of the PhysicWorld at the start (as world file, see WorldFile) and the external changes before every step are written:
+ * changes of the global-force, changes of the accelerations of Particles (like pushing a Particle with a key), SoftBodys added or removed by addSoftBody() and removeSoftBody() and changes of the settings of the PhysicSolver.
+ * The recorder is the StepListener of the PhysicSolver, so every call to solve() is recorded, also the ones of step(). The changes are found by comparing the world with its state after the last step.
+ * The log is only appended, the records are collected in a buffer and written to the channel when the buffer is full or on flush().
+ * Other changes (positions of Particles, Constrains, Joints or SoftBodys added or removed by other code or during a step) are not recorded, the replay differs from the original simulation after them.
+ * @author M_Marvin
+ *
+ */
+public class ReplayRecorder extends StepListener implements Closeable {
+
+	/** The first four bytes of every replay file, "JNRP" **/
+	public static final int MAGIC = 0x4A4E5250;
+	/** The version of the format written by this class **/
+	public static final int VERSION = 1;
+
+	protected static final byte RECORD_STEP = 1;
+	protected static final byte RECORD_GLOBAL_FORCE = 2;
+	protected static final byte RECORD_ACCELERATION = 3;
+	protected static final byte RECORD_ADD_BODY = 4;
+	protected static final byte RECORD_REMOVE_BODY = 5;
+	protected static final byte RECORD_SETTINGS = 6;
+
+	protected static final int SETTINGS_SIZE = 4 + 1 + 4 + 8 + 8 + 4 + 4 + 8 + 1 + 4 + 1 + 8 + 4 + 4;
+	protected static final int BUFFER_SIZE = 64 * 1024;
+
+	protected PhysicSolver solver;
+	protected PhysicWorld world;
+	protected WritableByteChannel channel;
+	protected boolean ownsChannel;
+	protected ByteBuffer buffer;
+	protected long bytesWritten;
+	protected long stepCount;
+	protected double globalForceX;
+	protected double globalForceY;
+	protected ByteBuffer settings;
+	protected ByteBuffer lastSettings;
+	protected List<SoftBody> bodys;
+	// The accelerations of the Particles after the last step, two values per slot of the storages
+	protected IdentityHashMap<ParticleStorage, double[]> accelerations;
+
+	/**
+	 * Starts a recording in a new file, the PhysicWorld of the solver is saved as first part of the file
+	 * @param solver The PhysicSolver to record, the recorder replaces its StepListener
+	 * @param path The file to write, an existing file is replaced
+	 * @throws IOException If the file can not be written
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step
+	 */
+	public ReplayRecorder(PhysicSolver solver, Path path) throws IOException {
+		this(solver, FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), true);
+	}
+
+	/**
+	 * Starts a recording to a channel, the PhysicWorld of the solver is written first
+	 * @param solver The PhysicSolver to record, the recorder replaces its StepListener
+	 * @param channel The channel to write to, it is not closed by close()
+	 * @throws IOException If the channel can not be written
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step
+	 */
+	public ReplayRecorder(PhysicSolver solver, WritableByteChannel channel) throws IOException {
+		this(solver, channel, false);
+	}
+
+	protected ReplayRecorder(PhysicSolver solver, WritableByteChannel channel, boolean ownsChannel) throws IOException {
+		this.solver = solver;
+		this.world = solver.getWorld();
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.settings = ByteBuffer.allocate(SETTINGS_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.lastSettings = ByteBuffer.allocate(SETTINGS_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.bodys = new ArrayList<SoftBody>();
+		this.accelerations = new IdentityHashMap<ParticleStorage, double[]>();
+
+		try {
+			ByteBuffer snapshot;
+			synchronized (this.world) {
+				snapshot = WorldFile.toBuffer(this.world);
+				this.globalForceX = this.world.getGlobalForce().x;
+				this.globalForceY = this.world.getGlobalForce().y;
+				captureState();
+			}
+			this.buffer.putInt(MAGIC);
+			this.buffer.putInt(VERSION);
+			flush();
+			write(snapshot);
+		} catch (IOException | RuntimeException e) {
+			if (ownsChannel) channel.close();
+			throw e;
+		}
+		recordSettings();
+		solver.setStepListener(this);
+	}
+
+	/**
+	 * Adds the SoftBody to the PhysicWorld and records it with its current state, the SoftBodys of the recorded world have to be added with this method
+	 * @param body The SoftBody to add
+	 * @return The handle of the SoftBody
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step, the SoftBody is already part of a world or uses Particles that are not stored in the world
+	 */
+	public int addSoftBody(SoftBody body) {
+		synchronized (this.world) {
+			if (this.world.isLocked()) throw new RuntimeException(new IllegalStateException("Cant record changes during a simulation-step!"));
+			if (body.world != null) throw new RuntimeException(new IllegalStateException("The SoftBody is already added to a PhysicWorld!"));
+			checkSoftBodys();
+			ByteBuffer record = WorldFile.writeSoftBody(this.world, body);
+			reserve(1 + 4 + record.remaining());
+			this.buffer.put(RECORD_ADD_BODY);
+			this.buffer.putInt(record.remaining());
+			this.buffer.put(record);
+			int handle = this.world.addSoftBody(body);
+			this.bodys.add(body);
+			captureAccelerations(body.storage);
+			return handle;
+		}
+	}
+
+	/**
+	 * Removes the SoftBody from the PhysicWorld and records it, the SoftBodys of the recorded world have to be removed with this method
+	 * @param body The SoftBody to remove
+	 * @return true if the SoftBody was part of the world
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step
+	 */
+	public boolean removeSoftBody(SoftBody body) {
+		synchronized (this.world) {
+			if (this.world.isLocked()) throw new RuntimeException(new IllegalStateException("Cant record changes during a simulation-step!"));
+			if (body.world != this.world) return false;
+			checkSoftBodys();
+			// The SoftBodys are identified by their index, the handles are different in the replay
+			int index = this.world.getSoftBodys().indexOf(body);
+			reserve(1 + 4);
+			this.buffer.put(RECORD_REMOVE_BODY);
+			this.buffer.putInt(index);
+			this.world.removeSoftBody(body);
+			this.bodys.clear();
+			this.bodys.addAll(this.world.getSoftBodys());
+			if (body.storage.owner == body) this.accelerations.remove(body.storage);
+			return true;
+		}
+	}
+
+	@Override
+	public void beforeStep(PhysicSolver solver, float timeStep) {
+		if (solver != this.solver) return;
+		checkSoftBodys();
+
+		double forceX = this.world.getGlobalForce().x;
+		double forceY = this.world.getGlobalForce().y;
+		if (Double.doubleToLongBits(forceX) != Double.doubleToLongBits(this.globalForceX) || Double.doubleToLongBits(forceY) != Double.doubleToLongBits(this.globalForceY)) {
+			reserve(1 + 8 + 8);
+			this.buffer.put(RECORD_GLOBAL_FORCE);
+			this.buffer.putDouble(forceX);
+			this.buffer.putDouble(forceY);
+			this.globalForceX = forceX;
+			this.globalForceY = forceY;
+		}
+
+		recordSettings();
+
+		// Compare the accelerations with the ones left by the last step, the storages are identified by the index of their SoftBody (-1 for the joint-storage)
+		for (int i = -1; i < this.bodys.size(); i++) {
+			ParticleStorage storage = i < 0 ? this.world.getJointStorage() : this.bodys.get(i).storage;
+			if (i >= 0 && storage.owner != this.bodys.get(i)) continue;
+			double[] last = this.accelerations.get(storage);
+			for (int slot = 0; slot < storage.size; slot++) {
+				if (storage.particles[slot] == null) continue;
+				double accelerationX = storage.ax[slot];
+				double accelerationY = storage.ay[slot];
+				if (last != null && slot * 2 + 1 < last.length && Double.doubleToLongBits(accelerationX) == Double.doubleToLongBits(last[slot * 2]) && Double.doubleToLongBits(accelerationY) == Double.doubleToLongBits(last[slot * 2 + 1])) continue;
+				reserve(1 + 4 + 4 + 8 + 8);
+				this.buffer.put(RECORD_ACCELERATION);
+				this.buffer.putInt(i);
+				this.buffer.putInt(slot);
+				this.buffer.putDouble(accelerationX);
+				this.buffer.putDouble(accelerationY);
+			}
+		}
+
+		reserve(1 + 4);
+		this.buffer.put(RECORD_STEP);
+		this.buffer.putFloat(timeStep);
+		this.stepCount++;
+	}
+
+	@Override
+	public void afterStep(PhysicSolver solver, float timeStep) {
+		if (solver != this.solver) return;
+		// SoftBodys added or removed during the step (for example by a ContactListener) can not be replayed
+		checkSoftBodys();
+		captureState();
+	}
+
+	/**
+	 * Writes the collected records to the channel
+	 * @throws IOException If the channel can not be written
+	 */
+	public void flush() throws IOException {
+		this.buffer.flip();
+		write(this.buffer);
+		this.buffer.clear();
+	}
+
+	/**
+	 * Ends the recording, the collected records are written and the recorder is removed from the PhysicSolver.
+	 * The channel is only closed if it was opened by the recorder.
+	 * @throws IOException If the channel can not be written or closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.solver.getStepListener() == this) this.solver.setStepListener(null);
+		try {
+			flush();
+		} finally {
+			if (this.ownsChannel) this.channel.close();
+		}
+	}
+
+	protected void write(ByteBuffer data) throws IOException {
+		this.bytesWritten += data.remaining();
+		while (data.hasRemaining()) this.channel.write(data);
+	}
+
+	/**
+	 * Makes space for a record in the buffer, writes the buffer to the channel if it is full
+	 * @param size The size of the record
+	 */
+	protected void reserve(int size) {
+		if (this.buffer.remaining() >= size) return;
+		try {
+			flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		if (this.buffer.capacity() < size) this.buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	protected void checkSoftBodys() {
+		List<SoftBody> current = this.world.getSoftBodys();
+		boolean changed = current.size() != this.bodys.size();
+		for (int i = 0; !changed && i < current.size(); i++) changed = current.get(i) != this.bodys.get(i);
+		if (changed) throw new RuntimeException(new IllegalStateException("The SoftBodys of the recorded PhysicWorld have to be added and removed by the ReplayRecorder!"));
+	}
+
+	/**
+	 * Records the settings of the PhysicSolver that change the results of the simulation, if they have changed since the last record
+	 */
+	protected void recordSettings() {
+		this.settings.clear();
+		this.settings.putInt(this.solver.getItterationCount());
+		this.settings.put((byte) (this.solver.isAdaptiveItterations() ? 1 : 0));
+		this.settings.putInt(this.solver.getMinItterationCount());
+		this.settings.putDouble(this.solver.getLengthTolerance());
+		this.settings.putDouble(this.solver.getDepthTolerance());
+		this.settings.putFloat(this.solver.getWarmStartFactor());
+		this.settings.putInt(this.solver.getContactLifetime());
+		this.settings.putDouble(this.solver.getGridCellSize());
+		// The Constrains of large SoftBodys are solved in a different order if they are solved in parallel
+		this.settings.put((byte) (this.solver.getParallelPool() != null ? 1 : 0));
+		this.settings.putInt(this.solver.getParallelThreshold());
+		this.settings.put((byte) (this.solver.isParallelIslands() ? 1 : 0));
+		this.settings.putDouble(this.solver.getSleepThreshold());
+		this.settings.putInt(this.solver.getSleepSteps());
+		this.settings.putInt(this.solver.getForceModel().ordinal());
+		this.settings.flip();
+		if (this.settings.equals(this.lastSettings)) return;
+
+		reserve(1 + SETTINGS_SIZE);
+		this.buffer.put(RECORD_SETTINGS);
+		this.buffer.put(this.settings);
+		this.lastSettings.clear();
+		this.lastSettings.put(this.settings.flip());
+		this.lastSettings.flip();
+	}
+
+	/**
+	 * Remembers the SoftBodys and the accelerations of all Particles, to find the changes before the next step
+	 */
+	protected void captureState() {
+		this.bodys.clear();
+		this.bodys.addAll(this.world.getSoftBodys());
+		captureAccelerations(this.world.getJointStorage());
+		for (int i = 0; i < this.bodys.size(); i++) {
+			if (this.bodys.get(i).storage.owner == this.bodys.get(i)) captureAccelerations(this.bodys.get(i).storage);
+		}
+	}
+
+	protected void captureAccelerations(ParticleStorage storage) {
+		double[] accelerations = this.accelerations.get(storage);
+		if (accelerations == null || accelerations.length < storage.size * 2) {
+			accelerations = new double[storage.particles.length * 2];
+			this.accelerations.put(storage, accelerations);
+		}
+		for (int slot = 0; slot < storage.size; slot++) {
+			if (storage.particles[slot] == null) continue;
+			accelerations[slot * 2] = storage.ax[slot];
+			accelerations[slot * 2 + 1] = storage.ay[slot];
+		}
+	}
+
+	/**
+	 * Gets the number of recorded simulation-steps
+	 * @return The number of steps
+	 */
+	public long getStepCount() {
+		return stepCount;
+	}
+
+	/**
+	 * Gets the number of bytes written to the channel, without the records that are still in the buffer
+	 * @return The size of the written log
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public PhysicSolver getSolver() {
+		return solver;
+	}
+
+}
@@ -0,0 +1,51 @@
+package jnet.physic;
+
+/**
+ * The scalar implementation of the ISegmentKernel, tests the segments one after another.
+ * It is used if the jdk.incubator.vector module is not available.
+ * @author M_Marvin
+ *
+ */
+public class ScalarSegmentKernel implements ISegmentKernel {
+	
+	/** Paths that are nearly parallel to a segment are not tested **/
+	public static final double PARALLEL_EPSILON = 0.000000008;
+	
+	@Override
+	public int intersect(double pathAX, double pathAY, double pathBX, double pathBY, SegmentBatch batch) {
+		batch.hitCount = intersect(pathAX, pathAY, pathBX, pathBY, batch, 0, 0);
+		return batch.hitCount;
+	}
+	
+	/**
+	 * Tests the segments from the start index to the end of the batch, also used for the remaining segments of the vectorized kernel
+	 * @param start The index of the first segment to test
+	 * @param hitCount The number of hits that where already found
+	 * @return The new number of hits
+	 */
+	protected static int intersect(double pathAX, double pathAY, double pathBX, double pathBY, SegmentBatch batch, int start, int hitCount) {
+		
+		double pathDX = pathBX - pathAX;
+		double pathDY = pathBY - pathAY;
+		for (int i = start; i < batch.size; i++) {
+			
+			// Phase 1 check: Vector (infinity line) intersectioncheck
+			double segmentDX = batch.bx[i] - batch.ax[i];
+			double segmentDY = batch.by[i] - batch.ay[i];
+			double denom = pathDY * segmentDX - pathDX * segmentDY;
+			
+			// Phase 2 check: Line intersection check
+			double offsetX = batch.ax[i] - pathAX;
+			double offsetY = batch.ay[i] - pathAY;
+			double ua = (pathDX * offsetY - pathDY * offsetX) / denom;
+			double ub = (segmentDX * offsetY - segmentDY * offsetX) / denom;
+			batch.ua[i] = ua;
+			batch.ub[i] = ub;
+			if (Math.abs(denom) >= PARALLEL_EPSILON && ua >= 0 && ua <= 1 && ub >= 0 && ub <= 1) batch.hits[hitCount++] = i;
+			
+		}
+		return hitCount;
+		
+	}
+	
+}
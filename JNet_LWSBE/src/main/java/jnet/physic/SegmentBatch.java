@@ -0,0 +1,136 @@
+package jnet.physic;
+
+import java.util.Arrays;
+
+/**
+ * A packed list of line segments (the Constrains near a Particle) that are tested against a single Particle path by an ISegmentKernel.
+ * The end points are stored in separate primitive arrays, so the kernel can load them directly in SIMD lanes.
+ * The buffer is cleared and reused, it does not produce garbage once it has reached its required size.
+ * @author M_Marvin
+ *
+ */
+public class SegmentBatch {
+
+	protected static final int INITIAL_CAPACITY = 64;
+
+	protected double[] ax;
+	protected double[] ay;
+	protected double[] bx;
+	protected double[] by;
+	protected int[] tags;
+	protected double[] ua;
+	protected double[] ub;
+	protected int[] hits;
+	protected int size;
+	protected int hitCount;
+
+	public SegmentBatch() {
+		this.ax = new double[INITIAL_CAPACITY];
+		this.ay = new double[INITIAL_CAPACITY];
+		this.bx = new double[INITIAL_CAPACITY];
+		this.by = new double[INITIAL_CAPACITY];
+		this.tags = new int[INITIAL_CAPACITY];
+		this.ua = new double[INITIAL_CAPACITY];
+		this.ub = new double[INITIAL_CAPACITY];
+		this.hits = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Removes all segments and results, the allocated memory is kept
+	 */
+	public void clear() {
+		this.size = 0;
+		this.hitCount = 0;
+	}
+
+	/**
+	 * Adds a segment to the batch
+	 * @param ax The x of the first end point
+	 * @param ay The y of the first end point
+	 * @param bx The x of the second end point
+	 * @param by The y of the second end point
+	 * @param tag A value to identify the segment, like the index of the Constrain in a list
+	 * @return The index of the segment in the batch
+	 */
+	public int add(double ax, double ay, double bx, double by, int tag) {
+		if (this.size == this.ax.length) grow(this.size * 2);
+		int index = this.size++;
+		this.ax[index] = ax;
+		this.ay[index] = ay;
+		this.bx[index] = bx;
+		this.by[index] = by;
+		this.tags[index] = tag;
+		return index;
+	}
+
+	protected void grow(int capacity) {
+		this.ax = Arrays.copyOf(this.ax, capacity);
+		this.ay = Arrays.copyOf(this.ay, capacity);
+		this.bx = Arrays.copyOf(this.bx, capacity);
+		this.by = Arrays.copyOf(this.by, capacity);
+		this.tags = Arrays.copyOf(this.tags, capacity);
+		this.ua = new double[capacity];
+		this.ub = new double[capacity];
+		this.hits = new int[capacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getAX(int segment) {
+		return ax[segment];
+	}
+
+	public double getAY(int segment) {
+		return ay[segment];
+	}
+
+	public double getBX(int segment) {
+		return bx[segment];
+	}
+
+	public double getBY(int segment) {
+		return by[segment];
+	}
+
+	public int getTag(int segment) {
+		return tags[segment];
+	}
+
+	/**
+	 * Gets the position of the intersection on the segment, calculated by the last ISegmentKernel call
+	 * @param segment The index of the segment
+	 * @return The position on the segment, from 0 (first end point) to 1 (second end point)
+	 */
+	public double getUA(int segment) {
+		return ua[segment];
+	}
+
+	/**
+	 * Gets the position of the intersection on the Particle path, calculated by the last ISegmentKernel call
+	 * @param segment The index of the segment
+	 * @return The position on the path, from 0 (first end point) to 1 (second end point)
+	 */
+	public double getUB(int segment) {
+		return ub[segment];
+	}
+
+	/**
+	 * Gets the number of segments that are intersected by the path, found by the last ISegmentKernel call
+	 * @return The number of hits
+	 */
+	public int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Gets the index of an intersected segment, the hits are ordered like the segments
+	 * @param hit The index of the hit
+	 * @return The index of the segment
+	 */
+	public int getHit(int hit) {
+		return hits[hit];
+	}
+
+}
@@ -0,0 +1,185 @@
+package jnet.physic;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jnet.physic.SoftBody.Constrain;
+
+/**
+ * Splits the SoftBodys of a PhysicWorld in islands that can be simulated independently.
+ * Two SoftBodys are in the same island if they are connected by a Joint, share Particles or if their swept bounding-boxes overlap (which includes all SoftBodys that could touch in the current step).
+ * The islands are ordered by their first SoftBody and the SoftBodys of an island are ordered like in the PhysicWorld, so the partition is deterministic.
+ * @author M_Marvin
+ *
+ */
+public class SimulationIslands {
+
+	protected int[] parent = new int[0];
+	protected int[] sortedBodys = new int[0];
+	protected int sortedCount;
+	protected int[] islandOfRoot = new int[0];
+	protected int[] islandStart = new int[1];
+	protected int[] islandBodys = new int[0];
+	protected int[] islandSizes = new int[0];
+	protected int islandCount;
+
+	/**
+	 * Rebuilds the islands, the swept bounding-boxes of the SoftBodys have to be up to date
+	 * @param world The PhysicWorld to split
+	 */
+	public void build(PhysicWorld world) {
+
+		List<SoftBody> bodys = world.getSoftBodys();
+		List<Constrain> joints = world.getJoints();
+		ParticleStorage jointStorage = world.getJointStorage();
+		int bodyCount = bodys.size();
+		int nodeCount = bodyCount + jointStorage.size();
+
+		if (this.parent.length < nodeCount) this.parent = new int[Math.max(nodeCount, this.parent.length * 2)];
+		for (int i = 0; i < nodeCount; i++) this.parent[i] = i;
+		for (int i = 0; i < bodyCount; i++) bodys.get(i).island = i;
+
+		// Connections through Joints, Particles that are not part of a SoftBody get their own node
+		for (int i = 0; i < joints.size(); i++) {
+			Constrain joint = joints.get(i);
+			if (joint.broken || joint.storageA == null || joint.storageB == null) continue;
+			int nodeA = node(joint.storageA, joint.indexA, jointStorage, bodys);
+			int nodeB = node(joint.storageB, joint.indexB, jointStorage, bodys);
+			if (nodeA >= 0 && nodeB >= 0) union(nodeA, nodeB);
+		}
+
+		// Connections through shared ParticleStorages and Particles of other SoftBodys
+		for (int i = 0; i < bodyCount; i++) {
+			SoftBody[] linked = bodys.get(i).getLinkedBodys();
+			for (int i2 = 0; i2 < linked.length; i2++) {
+				int other = indexOf(linked[i2], bodys);
+				if (other >= 0) union(i, other);
+			}
+		}
+
+		// Overlapping bounding-boxes, sweep and prune along the x axis
+		if (this.sortedCount != bodyCount) {
+			if (this.sortedBodys.length < bodyCount) this.sortedBodys = new int[Math.max(bodyCount, this.sortedBodys.length * 2)];
+			for (int i = 0; i < bodyCount; i++) this.sortedBodys[i] = i;
+			this.sortedCount = bodyCount;
+		}
+		sortByMinX(bodys);
+		for (int i = 0; i < bodyCount; i++) {
+			SoftBody body = bodys.get(this.sortedBodys[i]);
+			for (int i2 = i + 1; i2 < bodyCount; i2++) {
+				SoftBody body2 = bodys.get(this.sortedBodys[i2]);
+				if (body2.minX > body.maxX) break;
+				if (body.overlaps(body2)) union(this.sortedBodys[i], this.sortedBodys[i2]);
+			}
+		}
+
+		// Collect the islands in the order of their first SoftBody
+		if (this.islandOfRoot.length < nodeCount) this.islandOfRoot = new int[this.parent.length];
+		if (this.islandSizes.length < bodyCount) this.islandSizes = new int[Math.max(bodyCount, this.islandSizes.length * 2)];
+		if (this.islandBodys.length < bodyCount) this.islandBodys = new int[Math.max(bodyCount, this.islandBodys.length * 2)];
+		Arrays.fill(this.islandOfRoot, 0, nodeCount, -1);
+		this.islandCount = 0;
+		for (int i = 0; i < bodyCount; i++) {
+			int root = find(i);
+			if (this.islandOfRoot[root] < 0) {
+				this.islandOfRoot[root] = this.islandCount;
+				this.islandSizes[this.islandCount++] = 0;
+			}
+			int island = this.islandOfRoot[root];
+			this.islandSizes[island]++;
+			bodys.get(i).island = island;
+		}
+		if (this.islandStart.length < this.islandCount + 1) this.islandStart = new int[Math.max(this.islandCount + 1, this.islandStart.length * 2)];
+		this.islandStart[0] = 0;
+		for (int i = 0; i < this.islandCount; i++) {
+			this.islandStart[i + 1] = this.islandStart[i] + this.islandSizes[i];
+			this.islandSizes[i] = this.islandStart[i];
+		}
+		for (int i = 0; i < bodyCount; i++) {
+			this.islandBodys[this.islandSizes[bodys.get(i).island]++] = i;
+		}
+
+	}
+
+	/**
+	 * Gets the node of a Particle for the union-find, the node of its SoftBody or its own node if it is a Particle that is only used by Joints
+	 * @return The node or -1 if the Particle belongs to a SoftBody that is not part of the PhysicWorld
+	 */
+	protected static int node(ParticleStorage storage, int index, ParticleStorage jointStorage, List<SoftBody> bodys) {
+		if (storage == jointStorage) return bodys.size() + index;
+		return storage.getOwner() != null ? indexOf(storage.getOwner(), bodys) : -1;
+	}
+
+	protected static int indexOf(SoftBody body, List<SoftBody> bodys) {
+		int index = body.island;
+		return index >= 0 && index < bodys.size() && bodys.get(index) == body ? index : -1;
+	}
+
+	/**
+	 * The order of the last step is kept, so the insertion sort runs in nearly linear time for SoftBodys that move slowly
+	 */
+	protected void sortByMinX(List<SoftBody> bodys) {
+		for (int i = 1; i < this.sortedCount; i++) {
+			int body = this.sortedBodys[i];
+			double minX = bodys.get(body).minX;
+			int i2 = i - 1;
+			while (i2 >= 0 && bodys.get(this.sortedBodys[i2]).minX > minX) {
+				this.sortedBodys[i2 + 1] = this.sortedBodys[i2];
+				i2--;
+			}
+			this.sortedBodys[i2 + 1] = body;
+		}
+	}
+
+	protected int find(int node) {
+		while (this.parent[node] != node) {
+			this.parent[node] = this.parent[this.parent[node]];
+			node = this.parent[node];
+		}
+		return node;
+	}
+
+	protected void union(int nodeA, int nodeB) {
+		int rootA = find(nodeA);
+		int rootB = find(nodeB);
+		if (rootA == rootB) return;
+		// The smaller root wins, this keeps the result independent of the order of the unions
+		if (rootA < rootB) {
+			this.parent[rootB] = rootA;
+		} else {
+			this.parent[rootA] = rootB;
+		}
+	}
+
+	public int getIslandCount() {
+		return islandCount;
+	}
+
+	/**
+	 * Gets the position of the first SoftBody of the island
+	 * @param island The index of the island
+	 * @return The position of the first SoftBody in the list of island members
+	 */
+	public int getIslandStart(int island) {
+		return islandStart[island];
+	}
+
+	/**
+	 * Gets the position after the last SoftBody of the island
+	 * @param island The index of the island
+	 * @return The position after the last SoftBody in the list of island members
+	 */
+	public int getIslandEnd(int island) {
+		return islandStart[island + 1];
+	}
+
+	/**
+	 * Gets the index of a SoftBody in the PhysicWorld
+	 * @param position The position in the list of island members
+	 * @return The index of the SoftBody in the list of the PhysicWorld
+	 */
+	public int getBody(int position) {
+		return islandBodys[position];
+	}
+
+}
@@ -0,0 +1,70 @@
+package jnet.physic;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A triple-buffer of WorldSnapshots, used to hand the state of the world from the PhysicSolver to a reading thread (like the renderer) without locks.
+ * The writer fills its own snapshot and publishes it by swapping it with the ready one, the reader takes the ready one by swapping it with its own. Every swap is a single atomic operation and none of the two threads ever waits.
+ * The reader always sees a complete snapshot, which stays unchanged until the reader acquires the next one. Only one writing and one reading thread are supported.
+ * @author M_Marvin
+ *
+ */
+public class SnapshotBuffer {
+
+	// The index of the ready snapshot, the flag is set if it is newer than the one of the reader
+	protected static final int INDEX_MASK = 0x3;
+	protected static final int NEW_FLAG = 0x4;
+
+	protected final WorldSnapshot[] snapshots;
+	protected final AtomicInteger ready;
+	protected int writing;
+	protected int reading;
+
+	public SnapshotBuffer() {
+		this.snapshots = new WorldSnapshot[] {new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot()};
+		this.writing = 0;
+		this.ready = new AtomicInteger(1);
+		this.reading = 2;
+	}
+
+	/**
+	 * Captures the state of the world in the snapshot of the writer and publishes it, called by the PhysicSolver at the end of a simulation-step
+	 * @param world The PhysicWorld to capture
+	 * @param step The number of the simulation-step
+	 */
+	public void publish(PhysicWorld world, long step) {
+		publish(world, step, 1);
+	}
+
+	/**
+	 * Captures the state of the world in the snapshot of the writer and publishes it together with the interpolation factor, called by PhysicSolver.step()
+	 * @param world The PhysicWorld to capture
+	 * @param step The number of the simulation-step
+	 * @param interpolationAlpha The interpolation factor of the snapshot (see WorldSnapshot.getInterpolationAlpha())
+	 */
+	public void publish(PhysicWorld world, long step, double interpolationAlpha) {
+		this.snapshots[this.writing].capture(world, step, interpolationAlpha);
+		this.writing = this.ready.getAndSet(this.writing | NEW_FLAG) & INDEX_MASK;
+	}
+
+	/**
+	 * Gets the latest published snapshot, must only be called by the reading thread.
+	 * The returned snapshot is not changed until the next call of this method.
+	 * @return The latest snapshot, it is empty until the first snapshot was published
+	 */
+	public WorldSnapshot acquire() {
+		if ((this.ready.get() & NEW_FLAG) != 0) {
+			this.reading = this.ready.getAndSet(this.reading) & INDEX_MASK;
+		}
+		return this.snapshots[this.reading];
+	}
+
+	/**
+	 * Checks if a newer snapshot was published since the last call of acquire()
+	 * @return true if acquire() returns a new snapshot
+	 */
+	public boolean hasNewSnapshot() {
+		return (this.ready.get() & NEW_FLAG) != 0;
+	}
+
+}
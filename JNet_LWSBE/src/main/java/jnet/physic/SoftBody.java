@@ -1,6 +1,7 @@
 package jnet.physic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import jnet.JNet;
@@ -17,8 +18,37 @@ import jnet.util.Vec2d;
 public class SoftBody {
 	
 	protected List<Constrain> constrains;
+	protected List<Constrain> brokenConstrains;
 	protected List<Particle> particles;
+	protected ParticleStorage storage;
+	// The Joints of the PhysicWorld that use Particles of the storage, they are removed together with this SoftBody
+	protected List<Constrain> joints = new ArrayList<Constrain>();
+	protected ConstrainColoring coloring;
+	protected ConstrainBatches batches;
+	protected int topologyVersion;
+	protected int island = -1;
+	protected PhysicWorld world;
+	protected int handle = -1;
+	protected SoftBody[] linkedBodys = new SoftBody[0];
+	protected int linkedVersion = -1;
+	protected boolean sleeping;
+	protected int restSteps;
+	protected boolean releasePending;
+	protected int usedItterations;
 	protected ContactListener contactListener;
+	protected ContactCache contactCache;
+	protected int collisionCategory = JNet.DEFAULT_COLLISION_CATEGORY;
+	protected int collisionMask = JNet.DEFAULT_COLLISION_MASK;
+	protected boolean selfCollision = true;
+	
+	// Swept bounding-box of all Particles, updated by the PhysicSolver during the integration
+	protected double minX = Double.POSITIVE_INFINITY;
+	protected double minY = Double.POSITIVE_INFINITY;
+	protected double maxX = Double.NEGATIVE_INFINITY;
+	protected double maxY = Double.NEGATIVE_INFINITY;
+	protected double margin;
+	/** Reused by compactConstrains(), grown on demand **/
+	protected int[] degree = new int[0];
 	
 	/**
 	 * Creates a clone instance of the original SoftBody, it does not create a new SoftBody. The ContactListener is not copied.
@@ -26,8 +56,16 @@ public class SoftBody {
 	 */
 	public SoftBody(SoftBody body) {
 		this.constrains = body.constrains;
+		this.brokenConstrains = body.brokenConstrains;
 		this.particles = body.particles;
+		this.storage = body.storage;
+		this.coloring = body.coloring;
+		this.batches = body.batches;
 		this.contactListener = new ContactListener.DummyListener();
+		this.contactCache = new ContactCache();
+		this.collisionCategory = body.collisionCategory;
+		this.collisionMask = body.collisionMask;
+		this.selfCollision = body.selfCollision;
 	}
 	
 	/**
@@ -35,8 +73,13 @@ public class SoftBody {
 	 */
 	public SoftBody() {
 		this.constrains = new ArrayList<Constrain>();
+		this.brokenConstrains = new ArrayList<Constrain>();
 		this.particles = new ArrayList<Particle>();
+		this.storage = new ParticleStorage(this);
+		this.coloring = new ConstrainColoring();
+		this.batches = new ConstrainBatches();
 		this.contactListener = new ContactListener.DummyListener();
+		this.contactCache = new ContactCache();
 	}
 	
 	/**
@@ -45,8 +88,120 @@ public class SoftBody {
 	 */
 	public void addConstrain(Constrain constrain) {
 		this.constrains.add(constrain);
-		if (!this.particles.contains(constrain.pointA)) this.particles.add(constrain.pointA);
-		if (!this.particles.contains(constrain.pointB)) this.particles.add(constrain.pointB);
+		if (!this.particles.contains(constrain.pointA)) addParticle(constrain.pointA);
+		if (!this.particles.contains(constrain.pointB)) addParticle(constrain.pointB);
+		constrain.bind();
+		if (constrain.storageA != null) constrain.storageA.setIsolated(constrain.indexA, false);
+		if (constrain.storageB != null) constrain.storageB.setIsolated(constrain.indexB, false);
+		markTopologyChanged();
+	}
+	
+	/**
+	 * Adds new Particles and Constrains in bulk, without checking for Particles that are already added. Used by the ShapeTemplate to build many SoftBodys.
+	 * @param particles The new Particles, they must not be part of this SoftBody, but can already be stored in its ParticleStorage
+	 * @param constrains The new Constrains, their Particles have to be part of this SoftBody
+	 */
+	public void addAll(Particle[] particles, Constrain[] constrains) {
+		int added = 0;
+		for (Particle particle : particles) if (particle.storage != this.storage) added++;
+		this.storage.ensureCapacity(this.storage.size + added);
+		for (Particle particle : particles) addParticle(particle);
+		for (Constrain constrain : constrains) {
+			this.constrains.add(constrain);
+			constrain.bind();
+		}
+		markTopologyChanged();
+	}
+	
+	/**
+	 * Moves all broken Constrains out of the Constrain-list into the list of broken Constrains, so that they are no longer iterated by the PhysicSolver and the renderer.
+	 * Particles of this SoftBody that have lost all their Constrains (and are not used by a Joint) are marked as isolated and no longer collide. Called by the PhysicSolver at the end of every simulation-step.
+	 * @param listener The BreakageListener that receives the moved Constrains
+	 * @param joints The Joints of the PhysicWorld, they keep their Particles from being isolated
+	 * @return The number of moved Constrains
+	 */
+	public int compactConstrains(BreakageListener listener, List<Constrain> joints) {
+		
+		int kept = 0;
+		int size = this.constrains.size();
+		for (int i = 0; i < size; i++) {
+			Constrain constrain = this.constrains.get(i);
+			if (constrain.broken) {
+				this.brokenConstrains.add(constrain);
+			} else {
+				if (kept != i) this.constrains.set(kept, constrain);
+				kept++;
+			}
+		}
+		if (kept == size) return 0;
+		this.constrains.subList(kept, size).clear();
+		markTopologyChanged();
+		
+		// Count the remaining Constrains of the Particles
+		int particleCount = this.storage.size;
+		if (this.degree.length < particleCount) this.degree = new int[Math.max(particleCount, this.degree.length * 2)];
+		int[] degree = this.degree;
+		Arrays.fill(degree, 0, particleCount, 0);
+		for (int i = 0; i < kept; i++) countDegree(this.constrains.get(i), degree);
+		for (int i = 0; i < joints.size(); i++) {
+			if (!joints.get(i).broken) countDegree(joints.get(i), degree);
+		}
+		
+		int broken = size - kept;
+		for (int i = this.brokenConstrains.size() - broken; i < this.brokenConstrains.size(); i++) {
+			Constrain constrain = this.brokenConstrains.get(i);
+			if (constrain.storageA == this.storage && degree[constrain.indexA] == 0) this.storage.setIsolated(constrain.indexA, true);
+			if (constrain.storageB == this.storage && degree[constrain.indexB] == 0) this.storage.setIsolated(constrain.indexB, true);
+			listener.constrainBroken(this, constrain);
+		}
+		return broken;
+		
+	}
+	
+	protected void countDegree(Constrain constrain, int[] degree) {
+		if (constrain.storageA == this.storage && constrain.indexA < this.storage.size) degree[constrain.indexA]++;
+		if (constrain.storageB == this.storage && constrain.indexB < this.storage.size) degree[constrain.indexB]++;
+	}
+	
+	/**
+	 * Gets the Constrains that have broken in the last simulation-step and were removed from the Constrain-list, the PhysicSolver clears the list in every step.
+	 * Use a BreakageListener to receive every broken Constrain.
+	 * @return The list of broken Constrains
+	 */
+	public List<Constrain> getBrokenConstrains() {
+		return brokenConstrains;
+	}
+	
+	/**
+	 * Removes all broken Constrains from the list of broken Constrains
+	 */
+	public void clearBrokenConstrains() {
+		this.brokenConstrains.clear();
+	}
+	
+	/**
+	 * Tells the PhysicSolver that Constrains where added, removed or broken, so that the data derived from the Constrains (like the ConstrainColoring and the ConstrainBatches) gets rebuilt.
+	 * Only has to be called manually if the Constrain-list, the material-fields of a Constrain or the mass of a Particle was changed directly.
+	 */
+	public void markTopologyChanged() {
+		this.topologyVersion++;
+	}
+	
+	/**
+	 * Gets the version of the Constrains, it changes every time markTopologyChanged() is called
+	 * @return The version of the Constrains
+	 */
+	public int getTopologyVersion() {
+		return topologyVersion;
+	}
+	
+	/**
+	 * Adds the Particle to the list and (if it is not already owned by an other SoftBody) to the ParticleStorage of this SoftBody
+	 * @param particle The Particle to add
+	 */
+	protected void addParticle(Particle particle) {
+		this.particles.add(particle);
+		if (particle.storage.getOwner() == null) this.storage.add(particle);
 	}
 	
 	/**
@@ -55,6 +210,7 @@ public class SoftBody {
 	 */
 	public void changeMaterial(Material material) {
 		this.constrains.forEach((constrain) -> constrain.changeMaterial(material));
+		markTopologyChanged();
 	}
 	
 	public List<Constrain> getConstrains() {
@@ -65,6 +221,82 @@ public class SoftBody {
 		return particles;
 	}
 	
+	/**
+	 * Gets the ParticleStorage that holds the state of the Particles of this SoftBody during the simulation
+	 * @return The ParticleStorage of this SoftBody
+	 */
+	public ParticleStorage getStorage() {
+		return storage;
+	}
+	
+	/**
+	 * Gets the Joints of the PhysicWorld that use Particles of this SoftBody, they are removed from the world together with this SoftBody
+	 * @return The list of Joints, it must not be modified
+	 */
+	public List<Constrain> getJoints() {
+		return joints;
+	}
+	
+	/**
+	 * Gets the other SoftBodys that own Particles of this SoftBody (shared Particles or a clone instance that shares the ParticleStorage), they can not be simulated independently of this one.
+	 * @return The other SoftBodys this one depends on
+	 */
+	protected SoftBody[] getLinkedBodys() {
+		if (this.linkedVersion != this.topologyVersion) {
+			List<SoftBody> linked = new ArrayList<SoftBody>();
+			if (this.storage.getOwner() != this) linked.add(this.storage.getOwner());
+			for (Constrain constrain : this.constrains) {
+				SoftBody ownerA = constrain.storageA != null ? constrain.storageA.getOwner() : null;
+				SoftBody ownerB = constrain.storageB != null ? constrain.storageB.getOwner() : null;
+				if (ownerA != null && ownerA != this && !linked.contains(ownerA)) linked.add(ownerA);
+				if (ownerB != null && ownerB != this && !linked.contains(ownerB)) linked.add(ownerB);
+			}
+			this.linkedBodys = linked.toArray(new SoftBody[linked.size()]);
+			this.linkedVersion = this.topologyVersion;
+		}
+		return this.linkedBodys;
+	}
+	
+	/**
+	 * Gets the ConstrainBatches, the compiled form of the Constrains that is used by the PhysicSolver
+	 * @return The ConstrainBatches of this SoftBody
+	 */
+	public ConstrainBatches getBatches() {
+		return batches;
+	}
+	
+	/**
+	 * Gets the ConstrainColoring used by the PhysicSolver to solve the Constrains of this SoftBody in parallel
+	 * @return The ConstrainColoring of this SoftBody
+	 */
+	public ConstrainColoring getColoring() {
+		return coloring;
+	}
+	
+	/**
+	 * Gets the PhysicWorld this SoftBody is added to
+	 * @return The PhysicWorld or null if the SoftBody is not added to a world
+	 */
+	public PhysicWorld getWorld() {
+		return world;
+	}
+	
+	/**
+	 * Gets the handle of this SoftBody in its PhysicWorld, it stays the same until the SoftBody is removed
+	 * @return The handle or -1 if the SoftBody is not added to a world
+	 */
+	public int getHandle() {
+		return handle;
+	}
+	
+	/**
+	 * Gets the ContactCache that holds the collisions of the Particles of this SoftBody from the last simulation-steps, used by the PhysicSolver to warm start the collisions
+	 * @return The ContactCache of this SoftBody
+	 */
+	public ContactCache getContactCache() {
+		return contactCache;
+	}
+	
 	/**
 	 * Sets the ContactListener which receives any collision-events between this and all other objects (including collisions between Constrains of this object).
 	 * @param contactListener The ContactListener that receives all events
@@ -85,6 +317,168 @@ public class SoftBody {
 		return contactListener;
 	}
 	
+	/**
+	 * Changes the collision-filter of this SoftBody, two SoftBodys only collide if the category of each one has a common bit with the mask of the other one.
+	 * The filter is checked by the PhysicSolver before any collision-check, so SoftBodys that can not collide do not cost any time. Constrains can override the filter of their SoftBody (see Constrain.setCollisionFilter()).
+	 * @param collisionCategory The bits of the layers this SoftBody belongs to
+	 * @param collisionMask The bits of the layers this SoftBody collides with
+	 */
+	public void setCollisionFilter(int collisionCategory, int collisionMask) {
+		this.collisionCategory = collisionCategory;
+		this.collisionMask = collisionMask;
+	}
+	
+	public int getCollisionCategory() {
+		return collisionCategory;
+	}
+	
+	public int getCollisionMask() {
+		return collisionMask;
+	}
+	
+	/**
+	 * Enables or disables the collisions between the Particles and the Constrains of this SoftBody
+	 * @param selfCollision true if this SoftBody collides with itself
+	 */
+	public void setSelfCollision(boolean selfCollision) {
+		this.selfCollision = selfCollision;
+	}
+	
+	public boolean hasSelfCollision() {
+		return selfCollision;
+	}
+	
+	/**
+	 * Checks if the collision-filters of this and the other SoftBody allow collisions between them, Constrains that override the filter of their SoftBody are not considered
+	 * @param body The other SoftBody
+	 * @return true if the two SoftBodys can collide
+	 */
+	public boolean shouldCollide(SoftBody body) {
+		if (body == this && !this.selfCollision) return false;
+		return shouldCollide(this.collisionCategory, this.collisionMask, body.collisionCategory, body.collisionMask);
+	}
+	
+	/**
+	 * Checks if two collision-filters allow collisions between them, the category of each one has to have a common bit with the mask of the other one
+	 * @param categoryA The collision category of the first filter
+	 * @param maskA The collision mask of the first filter
+	 * @param categoryB The collision category of the second filter
+	 * @param maskB The collision mask of the second filter
+	 * @return true if the filters allow collisions
+	 */
+	public static boolean shouldCollide(int categoryA, int maskA, int categoryB, int maskB) {
+		return (categoryA & maskB) != 0 && (categoryB & maskA) != 0;
+	}
+	
+	/**
+	 * Checks if this SoftBody is sleeping, sleeping SoftBodys are not moved by the PhysicSolver but other SoftBodys still collide with them
+	 * @return true if the SoftBody is sleeping
+	 */
+	public boolean isSleeping() {
+		return sleeping;
+	}
+	
+	/**
+	 * Wakes up this SoftBody, it is simulated again in the next step.
+	 * This happens automatically on collisions, if a Joint pulls on it and if the position, acceleration or mass of one of its Particles is changed.
+	 */
+	public void wakeUp() {
+		this.sleeping = false;
+		this.restSteps = 0;
+	}
+	
+	/**
+	 * Manually puts this SoftBody to sleep or wakes it up, the motion of all Particles is removed when it is put to sleep.
+	 * Should not be called during a simulation-step.
+	 * @param sleeping true to put the SoftBody to sleep
+	 */
+	public void setSleeping(boolean sleeping) {
+		if (sleeping) {
+			System.arraycopy(this.storage.x, 0, this.storage.lastX, 0, this.storage.size);
+			System.arraycopy(this.storage.y, 0, this.storage.lastY, 0, this.storage.size);
+			this.sleeping = true;
+		} else {
+			wakeUp();
+		}
+	}
+	
+	/**
+	 * Gets the number of iterations that were used to solve this SoftBody in the last step, can be less than the iteration count of the PhysicSolver if the number of iterations is adaptive
+	 * @return The number of iterations or 0 if the SoftBody was sleeping
+	 */
+	public int getUsedItterations() {
+		return usedItterations;
+	}
+	
+	/**
+	 * Resets the swept bounding-box, it contains no position after this call
+	 */
+	protected void resetBounds() {
+		this.minX = Double.POSITIVE_INFINITY;
+		this.minY = Double.POSITIVE_INFINITY;
+		this.maxX = Double.NEGATIVE_INFINITY;
+		this.maxY = Double.NEGATIVE_INFINITY;
+		this.margin = 0;
+	}
+	
+	/**
+	 * Expands the swept bounding-box so that it contains the current and the last position of the Particle, also updates the margin with the motion of the Particle
+	 * @param storage The ParticleStorage of the Particle
+	 * @param index The index of the Particle in the storage
+	 */
+	protected void expandBounds(ParticleStorage storage, int index) {
+		this.minX = Math.min(this.minX, Math.min(storage.x[index], storage.lastX[index]));
+		this.minY = Math.min(this.minY, Math.min(storage.y[index], storage.lastY[index]));
+		this.maxX = Math.max(this.maxX, Math.max(storage.x[index], storage.lastX[index]));
+		this.maxY = Math.max(this.maxY, Math.max(storage.y[index], storage.lastY[index]));
+		this.margin = Math.max(this.margin, Math.max(Math.abs(storage.x[index] - storage.lastX[index]), Math.abs(storage.y[index] - storage.lastY[index])));
+	}
+	
+	/**
+	 * Gets the largest motion of a Particle of this SoftBody in the current simulation-step, along one axis.
+	 * The Particles can move about this far during the iterations of the step (by Constrains and collisions), so the broad-phase pads the bounding-box of the SoftBody with it (the Constrains are padded by the motion of their own Particles, see CollisionGrid.insert()).
+	 * @return The margin of the bounding-boxes
+	 */
+	public double getMargin() {
+		return margin;
+	}
+	
+	/**
+	 * Pads the swept bounding-box by the margin, so that it still contains the Particles after they are moved during the iterations of the step
+	 */
+	protected void padBounds() {
+		this.minX -= this.margin;
+		this.minY -= this.margin;
+		this.maxX += this.margin;
+		this.maxY += this.margin;
+	}
+	
+	/**
+	 * Checks if the swept bounding-boxes of this and the other SoftBody overlap, if not no collision between them is possible in the current simulation-step.
+	 * The bounding-boxes are updated by the PhysicSolver during the integration of the Particles and padded by the margin (see getMargin()).
+	 * @param body The other SoftBody
+	 * @return true if the bounding-boxes overlap
+	 */
+	public boolean overlaps(SoftBody body) {
+		return this.minX <= body.maxX && this.maxX >= body.minX && this.minY <= body.maxY && this.maxY >= body.minY;
+	}
+	
+	public double getMinX() {
+		return minX;
+	}
+	
+	public double getMinY() {
+		return minY;
+	}
+	
+	public double getMaxX() {
+		return maxX;
+	}
+	
+	public double getMaxY() {
+		return maxY;
+	}
+	
 	public static class Constrain {
 		
 		public Particle pointA;
@@ -96,6 +490,25 @@ public class SoftBody {
 		public float deformForce;
 		public float maxBending;
 		
+		// The collision-filter of the Constrain, only used if it overrides the filter of its SoftBody
+		protected boolean overridesFilter;
+		protected int collisionCategory;
+		protected int collisionMask;
+		
+		// The PhysicWorld and the handle, if this Constrain is added as Joint
+		protected PhysicWorld world;
+		protected int handle = -1;
+		protected boolean releasePending;
+		// The SoftBodys whose Joint-lists contain this Joint
+		protected SoftBody jointOwnerA;
+		protected SoftBody jointOwnerB;
+		
+		// The location of the Particles in their ParticleStorages, updated by bind()
+		protected ParticleStorage storageA;
+		protected ParticleStorage storageB;
+		protected int indexA = -1;
+		protected int indexB = -1;
+		
 		/**
 		 * Construct Constrain using ConstrainDefinition
 		 * @param definition Definition for this Constrain
@@ -103,7 +516,7 @@ public class SoftBody {
 		public Constrain(ConstrainDefinition definition) {
 			this.pointA = definition.pointA.lastBuild;
 			this.pointB = definition.pointB.lastBuild;
-			this.length = pointA.pos.distance(pointB.pos);
+			this.length = pointA.distance(pointB);
 			this.originalLength = length;
 			this.stiffness = definition.stiffness;
 			this.deformForce = definition.deformForce;
@@ -119,11 +532,30 @@ public class SoftBody {
 		public Constrain(Particle pointA, Particle pointB, Material material) {
 			this.pointA = pointA;
 			this.pointB = pointB;
-			this.length = pointA.pos.distance(pointB.pos);
+			this.length = pointA.distance(pointB);
 			this.originalLength = length;
 			this.changeMaterial(material);
 		}
 		
+		/**
+		 * Construct Constrain using Nodes, a rest length and the material-property
+		 * @param pointA Node A of the Constrain
+		 * @param pointB Node B of the Constrain
+		 * @param length The original length of the Constrain
+		 * @param stiffness The stiffness of the Constrain
+		 * @param deformForce The deform force of the Constrain
+		 * @param maxBending The max bending of the Constrain
+		 */
+		public Constrain(Particle pointA, Particle pointB, double length, float stiffness, float deformForce, float maxBending) {
+			this.pointA = pointA;
+			this.pointB = pointB;
+			this.length = length;
+			this.originalLength = length;
+			this.stiffness = stiffness;
+			this.deformForce = deformForce;
+			this.maxBending = maxBending;
+		}
+		
 		/**
 		 * Construct Constrain using Nodes and default Material
 		 * @param pointA Node A of the Constrain
@@ -132,7 +564,7 @@ public class SoftBody {
 		public Constrain(Particle pointA, Particle pointB) {
 			this.pointA = pointA;
 			this.pointB = pointB;
-			this.length = pointA.pos.distance(pointB.pos);
+			this.length = pointA.distance(pointB);
 			this.originalLength = length;
 			this.changeMaterial(JNet.DEFAULT_MATERIAL);
 		}
@@ -149,24 +581,78 @@ public class SoftBody {
 			this.pointB.changeMaterial(material);
 		}
 		
+		/**
+		 * Overrides the collision-filter of the SoftBody for this Constrain, used to check if a Particle collides with this Constrain (see SoftBody.setCollisionFilter()).
+		 * @param collisionCategory The bits of the layers this Constrain belongs to
+		 * @param collisionMask The bits of the layers this Constrain collides with
+		 */
+		public void setCollisionFilter(int collisionCategory, int collisionMask) {
+			this.collisionCategory = collisionCategory;
+			this.collisionMask = collisionMask;
+			this.overridesFilter = true;
+		}
+		
+		/**
+		 * Removes the override of the collision-filter, the Constrain uses the filter of its SoftBody again
+		 */
+		public void clearCollisionFilter() {
+			this.overridesFilter = false;
+		}
+		
+		public boolean overridesFilter() {
+			return overridesFilter;
+		}
+		
+		public int getCollisionCategory() {
+			return collisionCategory;
+		}
+		
+		public int getCollisionMask() {
+			return collisionMask;
+		}
+		
+		/**
+		 * Gets the handle of this Constrain in the PhysicWorld, if it is added as Joint
+		 * @return The handle or -1 if the Constrain is not added as Joint
+		 */
+		public int getHandle() {
+			return handle;
+		}
+		
+		/**
+		 * Updates the references to the ParticleStorages of the two Particles, has to be called if one of the Particles has changed or moved to an other storage.
+		 * This is done automatically when the Constrain is added to a SoftBody or to the PhysicWorld.
+		 */
+		public void bind() {
+			this.storageA = this.pointA.storage;
+			this.indexA = this.pointA.index;
+			this.storageB = this.pointB.storage;
+			this.indexB = this.pointB.index;
+		}
+		
+		/**
+		 * Checks if both Particles are stored in a ParticleStorage and the references of this Constrain are up to date
+		 * @return true if the Constrain can be handled by the PhysicSolver
+		 */
+		public boolean isBound() {
+			return this.storageA != null && this.storageA == this.pointA.storage && this.indexA == this.pointA.index &&
+					this.storageB != null && this.storageB == this.pointB.storage && this.indexB == this.pointB.index;
+		}
+		
 	}
 	
 	public static class Particle {
-	
-		public Vec2d pos = new Vec2d();
-		public Vec2d lastPos = new Vec2d();
-		public Vec2d acceleration = new Vec2d();
-		public float mass;
+		
+		// The location of the state of this Particle in its ParticleStorage, the Particle only reads and writes this slot
+		protected ParticleStorage storage;
+		protected int index = -1;
 		
 		/**
 		 * Construct Particle (Node) using ParticleDefinition
 		 * @param definition Definition for this Particle
 		 */
 		public Particle(ParticleDefinition definition) {
-			this.pos = definition.pos;
-			this.lastPos = pos;
-			this.acceleration = new Vec2d();
-			this.mass = definition.mass;
+			this(definition.pos.x, definition.pos.y, definition.mass);
 		}
 		
 		/**
@@ -175,10 +661,33 @@ public class SoftBody {
 		 * @param material Combined Material-Info
 		 */
 		public Particle(Vec2d pos, Material material) {
-			this.pos = pos;
-			this.lastPos = pos;
-			this.acceleration = new Vec2d();
-			this.changeMaterial(material);
+			this(pos.x, pos.y, material.getMass());
+		}
+		
+		/**
+		 * Construct Particle (Node) using Position and mass
+		 * @param x X position of the Node
+		 * @param y Y position of the Node
+		 * @param mass The mass of the Node
+		 */
+		public Particle(double x, double y, float mass) {
+			this(ParticleStorage.detached(), x, y, mass);
+		}
+		
+		/**
+		 * Construct Particle (Node) using Position and mass directly in the given ParticleStorage, used to build many Particles of a SoftBody without moving them from a detached storage
+		 * @param storage The ParticleStorage that receives the Particle
+		 * @param x X position of the Node
+		 * @param y Y position of the Node
+		 * @param mass The mass of the Node
+		 */
+		public Particle(ParticleStorage storage, double x, double y, float mass) {
+			storage.add(this);
+			storage.x[this.index] = storage.lastX[this.index] = storage.prevX[this.index] = x;
+			storage.y[this.index] = storage.lastY[this.index] = storage.prevY[this.index] = y;
+			storage.ax[this.index] = 0;
+			storage.ay[this.index] = 0;
+			storage.setMass(this.index, mass);
 		}
 		
 		/**
@@ -186,10 +695,7 @@ public class SoftBody {
 		 * @param pos Position of the Node
 		 */
 		public Particle(Vec2d pos) {
-			this.pos = pos;
-			this.lastPos = pos;
-			this.acceleration = new Vec2d();
-			this.changeMaterial(JNet.DEFAULT_MATERIAL);
+			this(pos, JNet.DEFAULT_MATERIAL);
 		}
 		
 		/**
@@ -197,24 +703,171 @@ public class SoftBody {
 		 * @param material The Material-Info with the new material-property
 		 */
 		public void changeMaterial(Material material) {
-			this.mass = material.getMass();
+			this.setMass(material.getMass());
+		}
+		
+		public double getX() {
+			return storage.x[index];
+		}
+		
+		public double getY() {
+			return storage.y[index];
+		}
+		
+		public double getLastX() {
+			return storage.lastX[index];
+		}
+		
+		public double getLastY() {
+			return storage.lastY[index];
+		}
+		
+		public double getPrevX() {
+			return storage.prevX[index];
+		}
+		
+		public double getPrevY() {
+			return storage.prevY[index];
+		}
+		
+		public double getAccelerationX() {
+			return storage.ax[index];
+		}
+		
+		public double getAccelerationY() {
+			return storage.ay[index];
+		}
+		
+		public float getMass() {
+			return (float) storage.mass[index];
+		}
+		
+		/**
+		 * Gets the current position of the Particle
+		 * @return A new Vec2d with the position
+		 */
+		public Vec2d getPos() {
+			return getPos(new Vec2d());
+		}
+		
+		/**
+		 * Writes the current position of the Particle in the given vector
+		 * @param out The Vec2d that receives the position
+		 * @return The out vector
+		 */
+		public Vec2d getPos(Vec2d out) {
+			return out.set(storage.x[index], storage.y[index]);
+		}
+		
+		/**
+		 * Gets the position of the Particle before the last integration, the difference to the current position is its motion
+		 * @return A new Vec2d with the last position
+		 */
+		public Vec2d getLastPos() {
+			return new Vec2d(storage.lastX[index], storage.lastY[index]);
+		}
+		
+		/**
+		 * Gets the position of the Particle before the last simulation-step, used to interpolate the rendering
+		 * @return A new Vec2d with the previous position
+		 */
+		public Vec2d getPrevPos() {
+			return new Vec2d(storage.prevX[index], storage.prevY[index]);
 		}
 		
 		/**
-		 * Manually set the position of the Particle (Node)
+		 * Gets the acceleration that is applied in the next simulation-step
+		 * @return A new Vec2d with the acceleration
+		 */
+		public Vec2d getAcceleration() {
+			return new Vec2d(storage.ax[index], storage.ay[index]);
+		}
+		
+		/**
+		 * Manually set the position of the Particle (Node), the motion is removed
 		 * @param x X position of the Particle
 		 * @param y Y position of the Particle
 		 */
 		public void setPos(double x, double y) {
-			this.setPos(new Vec2d(x, y));
+			storage.x[index] = storage.lastX[index] = storage.prevX[index] = x;
+			storage.y[index] = storage.lastY[index] = storage.prevY[index] = y;
+			storage.wakeOwner();
 		}
+		
 		/**
-		 * Manually set the position of the Particle (Node)
+		 * Manually set the position of the Particle (Node), the motion is removed
 		 * @param pos Position of the Particle
 		 */
 		public void setPos(Vec2d pos) {
-			this.pos = pos;
-			this.lastPos = new Vec2d(pos);
+			this.setPos(pos.x, pos.y);
+		}
+		
+		/**
+		 * Moves the current position of the Particle without changing its last position, the offset is added to the motion of the Particle
+		 * @param x The offset along the x axis
+		 * @param y The offset along the y axis
+		 */
+		public void move(double x, double y) {
+			storage.x[index] += x;
+			storage.y[index] += y;
+			storage.wakeOwner();
+		}
+		
+		/**
+		 * Changes the position of the Particle before the last integration, without changing its current position
+		 * @param x X position
+		 * @param y Y position
+		 */
+		public void setLastPos(double x, double y) {
+			storage.lastX[index] = x;
+			storage.lastY[index] = y;
+			storage.wakeOwner();
+		}
+		
+		/**
+		 * Sets the acceleration that is applied in the next simulation-step, the PhysicSolver resets it to the global force of the PhysicWorld after the step
+		 * @param x The acceleration along the x axis
+		 * @param y The acceleration along the y axis
+		 */
+		public void setAcceleration(double x, double y) {
+			storage.ax[index] = x;
+			storage.ay[index] = y;
+			storage.wakeOwner();
+		}
+		
+		/**
+		 * Adds to the acceleration that is applied in the next simulation-step
+		 * @param x The acceleration along the x axis
+		 * @param y The acceleration along the y axis
+		 */
+		public void addAcceleration(double x, double y) {
+			storage.ax[index] += x;
+			storage.ay[index] += y;
+			storage.wakeOwner();
+		}
+		
+		/**
+		 * Changes the mass of the Particle, the compiled Constrains of its SoftBody are rebuilt in the next simulation-step
+		 * @param mass The new mass
+		 */
+		public void setMass(float mass) {
+			storage.setMass(index, mass);
+			storage.wakeOwner();
+		}
+		
+		/**
+		 * Calculates the distance between the current positions of this and the other Particle
+		 * @param particle The other Particle
+		 * @return The distance
+		 */
+		public double distance(Particle particle) {
+			double x = storage.x[index];
+			double y = storage.y[index];
+			double otherX = particle.storage.x[particle.index];
+			double otherY = particle.storage.y[particle.index];
+			double distanceX = Math.max(x, otherX) - Math.min(x, otherX);
+			double distanceY = Math.max(y, otherY) - Math.min(y, otherY);
+			return Math.sqrt(distanceX * distanceX + distanceY * distanceY);
 		}
 		
 		/**
@@ -222,7 +875,37 @@ public class SoftBody {
 		 * @return A Vec2d that represents the motion of this Particle
 		 */
 		public Vec2d getMotion() {
-			return this.pos.sub(this.lastPos);
+			return getMotion(new Vec2d());
+		}
+		
+		/**
+		 * Calculates the motion-vector for this Particle and writes it in the given vector
+		 * @param out The Vec2d that receives the motion
+		 * @return The out vector
+		 */
+		public Vec2d getMotion(Vec2d out) {
+			return out.set(storage.x[index] - storage.lastX[index], storage.y[index] - storage.lastY[index]);
+		}
+		
+		/**
+		 * Interpolates between the position before and after the last simulation-step, used to render the Particle smoothly if the simulation runs at a lower rate than the rendering.
+		 * @param alpha The interpolation factor, 0 for the previous and 1 for the current position (see PhysicSolver.getInterpolationAlpha())
+		 * @return A Vec2d that represents the interpolated position
+		 */
+		public Vec2d getInterpolatedPos(double alpha) {
+			return getInterpolatedPos(alpha, new Vec2d());
+		}
+		
+		/**
+		 * Interpolates between the position before and after the last simulation-step and writes the result in the given vector
+		 * @param alpha The interpolation factor, 0 for the previous and 1 for the current position
+		 * @param out The Vec2d that receives the interpolated position
+		 * @return The out vector
+		 */
+		public Vec2d getInterpolatedPos(double alpha, Vec2d out) {
+			double prevX = storage.prevX[index];
+			double prevY = storage.prevY[index];
+			return out.set(prevX + (storage.x[index] - prevX) * alpha, prevY + (storage.y[index] - prevY) * alpha);
 		}
 		
 		/**
@@ -230,7 +913,23 @@ public class SoftBody {
 		 * @param motion A Vec2d that represents the new motion of this Particle
 		 */
 		public void setMotion(Vec2d motion) {
-			this.lastPos = this.pos.sub(motion);
+			this.setLastPos(storage.x[index] - motion.x, storage.y[index] - motion.y);
+		}
+		
+		/**
+		 * Gets the ParticleStorage that holds the state of this Particle
+		 * @return The ParticleStorage of the SoftBody or the PhysicWorld, or a detached storage if the Particle is not added to one of them
+		 */
+		public ParticleStorage getStorage() {
+			return storage;
+		}
+		
+		/**
+		 * Gets the index of this Particle in its ParticleStorage
+		 * @return The index of the slot
+		 */
+		public int getIndex() {
+			return index;
 		}
 			
 	}
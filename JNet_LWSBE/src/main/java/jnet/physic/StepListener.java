@@ -0,0 +1,30 @@
+package jnet.physic;
+
+/**
+ * An abstract class to extend from that is called by a PhysicSolver around every simulation-step (see PhysicSolver.setStepListener()).
+ * The methods are called outside of the step, the world is not locked and can be read and changed like between two calls of solve().
+ * @author M_Marvin
+ *
+ */
+public abstract class StepListener {
+
+	/**
+	 * Called before the simulation-step, after all changes made since the last step
+	 * @param solver The PhysicSolver that performs the step
+	 * @param timeStep The size of the simulation-step
+	 */
+	public abstract void beforeStep(PhysicSolver solver, float timeStep);
+
+	/**
+	 * Called after the simulation-step, after the SoftBodys and Joints added or removed during the step have been added or removed
+	 * @param solver The PhysicSolver that performed the step
+	 * @param timeStep The size of the simulation-step
+	 */
+	public abstract void afterStep(PhysicSolver solver, float timeStep);
+
+	public static class DummyListener extends StepListener {
+		public void beforeStep(PhysicSolver solver, float timeStep) {}
+		public void afterStep(PhysicSolver solver, float timeStep) {}
+	}
+
+}
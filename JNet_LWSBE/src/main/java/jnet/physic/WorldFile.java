@@ -0,0 +1,626 @@
+package jnet.physic;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import jnet.physic.SoftBody.Constrain;
+import jnet.physic.SoftBody.Particle;
+import jnet.util.Vec2d;
+
+/**
+ * Saves and restores the complete simulation-state of a PhysicWorld in a binary format, used for autosaves and to recover after a crash.
+ * The state is written value by value in a direct buffer and passed to NIO channels, no objects are serialized. Files are loaded by mapping them in memory.
+ * The saved state contains:
+ * the global-force, every ParticleStorage with the used and isolated flags of its slots and its arrays (position, last position, previous position, acceleration and mass of the Particles),
+ * every SoftBody with its Particles, Constrains (length, original length, broken flag, material-property and collision-filter), collision-filter and sleeping state,
+ * the Joints and the ContactCaches of all SoftBodys. The Particles keep their slots, so a restored world continues the simulation exactly like the saved one.
+ * The listeners and the lists of broken Constrains and Joints are not saved. SoftBodys and Joints get new handles, but keep their order.
+ * @author M_Marvin
+ *
+ */
+public class WorldFile {
+
+	/** The first four bytes of every world file, "JNWD" **/
+	public static final int MAGIC = 0x4A4E5744;
+	/** The version of the format written by this class **/
+	public static final int VERSION = 2;
+
+	protected static final int HEADER_SIZE = 16;
+	protected static final int PARTICLE_SIZE = 9 * 8;
+	protected static final int CONSTRAIN_SIZE = 4 * 4 + 8 + 8 + 1 + 4 + 4 + 4 + 1 + 4 + 4;
+	protected static final int CONTACT_SIZE = 4 + 4 + 4 + 8 * 4 + 4;
+
+	/**
+	 * Saves the state of a PhysicWorld in a file
+	 * @param world The PhysicWorld to save, it must not be in a simulation-step
+	 * @param path The file to write, an existing file is replaced
+	 * @throws IOException If the file can not be written
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step
+	 */
+	public static void save(PhysicWorld world, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			save(world, channel);
+		}
+	}
+
+	/**
+	 * Saves the state of a PhysicWorld to a channel
+	 * @param world The PhysicWorld to save, it must not be in a simulation-step
+	 * @param channel The channel to write to, it is not closed
+	 * @throws IOException If the channel can not be written
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step
+	 */
+	public static void save(PhysicWorld world, WritableByteChannel channel) throws IOException {
+		ByteBuffer buffer = toBuffer(world);
+		while (buffer.hasRemaining()) channel.write(buffer);
+	}
+
+	/**
+	 * Loads a PhysicWorld from a file
+	 * @param path The file to load
+	 * @return A new PhysicWorld with the state of the file
+	 * @throws IOException If the file can not be read
+	 * @throws RuntimeException of a IllegalArgumentException if the file is not a valid world file
+	 */
+	public static PhysicWorld load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Loads a PhysicWorld from a channel, exactly the bytes of the saved world are read
+	 * @param channel The channel to read from, it is not closed
+	 * @return A new PhysicWorld with the state of the channel
+	 * @throws IOException If the channel can not be read or ends before the saved world
+	 * @throws RuntimeException of a IllegalArgumentException if the data is not a valid world file
+	 */
+	public static PhysicWorld load(ReadableByteChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, header);
+		if (header.getInt(0) != MAGIC) throw new RuntimeException(new IllegalArgumentException("The data is not a world file!"));
+		long size = header.getLong(8);
+		if (size < HEADER_SIZE || size > Integer.MAX_VALUE) throw new RuntimeException(new IllegalArgumentException("The world file has an invalid size!"));
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(header.flip());
+		readFully(channel, buffer);
+		return read(buffer.flip());
+	}
+
+	protected static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) throw new IOException("The channel ended before the end of the world file!");
+		}
+	}
+
+	/**
+	 * Writes the state of a PhysicWorld in a new direct buffer
+	 * @param world The PhysicWorld to save, it must not be in a simulation-step
+	 * @return The buffer with the data, ready to be read
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step
+	 */
+	public static ByteBuffer toBuffer(PhysicWorld world) {
+		return toBuffer(world, null);
+	}
+
+	/**
+	 * Writes the state of a PhysicWorld in a buffer, the buffer is reused if it is large enough. Used for regular saves (autosaves) without allocating a new buffer every time.
+	 * @param world The PhysicWorld to save, it must not be in a simulation-step
+	 * @param buffer The buffer to reuse or null
+	 * @return The given buffer or a new direct buffer if it was too small, with the data ready to be read
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step
+	 */
+	public static ByteBuffer toBuffer(PhysicWorld world, ByteBuffer buffer) {
+		synchronized (world) {
+			if (world.isLocked()) throw new RuntimeException(new IllegalStateException("Cant save the PhysicWorld during a simulation-step!"));
+			return new Writer(world).write(buffer);
+		}
+	}
+
+	/**
+	 * Reads a PhysicWorld from the data of a world file, starting at the position of the buffer. The position of the buffer is moved behind the data.
+	 * @param buffer The buffer with the data
+	 * @return A new PhysicWorld with the state of the data
+	 * @throws RuntimeException of a IllegalArgumentException if the data is not a valid world file
+	 */
+	public static PhysicWorld read(ByteBuffer buffer) {
+		ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) throw new RuntimeException(new IllegalArgumentException("The data is not a world file!"));
+		int version = data.getInt();
+		if (version != VERSION) throw new RuntimeException(new IllegalArgumentException("The version " + version + " of the world file is not supported!"));
+		long size = data.getLong();
+		if (size < HEADER_SIZE || size > data.capacity()) throw new RuntimeException(new IllegalArgumentException("The world file is incomplete!"));
+		data.limit((int) size);
+		try {
+			PhysicWorld world = new Reader(data).read();
+			buffer.position(buffer.position() + (int) size);
+			return world;
+		} catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+			throw new RuntimeException(new IllegalArgumentException("The world file is damaged!", e));
+		}
+	}
+
+	/**
+	 * Writes a single SoftBody that is about to be added to the PhysicWorld, used by the ReplayRecorder.
+	 * The Particles of the SoftBody have to be stored in its own ParticleStorage or in one of the world, its ContactCache can refer to the SoftBodys of the world.
+	 * @param world The PhysicWorld the SoftBody will be added to, it must not be in a simulation-step
+	 * @param body The SoftBody, not yet part of the world
+	 * @return A new buffer with the record, ready to be read
+	 * @throws RuntimeException of a IllegalStateException if the world is in a simulation-step or the SoftBody uses Particles that are not stored in the world or the SoftBody
+	 */
+	protected static ByteBuffer writeSoftBody(PhysicWorld world, SoftBody body) {
+		synchronized (world) {
+			if (world.isLocked()) throw new RuntimeException(new IllegalStateException("Cant save the PhysicWorld during a simulation-step!"));
+			return new Writer(world).writeSoftBody(body);
+		}
+	}
+
+	/**
+	 * Reads a single SoftBody written by writeSoftBody(), the position of the buffer is moved behind the record
+	 * @param world The PhysicWorld the SoftBody will be added to, it has to have the same SoftBodys as the world it was written with
+	 * @param buffer The buffer with the record
+	 * @return The new SoftBody, not yet added to the world
+	 * @throws RuntimeException of a IllegalArgumentException if the record is damaged or does not match the world
+	 */
+	protected static SoftBody readSoftBody(PhysicWorld world, ByteBuffer buffer) {
+		ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			SoftBody body = new Reader(data).readSoftBody(world);
+			buffer.position(buffer.position() + data.position());
+			return body;
+		} catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+			throw new RuntimeException(new IllegalArgumentException("The world file is damaged!", e));
+		}
+	}
+
+	/**
+	 * Writes the state of one PhysicWorld, the storages, SoftBodys and Constrains are numbered while writing
+	 */
+	protected static class Writer {
+
+		protected PhysicWorld world;
+		protected ByteBuffer buffer;
+		protected IdentityHashMap<ParticleStorage, Integer> storageIds = new IdentityHashMap<ParticleStorage, Integer>();
+		protected IdentityHashMap<SoftBody, Integer> bodyIds = new IdentityHashMap<SoftBody, Integer>();
+		protected ParticleStorage lastStorage;
+		protected int lastStorageId;
+		protected IdentityHashMap<List<Constrain>, Integer> constrainLists = new IdentityHashMap<List<Constrain>, Integer>();
+		// The indices of the Constrains in their lists, only built for the SoftBodys used by ContactCaches
+		protected IdentityHashMap<List<Constrain>, IdentityHashMap<Constrain, Integer>> constrainIds = new IdentityHashMap<List<Constrain>, IdentityHashMap<Constrain, Integer>>();
+
+		public Writer(PhysicWorld world) {
+			this.world = world;
+		}
+
+		public ByteBuffer write(ByteBuffer reuse) {
+			List<SoftBody> bodys = this.world.getSoftBodys();
+			List<Constrain> joints = this.world.getJoints();
+
+			List<ParticleStorage> storages = new ArrayList<ParticleStorage>();
+			long size = HEADER_SIZE + 8 + 8 + 4 + 4 + 4 + joints.size() * (long) CONSTRAIN_SIZE + numberWorld(storages);
+			if (size > Integer.MAX_VALUE) throw new RuntimeException(new IllegalStateException("The PhysicWorld is too large for a world file!"));
+
+			this.buffer = reuse != null && reuse.capacity() >= size ? reuse.clear() : ByteBuffer.allocateDirect((int) size);
+			this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+			this.buffer.putInt(MAGIC);
+			this.buffer.putInt(VERSION);
+			this.buffer.putLong(0); // The size, written at the end
+			this.buffer.putDouble(this.world.getGlobalForce().x);
+			this.buffer.putDouble(this.world.getGlobalForce().y);
+
+			this.buffer.putInt(storages.size());
+			for (ParticleStorage storage : storages) writeStorage(storage);
+
+			this.buffer.putInt(bodys.size());
+			for (int i = 0; i < bodys.size(); i++) writeBody(bodys.get(i), i);
+
+			this.buffer.putInt(joints.size());
+			for (int i = 0; i < joints.size(); i++) writeConstrain(joints.get(i));
+
+			this.buffer.putLong(8, this.buffer.position());
+			return this.buffer.flip();
+		}
+
+		/**
+		 * Numbers the storages, the joint-storage first and then the ones of the SoftBodys, and the SoftBodys in the order of the world
+		 * @param storages The list to add the storages to
+		 * @return The size of the storages and SoftBodys in bytes
+		 */
+		protected long numberWorld(List<ParticleStorage> storages) {
+			List<SoftBody> bodys = this.world.getSoftBodys();
+			storages.add(this.world.getJointStorage());
+			long size = 0;
+			for (int i = 0; i < bodys.size(); i++) {
+				SoftBody body = bodys.get(i);
+				this.bodyIds.put(body, i);
+				if (!this.storageIds.containsKey(body.storage)) storages.add(body.storage);
+				this.storageIds.putIfAbsent(body.storage, storages.size() - 1);
+				size += numberBody(body, i);
+			}
+			this.storageIds.put(this.world.getJointStorage(), 0);
+			for (ParticleStorage storage : storages) size += storageSize(storage);
+			return size;
+		}
+
+		protected long numberBody(SoftBody body, int id) {
+			long size = 4 + 4 + 4 + 4 + 4 + 1 + 1 + 4 + body.contactCache.size() * (long) CONTACT_SIZE;
+			// Clone instances share the Constrain-list of their original, it is only written with the original
+			if (this.constrainLists.putIfAbsent(body.constrains, id) == null) {
+				size += 4 + 4 + body.particles.size() * 8L + body.constrains.size() * (long) CONSTRAIN_SIZE;
+			}
+			return size;
+		}
+
+		protected long storageSize(ParticleStorage storage) {
+			return 4 + 4 + storage.size * (2L + PARTICLE_SIZE);
+		}
+
+		/**
+		 * Writes a single SoftBody that is not yet part of the world, as if it would be added to the end of its SoftBodys.
+		 * The record contains the ParticleStorage of the SoftBody if it is not already used by the world, the SoftBody and its ContactCache.
+		 * @param body The SoftBody to write
+		 * @return A new buffer with the record, ready to be read
+		 */
+		public ByteBuffer writeSoftBody(SoftBody body) {
+			List<ParticleStorage> storages = new ArrayList<ParticleStorage>();
+			numberWorld(storages);
+			int id = this.world.getSoftBodys().size();
+			this.bodyIds.put(body, id);
+			boolean ownStorage = !this.storageIds.containsKey(body.storage);
+			if (ownStorage) this.storageIds.put(body.storage, storages.size());
+			long size = 1 + numberBody(body, id) + (ownStorage ? storageSize(body.storage) : 0);
+			if (size > Integer.MAX_VALUE) throw new RuntimeException(new IllegalStateException("The SoftBody is too large for a world file!"));
+
+			this.buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+			this.buffer.put((byte) (ownStorage ? 1 : 0));
+			if (ownStorage) writeStorage(body.storage);
+			writeBody(body, id);
+			return this.buffer.flip();
+		}
+
+		protected void writeStorage(ParticleStorage storage) {
+			Integer owner = storage.owner != null ? this.bodyIds.get(storage.owner) : Integer.valueOf(-1);
+			if (owner == null) throw new RuntimeException(new IllegalStateException("A ParticleStorage of the PhysicWorld is owned by a SoftBody that is not part of the world!"));
+			this.buffer.putInt(owner);
+			this.buffer.putInt(storage.size);
+			for (int slot = 0; slot < storage.size; slot++) {
+				this.buffer.put((byte) (storage.particles[slot] != null ? 1 : 0));
+				this.buffer.put((byte) (storage.isolated[slot] ? 1 : 0));
+			}
+			// The arrays are copied as a whole, the values of unused slots are written too
+			putDoubles(storage.x, storage.size);
+			putDoubles(storage.y, storage.size);
+			putDoubles(storage.lastX, storage.size);
+			putDoubles(storage.lastY, storage.size);
+			putDoubles(storage.prevX, storage.size);
+			putDoubles(storage.prevY, storage.size);
+			putDoubles(storage.ax, storage.size);
+			putDoubles(storage.ay, storage.size);
+			putDoubles(storage.mass, storage.size);
+		}
+
+		protected void putDoubles(double[] values, int length) {
+			// Bulk copy over a view of the buffer, the position of a view does not move the buffer
+			this.buffer.asDoubleBuffer().put(values, 0, length);
+			this.buffer.position(this.buffer.position() + length * 8);
+		}
+
+		protected void writeBody(SoftBody body, int id) {
+			this.buffer.putInt(this.storageIds.get(body.storage));
+			// Clone instances share the lists of the original SoftBody
+			int original = this.constrainLists.get(body.constrains);
+			this.buffer.putInt(original == id ? -1 : original);
+			this.buffer.putInt(body.collisionCategory);
+			this.buffer.putInt(body.collisionMask);
+			this.buffer.putInt(body.restSteps);
+			this.buffer.put((byte) (body.selfCollision ? 1 : 0));
+			this.buffer.put((byte) (body.sleeping ? 1 : 0));
+			if (original == id) {
+				if (body.storage.owner != body) throw new RuntimeException(new IllegalStateException("A clone instance of a SoftBody is added to the PhysicWorld before its original!"));
+				this.buffer.putInt(body.particles.size());
+				for (Particle particle : body.particles) writeParticleRef(particle);
+				this.buffer.putInt(body.constrains.size());
+				for (Constrain constrain : body.constrains) writeConstrain(constrain);
+			}
+			writeContacts(body.contactCache);
+		}
+
+		protected void writeContacts(ContactCache cache) {
+			// Entries of SoftBodys and Constrains that are no longer part of the world are skipped, the PhysicSolver ignores them anyway
+			int countPosition = this.buffer.position();
+			int count = 0;
+			this.buffer.putInt(0);
+			for (int entry = 0; entry < cache.size(); entry++) {
+				Integer body = this.bodyIds.get(cache.constrainBodys[entry]);
+				if (body == null) continue;
+				Integer constrain = indexOf(cache.constrainBodys[entry].constrains, cache.constrains[entry]);
+				if (constrain == null) continue;
+				this.buffer.putInt(cache.particles[entry]);
+				this.buffer.putInt(body);
+				this.buffer.putInt(constrain);
+				this.buffer.putDouble(cache.normalX[entry]);
+				this.buffer.putDouble(cache.normalY[entry]);
+				this.buffer.putDouble(cache.correction[entry]);
+				this.buffer.putDouble(cache.warmCorrection[entry]);
+				this.buffer.putInt(cache.age[entry]);
+				count++;
+			}
+			this.buffer.putInt(countPosition, count);
+		}
+
+		protected Integer indexOf(List<Constrain> constrains, Constrain constrain) {
+			IdentityHashMap<Constrain, Integer> indices = this.constrainIds.get(constrains);
+			if (indices == null) {
+				indices = new IdentityHashMap<Constrain, Integer>();
+				for (int i = 0; i < constrains.size(); i++) indices.put(constrains.get(i), i);
+				this.constrainIds.put(constrains, indices);
+			}
+			return indices.get(constrain);
+		}
+
+		protected void writeConstrain(Constrain constrain) {
+			writeParticleRef(constrain.pointA);
+			writeParticleRef(constrain.pointB);
+			this.buffer.putDouble(constrain.length);
+			this.buffer.putDouble(constrain.originalLength);
+			this.buffer.put((byte) (constrain.broken ? 1 : 0));
+			this.buffer.putFloat(constrain.stiffness);
+			this.buffer.putFloat(constrain.deformForce);
+			this.buffer.putFloat(constrain.maxBending);
+			this.buffer.put((byte) (constrain.overridesFilter ? 1 : 0));
+			this.buffer.putInt(constrain.collisionCategory);
+			this.buffer.putInt(constrain.collisionMask);
+		}
+
+		protected void writeParticleRef(Particle particle) {
+			// Most Particles are stored in the same storage as the one before
+			if (particle.storage != this.lastStorage) {
+				Integer storage = this.storageIds.get(particle.storage);
+				if (storage == null) throw new RuntimeException(new IllegalStateException("A Particle of the PhysicWorld is not stored in the world!"));
+				this.lastStorage = particle.storage;
+				this.lastStorageId = storage;
+			}
+			this.buffer.putInt(this.lastStorageId);
+			this.buffer.putInt(particle.index);
+		}
+
+	}
+
+	/**
+	 * Restores one PhysicWorld
+	 */
+	protected static class Reader {
+
+		protected ByteBuffer buffer;
+		protected PhysicWorld world;
+		protected ParticleStorage[] storages;
+		protected SoftBody[] bodys;
+
+		public Reader(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public PhysicWorld read() {
+			this.world = new PhysicWorld();
+			this.world.setGlobalForce(new Vec2d(this.buffer.getDouble(), this.buffer.getDouble()));
+
+			// The storages are filled after the SoftBodys that own them are created
+			int storageCount = checkCount(this.buffer.getInt(), 2);
+			int storageStart = this.buffer.position();
+			int[] storageOwners = new int[storageCount];
+			for (int i = 0; i < storageCount; i++) {
+				storageOwners[i] = this.buffer.getInt();
+				skipStorage();
+			}
+			int bodyStart = this.buffer.position();
+			int bodyCount = checkCount(this.buffer.getInt(), 18);
+			this.bodys = new SoftBody[bodyCount];
+			for (int i = 0; i < storageCount; i++) {
+				int owner = storageOwners[i];
+				if (i == 0 ? owner != -1 : owner < 0 || owner >= bodyCount || this.bodys[owner] != null) throw new RuntimeException(new IllegalArgumentException("The world file is damaged!"));
+				if (i > 0) this.bodys[owner] = new SoftBody();
+			}
+			this.storages = new ParticleStorage[storageCount];
+			this.storages[0] = this.world.getJointStorage();
+			for (int i = 1; i < storageCount; i++) this.storages[i] = this.bodys[storageOwners[i]].storage;
+
+			this.buffer.position(storageStart);
+			for (int i = 0; i < storageCount; i++) {
+				this.buffer.getInt();
+				readStorage(this.storages[i]);
+			}
+
+			this.buffer.position(bodyStart + 4);
+			List<SoftBody> bodyList = new ArrayList<SoftBody>(bodyCount);
+			for (int i = 0; i < bodyCount; i++) bodyList.add(readBody(i));
+
+			// The ContactCaches can refer to all SoftBodys, they are read in a second pass
+			this.buffer.position(bodyStart + 4);
+			for (int i = 0; i < bodyCount; i++) {
+				skipBody();
+				readContacts(this.bodys[i]);
+			}
+			this.world.addSoftBodys(bodyList);
+
+			int jointCount = checkCount(this.buffer.getInt(), CONSTRAIN_SIZE);
+			List<Constrain> joints = new ArrayList<Constrain>(jointCount);
+			for (int i = 0; i < jointCount; i++) joints.add(readConstrain());
+			this.world.addJoints(joints);
+
+			return this.world;
+		}
+
+		/**
+		 * Reads a single SoftBody written by Writer.writeSoftBody() in to the world, the SoftBody is not added to the world
+		 * @param world The PhysicWorld the SoftBody will be added to, its SoftBodys have to be the same as the ones of the written world
+		 * @return The new SoftBody
+		 */
+		public SoftBody readSoftBody(PhysicWorld world) {
+			this.world = world;
+			List<SoftBody> bodyList = world.getSoftBodys();
+			int id = bodyList.size();
+			this.bodys = bodyList.toArray(new SoftBody[id + 1]);
+
+			// Same numbering as Writer.numberWorld()
+			List<ParticleStorage> storages = new ArrayList<ParticleStorage>();
+			IdentityHashMap<ParticleStorage, Integer> storageIds = new IdentityHashMap<ParticleStorage, Integer>();
+			storages.add(world.getJointStorage());
+			storageIds.put(world.getJointStorage(), 0);
+			for (SoftBody body : bodyList) {
+				if (storageIds.putIfAbsent(body.storage, storages.size()) == null) storages.add(body.storage);
+			}
+
+			if (this.buffer.get() != 0) {
+				if (this.buffer.getInt() != id) throw new RuntimeException(new IllegalArgumentException("The world file is damaged!"));
+				this.bodys[id] = new SoftBody();
+				storages.add(this.bodys[id].storage);
+				readStorage(this.bodys[id].storage);
+			}
+			this.storages = storages.toArray(new ParticleStorage[storages.size()]);
+
+			int bodyStart = this.buffer.position();
+			SoftBody body = readBody(id);
+			this.buffer.position(bodyStart);
+			skipBody();
+			readContacts(body);
+			return body;
+		}
+
+		protected int checkCount(int count, int minimalSize) {
+			if (count < 0 || count > this.buffer.remaining() / minimalSize) throw new RuntimeException(new IllegalArgumentException("The world file is damaged!"));
+			return count;
+		}
+
+		protected void skipStorage() {
+			int size = checkCount(this.buffer.getInt(), 2 + PARTICLE_SIZE);
+			this.buffer.position(this.buffer.position() + size * (2 + PARTICLE_SIZE));
+		}
+
+		protected void readStorage(ParticleStorage storage) {
+			int size = checkCount(this.buffer.getInt(), 2 + PARTICLE_SIZE);
+			storage.ensureCapacity(size);
+			for (int slot = 0; slot < size; slot++) {
+				boolean used = this.buffer.get() != 0;
+				boolean isolated = this.buffer.get() != 0;
+				if (used) storage.put(slot, new Particle(0, 0, 0));
+				storage.setIsolated(slot, isolated);
+			}
+			getDoubles(storage.x, size);
+			getDoubles(storage.y, size);
+			getDoubles(storage.lastX, size);
+			getDoubles(storage.lastY, size);
+			getDoubles(storage.prevX, size);
+			getDoubles(storage.prevY, size);
+			getDoubles(storage.ax, size);
+			getDoubles(storage.ay, size);
+			getDoubles(storage.mass, size);
+			for (int slot = 0; slot < size; slot++) {
+				// Updates the inverse mass, the masses are always written from floats
+				if (storage.particles[slot] != null) storage.setMass(slot, (float) storage.mass[slot]);
+			}
+		}
+
+		protected void getDoubles(double[] values, int length) {
+			this.buffer.asDoubleBuffer().get(values, 0, length);
+			this.buffer.position(this.buffer.position() + length * 8);
+		}
+
+		protected SoftBody readBody(int id) {
+			int storage = this.buffer.getInt();
+			int original = this.buffer.getInt();
+			if (storage < 0 || storage >= this.storages.length || original >= id) throw new RuntimeException(new IllegalArgumentException("The world file is damaged!"));
+			SoftBody body;
+			if (original >= 0) {
+				body = new SoftBody(this.bodys[original]);
+				this.bodys[id] = body;
+			} else {
+				body = this.bodys[id] != null ? this.bodys[id] : new SoftBody();
+				this.bodys[id] = body;
+			}
+			if (body.storage != this.storages[storage]) throw new RuntimeException(new IllegalArgumentException("The world file is damaged!"));
+			body.collisionCategory = this.buffer.getInt();
+			body.collisionMask = this.buffer.getInt();
+			body.restSteps = this.buffer.getInt();
+			body.selfCollision = this.buffer.get() != 0;
+			body.sleeping = this.buffer.get() != 0;
+			if (original < 0) {
+				int particleCount = checkCount(this.buffer.getInt(), 8);
+				for (int i = 0; i < particleCount; i++) body.particles.add(readParticleRef());
+				int constrainCount = checkCount(this.buffer.getInt(), CONSTRAIN_SIZE);
+				for (int i = 0; i < constrainCount; i++) {
+					Constrain constrain = readConstrain();
+					constrain.bind();
+					body.constrains.add(constrain);
+				}
+				body.markTopologyChanged();
+			}
+			skipContacts();
+			return body;
+		}
+
+		protected void skipBody() {
+			this.buffer.getInt();
+			int original = this.buffer.getInt();
+			this.buffer.position(this.buffer.position() + 4 + 4 + 4 + 1 + 1);
+			if (original < 0) {
+				int particleCount = this.buffer.getInt();
+				this.buffer.position(this.buffer.position() + particleCount * 8);
+				int constrainCount = this.buffer.getInt();
+				this.buffer.position(this.buffer.position() + constrainCount * CONSTRAIN_SIZE);
+			}
+		}
+
+		protected void skipContacts() {
+			int count = checkCount(this.buffer.getInt(), CONTACT_SIZE);
+			this.buffer.position(this.buffer.position() + count * CONTACT_SIZE);
+		}
+
+		protected void readContacts(SoftBody body) {
+			int count = checkCount(this.buffer.getInt(), CONTACT_SIZE);
+			for (int i = 0; i < count; i++) {
+				int particle = this.buffer.getInt();
+				int bodyIndex = this.buffer.getInt();
+				int constrainIndex = this.buffer.getInt();
+				SoftBody constrainBody = bodyIndex >= 0 && bodyIndex < this.bodys.length ? this.bodys[bodyIndex] : null;
+				if (particle < 0 || particle >= body.storage.size || constrainBody == null || constrainIndex < 0 || constrainIndex >= constrainBody.constrains.size()) throw new RuntimeException(new IllegalArgumentException("The world file is damaged!"));
+				Constrain constrain = constrainBody.constrains.get(constrainIndex);
+				body.contactCache.restore(particle, constrainBody, constrain, this.buffer.getDouble(), this.buffer.getDouble(), this.buffer.getDouble(), this.buffer.getDouble(), this.buffer.getInt());
+			}
+		}
+
+		protected Constrain readConstrain() {
+			Particle pointA = readParticleRef();
+			Particle pointB = readParticleRef();
+			double length = this.buffer.getDouble();
+			double originalLength = this.buffer.getDouble();
+			boolean broken = this.buffer.get() != 0;
+			Constrain constrain = new Constrain(pointA, pointB, originalLength, this.buffer.getFloat(), this.buffer.getFloat(), this.buffer.getFloat());
+			constrain.length = length;
+			constrain.broken = broken;
+			constrain.overridesFilter = this.buffer.get() != 0;
+			constrain.collisionCategory = this.buffer.getInt();
+			constrain.collisionMask = this.buffer.getInt();
+			return constrain;
+		}
+
+		protected Particle readParticleRef() {
+			int storage = this.buffer.getInt();
+			int slot = this.buffer.getInt();
+			Particle particle = storage >= 0 && storage < this.storages.length && slot >= 0 && slot < this.storages[storage].size ? this.storages[storage].particles[slot] : null;
+			if (particle == null) throw new RuntimeException(new IllegalArgumentException("The world file is damaged!"));
+			return particle;
+		}
+
+	}
+
+}
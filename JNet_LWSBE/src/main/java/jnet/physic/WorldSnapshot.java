@@ -0,0 +1,308 @@
+package jnet.physic;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jnet.physic.SoftBody.Constrain;
+
+/**
+ * A read-only copy of the positions of all Particles and the state of all Constrains and Joints of a PhysicWorld at the end of a simulation-step.
+ * The Particles are stored in slots, one range of slots for the ParticleStorage of every SoftBody and one for the Joint-storage. The Constrains refer to the slots of their two Particles.
+ * Instances are filled by the PhysicSolver and handed to other threads by a SnapshotBuffer, the arrays are reused and only grow, so capturing does not produce garbage once the buffers have reached their required size.
+ * @author M_Marvin
+ *
+ */
+public class WorldSnapshot {
+
+	protected static final int INITIAL_CAPACITY = 16;
+
+	protected long step;
+	protected double interpolationAlpha;
+
+	protected int bodyCount;
+	protected int[] bodyHandles;
+	protected int[] bodyParticleStart;
+	protected int[] bodyParticleEnd;
+	protected int[] bodyConstrainStart;
+	protected int[] bodyConstrainEnd;
+
+	protected int particleCount;
+	protected double[] x;
+	protected double[] y;
+	protected double[] prevX;
+	protected double[] prevY;
+	protected boolean[] used;
+
+	protected int constrainCount;
+	protected int jointStart;
+	protected int[] slotA;
+	protected int[] slotB;
+	protected boolean[] broken;
+
+	// Marks the storages that were already copied in the current capture
+	protected int captureStamp;
+
+	public WorldSnapshot() {
+		this.bodyHandles = new int[INITIAL_CAPACITY];
+		this.bodyParticleStart = new int[INITIAL_CAPACITY];
+		this.bodyParticleEnd = new int[INITIAL_CAPACITY];
+		this.bodyConstrainStart = new int[INITIAL_CAPACITY];
+		this.bodyConstrainEnd = new int[INITIAL_CAPACITY];
+		this.x = new double[INITIAL_CAPACITY];
+		this.y = new double[INITIAL_CAPACITY];
+		this.prevX = new double[INITIAL_CAPACITY];
+		this.prevY = new double[INITIAL_CAPACITY];
+		this.used = new boolean[INITIAL_CAPACITY];
+		this.slotA = new int[INITIAL_CAPACITY];
+		this.slotB = new int[INITIAL_CAPACITY];
+		this.broken = new boolean[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Copies the state of the world in this snapshot, has to be called at the end of a simulation-step while the ParticleStorages hold the current state
+	 * @param world The PhysicWorld to copy
+	 * @param step The number of the simulation-step
+	 */
+	public void capture(PhysicWorld world, long step) {
+		capture(world, step, 1);
+	}
+
+	/**
+	 * Copies the state of the world in this snapshot, has to be called after a simulation-step while the ParticleStorages hold the current state
+	 * @param world The PhysicWorld to copy
+	 * @param step The number of the simulation-step
+	 * @param interpolationAlpha The factor to interpolate the positions of this snapshot with (see PhysicSolver.getInterpolationAlpha())
+	 */
+	public void capture(PhysicWorld world, long step, double interpolationAlpha) {
+
+		List<SoftBody> bodys = world.getSoftBodys();
+		List<Constrain> joints = world.getJoints();
+		this.step = step;
+		this.interpolationAlpha = interpolationAlpha;
+		this.captureStamp++;
+		this.particleCount = 0;
+		this.constrainCount = 0;
+		this.bodyCount = bodys.size();
+		if (this.bodyHandles.length < this.bodyCount) growBodys(this.bodyCount);
+
+		// Copy the Particles of all storages, each storage only once
+		for (int i = 0; i < this.bodyCount; i++) {
+			SoftBody body = bodys.get(i);
+			this.bodyHandles[i] = body.handle;
+			this.bodyParticleStart[i] = captureStorage(body.storage);
+			this.bodyParticleEnd[i] = body.storage.snapshotSlot + body.storage.size;
+		}
+		captureStorage(world.getJointStorage());
+
+		// Copy the Constrains, the slots of their Particles are known now
+		for (int i = 0; i < this.bodyCount; i++) {
+			List<Constrain> constrains = bodys.get(i).constrains;
+			this.bodyConstrainStart[i] = this.constrainCount;
+			for (int c = 0; c < constrains.size(); c++) captureConstrain(constrains.get(c));
+			this.bodyConstrainEnd[i] = this.constrainCount;
+		}
+		this.jointStart = this.constrainCount;
+		for (int i = 0; i < joints.size(); i++) captureConstrain(joints.get(i));
+
+	}
+
+	protected int captureStorage(ParticleStorage storage) {
+		if (storage.snapshotStamp == this.captureStamp && storage.snapshot == this) return storage.snapshotSlot;
+		int start = this.particleCount;
+		int end = start + storage.size;
+		if (this.x.length < end) growParticles(Math.max(end, this.x.length * 2));
+		System.arraycopy(storage.x, 0, this.x, start, storage.size);
+		System.arraycopy(storage.y, 0, this.y, start, storage.size);
+		System.arraycopy(storage.prevX, 0, this.prevX, start, storage.size);
+		System.arraycopy(storage.prevY, 0, this.prevY, start, storage.size);
+		for (int i = 0; i < storage.size; i++) this.used[start + i] = storage.particles[i] != null;
+		this.particleCount = end;
+		storage.snapshot = this;
+		storage.snapshotStamp = this.captureStamp;
+		storage.snapshotSlot = start;
+		return start;
+	}
+
+	protected void captureConstrain(Constrain constrain) {
+		// Constrains of Particles that are not part of the world can not be drawn
+		if (constrain.storageA == null || constrain.storageB == null) return;
+		if (constrain.storageA.snapshot != this || constrain.storageA.snapshotStamp != this.captureStamp) return;
+		if (constrain.storageB.snapshot != this || constrain.storageB.snapshotStamp != this.captureStamp) return;
+		if (this.constrainCount == this.slotA.length) growConstrains(this.constrainCount * 2);
+		int index = this.constrainCount++;
+		this.slotA[index] = constrain.storageA.snapshotSlot + constrain.indexA;
+		this.slotB[index] = constrain.storageB.snapshotSlot + constrain.indexB;
+		this.broken[index] = constrain.broken;
+	}
+
+	protected void growBodys(int capacity) {
+		this.bodyHandles = Arrays.copyOf(this.bodyHandles, capacity);
+		this.bodyParticleStart = Arrays.copyOf(this.bodyParticleStart, capacity);
+		this.bodyParticleEnd = Arrays.copyOf(this.bodyParticleEnd, capacity);
+		this.bodyConstrainStart = Arrays.copyOf(this.bodyConstrainStart, capacity);
+		this.bodyConstrainEnd = Arrays.copyOf(this.bodyConstrainEnd, capacity);
+	}
+
+	protected void growParticles(int capacity) {
+		this.x = Arrays.copyOf(this.x, capacity);
+		this.y = Arrays.copyOf(this.y, capacity);
+		this.prevX = Arrays.copyOf(this.prevX, capacity);
+		this.prevY = Arrays.copyOf(this.prevY, capacity);
+		this.used = Arrays.copyOf(this.used, capacity);
+	}
+
+	protected void growConstrains(int capacity) {
+		this.slotA = Arrays.copyOf(this.slotA, capacity);
+		this.slotB = Arrays.copyOf(this.slotB, capacity);
+		this.broken = Arrays.copyOf(this.broken, capacity);
+	}
+
+	/**
+	 * Gets the number of the simulation-step this snapshot was captured at
+	 * @return The number of the step, starting at 1 for the first step
+	 */
+	public long getStep() {
+		return step;
+	}
+
+	/**
+	 * Gets the factor to interpolate between the previous and the current positions of this snapshot, captured together with the positions so both belong to the same step
+	 * @return The fraction of a fixed step that was left in the accumulator of PhysicSolver.step(), 1 if the snapshot was published by solve()
+	 */
+	public double getInterpolationAlpha() {
+		return interpolationAlpha;
+	}
+
+	public int getBodyCount() {
+		return bodyCount;
+	}
+
+	/**
+	 * Gets the handle of a SoftBody in the PhysicWorld (see PhysicWorld.getSoftBody(int))
+	 * @param body The index of the SoftBody in this snapshot
+	 * @return The handle of the SoftBody
+	 */
+	public int getBodyHandle(int body) {
+		return bodyHandles[body];
+	}
+
+	/**
+	 * Gets the first slot of the Particles of a SoftBody
+	 * @param body The index of the SoftBody in this snapshot
+	 * @return The first slot
+	 */
+	public int getParticleStart(int body) {
+		return bodyParticleStart[body];
+	}
+
+	/**
+	 * Gets the slot after the last Particle of a SoftBody
+	 * @param body The index of the SoftBody in this snapshot
+	 * @return The end (exclusive) of the slots
+	 */
+	public int getParticleEnd(int body) {
+		return bodyParticleEnd[body];
+	}
+
+	/**
+	 * Gets the first Constrain of a SoftBody
+	 * @param body The index of the SoftBody in this snapshot
+	 * @return The index of the first Constrain
+	 */
+	public int getConstrainStart(int body) {
+		return bodyConstrainStart[body];
+	}
+
+	/**
+	 * Gets the Constrain after the last Constrain of a SoftBody
+	 * @param body The index of the SoftBody in this snapshot
+	 * @return The end (exclusive) of the Constrains
+	 */
+	public int getConstrainEnd(int body) {
+		return bodyConstrainEnd[body];
+	}
+
+	/**
+	 * Gets the first Joint, the Joints are stored after the Constrains of the SoftBodys
+	 * @return The index of the first Joint
+	 */
+	public int getJointStart() {
+		return jointStart;
+	}
+
+	/**
+	 * Gets the Constrain after the last Joint
+	 * @return The end (exclusive) of the Joints
+	 */
+	public int getJointEnd() {
+		return constrainCount;
+	}
+
+	public int getParticleCount() {
+		return particleCount;
+	}
+
+	public int getConstrainCount() {
+		return constrainCount;
+	}
+
+	/**
+	 * Checks if a slot holds a Particle, the slots of moved Particles are empty
+	 * @param slot The slot
+	 * @return true if the slot holds a Particle
+	 */
+	public boolean isUsed(int slot) {
+		return used[slot];
+	}
+
+	public double getX(int slot) {
+		return x[slot];
+	}
+
+	public double getY(int slot) {
+		return y[slot];
+	}
+
+	/**
+	 * Interpolates the x position of a Particle between the start and the end of the step (see Particle.getInterpolatedPos())
+	 * @param slot The slot of the Particle
+	 * @param alpha The interpolation factor, 0 for the start and 1 for the end of the step
+	 * @return The interpolated x position
+	 */
+	public double getX(int slot, double alpha) {
+		return prevX[slot] + (x[slot] - prevX[slot]) * alpha;
+	}
+
+	/**
+	 * Interpolates the y position of a Particle between the start and the end of the step (see Particle.getInterpolatedPos())
+	 * @param slot The slot of the Particle
+	 * @param alpha The interpolation factor, 0 for the start and 1 for the end of the step
+	 * @return The interpolated y position
+	 */
+	public double getY(int slot, double alpha) {
+		return prevY[slot] + (y[slot] - prevY[slot]) * alpha;
+	}
+
+	/**
+	 * Gets the slot of the first Particle of a Constrain
+	 * @param constrain The index of the Constrain
+	 * @return The slot of Particle A
+	 */
+	public int getSlotA(int constrain) {
+		return slotA[constrain];
+	}
+
+	/**
+	 * Gets the slot of the second Particle of a Constrain
+	 * @param constrain The index of the Constrain
+	 * @return The slot of Particle B
+	 */
+	public int getSlotB(int constrain) {
+		return slotB[constrain];
+	}
+
+	public boolean isBroken(int constrain) {
+		return broken[constrain];
+	}
+
+}
@@ -3,9 +3,10 @@ package jnet.render;
 import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.glDrawArrays;
 import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
 import static org.lwjgl.opengl.GL15.glBindBuffer;
 import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
 import static org.lwjgl.opengl.GL15.glDeleteBuffers;
 import static org.lwjgl.opengl.GL15.glGenBuffers;
 import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
@@ -17,16 +18,16 @@ import static org.lwjgl.opengl.GL30.glGenVertexArrays;
 
 import java.awt.Color;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
+import java.util.Map.Entry;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 
 import jnet.physic.PhysicWorld;
 import jnet.physic.SoftBody;
-import jnet.util.Vec2d;
+import jnet.physic.WorldSnapshot;
 
 /**
  * <strong>CALL ONLY IF LWJGL OPENGL AND GLFW IS INSTALLED</strong>
@@ -41,105 +42,107 @@ public class ShapeBeamRenderer {
 	protected Color pointColor;
 	protected float pointSize;
 	protected float stripWidth;
+	protected double interpolationAlpha;
 	
-	protected HashMap<SoftBody, Mesh[]> shapeMeshCache;
+	protected HashMap<SoftBody, ShapeMesh> shapeMeshCache;
+	protected VertexPacker stripPacker;
+	protected VertexPacker pointPacker;
+	protected Mesh jointMesh;
+	protected Mesh snapshotStripMesh;
+	protected Mesh snapshotPointMesh;
 	
 	public ShapeBeamRenderer(Color stripColor, Color pointColor, float pointSize, float stripWidth) {
 		this.pointColor = pointColor;
 		this.stripColor = stripColor;
 		this.pointSize = pointSize;
 		this.stripWidth = stripWidth;
-		this.shapeMeshCache = new HashMap<SoftBody, Mesh[]>();
+		this.interpolationAlpha = 1;
+		this.shapeMeshCache = new HashMap<SoftBody, ShapeMesh>();
+		this.stripPacker = new VertexPacker();
+		this.pointPacker = new VertexPacker();
 	}
 	
-	protected Mesh[] makeShapeMesh(SoftBody shape) {
-
-		List<Vec2d> renderedPoints = new ArrayList<Vec2d>();
-		
-		FloatBuffer stripBuffer = BufferUtils.createFloatBuffer(shape.getConstrains().size() * 6);
-		
-		shape.getConstrains().forEach((strip) -> {
-						
-			Vec2d stripStart = strip.pointA.pos;
-			Vec2d stripEnd = strip.pointB.pos;
-			
-			if (!strip.broken) {
-				stripBuffer.put((float) stripStart.x);
-				stripBuffer.put((float) stripStart.y);
-				stripBuffer.put(0);
-				stripBuffer.put((float) stripEnd.x);
-				stripBuffer.put((float) stripEnd.y);
-				stripBuffer.put(0);
-			}
-			
-			if (!renderedPoints.contains(stripEnd)) renderedPoints.add(stripEnd);
-			if (!renderedPoints.contains(stripStart)) renderedPoints.add(stripStart);
-			
-		});
-		
-		FloatBuffer pointBuffer = BufferUtils.createFloatBuffer(renderedPoints.size() * 3);
-		
-		renderedPoints.forEach((point) -> {
-			
-			pointBuffer.put((float) point.x);
-			pointBuffer.put((float) point.y);
-			pointBuffer.put(0);
-			
-		});
+	/**
+	 * Changes the factor to interpolate between the previous and the current positions of the Particles
+	 * @param interpolationAlpha The interpolation factor (see PhysicSolver.getInterpolationAlpha()), 1 to draw the current positions, not used by drawSnapshot()
+	 */
+	public void setInterpolationAlpha(double interpolationAlpha) {
+		this.interpolationAlpha = interpolationAlpha;
+	}
+	
+	public double getInterpolationAlpha() {
+		return interpolationAlpha;
+	}
+	
+	/**
+	 * Renders the Particles (Nodes) and Constrains of a SoftBody.
+	 * Every SoftBody gets its own Mesh that is created once and updated every frame, it is only refilled if the SoftBody is awake or its Constrains have changed.
+	 * @param shape The SoftBody to render
+	 */
+	public void drawShape(SoftBody shape) {
 		
-		pointBuffer.flip();
-		stripBuffer.flip();
-		Mesh pointMesh = new Mesh();
-		pointMesh.uploadVertecies(pointBuffer);
-		Mesh stripMesh = new Mesh();
-		stripMesh.uploadVertecies(stripBuffer);
+		ShapeMesh mesh = this.shapeMeshCache.get(shape);
+		if (mesh == null) {
+			mesh = new ShapeMesh();
+			this.shapeMeshCache.put(shape, mesh);
+		}
 		
-		Mesh[] meshes = new Mesh[] {stripMesh, pointMesh};
+		// Sleeping SoftBodys do not move, their vertices stay valid
+		if (!mesh.isValid(shape, this.interpolationAlpha)) {
+			this.stripPacker.clear();
+			this.stripPacker.packConstrains(shape.getConstrains(), this.interpolationAlpha);
+			this.pointPacker.clear();
+			this.pointPacker.packParticles(shape.getParticles(), this.interpolationAlpha);
+			mesh.strips.updateVertecies(this.stripPacker.getVertices(), this.stripPacker.size());
+			mesh.points.updateVertecies(this.pointPacker.getVertices(), this.pointPacker.size());
+			mesh.validate(shape, this.interpolationAlpha);
+		}
 		
-		return meshes;
+		draw(mesh.strips, mesh.points);
 		
 	}
 	
-	protected Mesh makeJointMesh(PhysicWorld world) {
-
-		List<Vec2d> renderedPoints = new ArrayList<Vec2d>();
-		
-		FloatBuffer stripBuffer = BufferUtils.createFloatBuffer(world.getJoints().size() * 6);
-		
-		world.getJoints().forEach((strip) -> {
-						
-			Vec2d stripStart = strip.pointA.pos;
-			Vec2d stripEnd = strip.pointB.pos;
-			
-			if (!strip.broken) {
-				stripBuffer.put((float) stripStart.x);
-				stripBuffer.put((float) stripStart.y);
-				stripBuffer.put(0);
-				stripBuffer.put((float) stripEnd.x);
-				stripBuffer.put((float) stripEnd.y);
-				stripBuffer.put(0);
-			}
-			
-			if (!renderedPoints.contains(stripEnd)) renderedPoints.add(stripEnd);
-			if (!renderedPoints.contains(stripStart)) renderedPoints.add(stripStart);
-			
-		});
+	/**
+	 * Renders all the Joints in a World
+	 * @param shape The World to render its Joints
+	 */
+	public void drawJoints(PhysicWorld world) {
 		
-		stripBuffer.flip();
-		Mesh stripMesh = new Mesh();
-		stripMesh.uploadVertecies(stripBuffer);
+		if (this.jointMesh == null) this.jointMesh = new Mesh();
+		this.stripPacker.clear();
+		this.stripPacker.packConstrains(world.getJoints(), this.interpolationAlpha);
+		this.jointMesh.updateVertecies(this.stripPacker.getVertices(), this.stripPacker.size());
 		
-		return stripMesh;
+		draw(this.jointMesh, null);
 		
 	}
 	
 	/**
-	 * Renders the Particles (Nodes) and Constrains of a SoftBody
-	 * @param shape The SoftBody to render
+	 * Renders all SoftBodys and Joints of a WorldSnapshot, can be called by an other thread than the one of the PhysicSolver (see PhysicSolver.setSnapshotBuffer()).
+	 * The positions are interpolated with the factor of the snapshot (WorldSnapshot.getInterpolationAlpha()), not with the one of this renderer.
+	 * The vertex-buffers and meshes are reused, so drawing a snapshot does not produce garbage once they have reached their required size.
+	 * @param snapshot The WorldSnapshot to render
 	 */
-	public void drawShape(SoftBody shape) {
+	public void drawSnapshot(WorldSnapshot snapshot) {
 		
-		Mesh[] meshes = makeShapeMesh(shape);
+		if (this.snapshotStripMesh == null) {
+			this.snapshotStripMesh = new Mesh();
+			this.snapshotPointMesh = new Mesh();
+		}
+		
+		double alpha = snapshot.getInterpolationAlpha();
+		this.stripPacker.clear();
+		this.stripPacker.packConstrains(snapshot, alpha);
+		this.pointPacker.clear();
+		this.pointPacker.packParticles(snapshot, alpha);
+		this.snapshotStripMesh.updateVertecies(this.stripPacker.getVertices(), this.stripPacker.size());
+		this.snapshotPointMesh.updateVertecies(this.pointPacker.getVertices(), this.pointPacker.size());
+		
+		draw(this.snapshotStripMesh, this.snapshotPointMesh);
+		
+	}
+	
+	protected void draw(Mesh strips, Mesh points) {
 		
 		GL11.glEnable(GL11.GL_LINE_WIDTH);
 		GL11.glLineWidth(this.stripWidth);
@@ -151,34 +154,77 @@ public class ShapeBeamRenderer {
 		GL11.glPushMatrix();
 		
 		GL11.glColor4f(this.stripColor.getRed() / 255F, this.stripColor.getGreen() / 255F, this.stripColor.getBlue() / 255F, this.stripColor.getAlpha() / 255F);
-		meshes[0].draw(GL11.GL_LINES);
+		strips.draw(GL11.GL_LINES);
 		
-		GL11.glColor4f(this.pointColor.getRed() / 255F, this.pointColor.getGreen() / 255F, this.pointColor.getBlue() / 255F, this.pointColor.getAlpha() / 255F);
-		meshes[1].draw(GL11.GL_POINTS);
+		if (points != null) {
+			GL11.glColor4f(this.pointColor.getRed() / 255F, this.pointColor.getGreen() / 255F, this.pointColor.getBlue() / 255F, this.pointColor.getAlpha() / 255F);
+			points.draw(GL11.GL_POINTS);
+		}
 		
 		GL11.glPopMatrix();
 		
 	}
 	
 	/**
-	 * Renders all the Joints in a World
-	 * @param shape The World to render its Joints
+	 * Deletes the Mesh of a SoftBody, has to be called if the SoftBody is no longer rendered (for example after it was removed from the PhysicWorld)
+	 * @param shape The SoftBody
 	 */
-	public void drawJoints(PhysicWorld world) {
-
-		Mesh mesh = makeJointMesh(world);
+	public void releaseShape(SoftBody shape) {
+		ShapeMesh mesh = this.shapeMeshCache.remove(shape);
+		if (mesh != null) mesh.destroy();
+	}
+	
+	/**
+	 * Deletes the Meshes of all SoftBodys that are no longer part of a PhysicWorld
+	 */
+	public void releaseRemovedShapes() {
+		Iterator<Entry<SoftBody, ShapeMesh>> iterator = this.shapeMeshCache.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<SoftBody, ShapeMesh> entry = iterator.next();
+			if (entry.getKey().getWorld() == null) {
+				entry.getValue().destroy();
+				iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Deletes all Meshes of this renderer
+	 */
+	public void destroy() {
+		this.shapeMeshCache.values().forEach(ShapeMesh::destroy);
+		this.shapeMeshCache.clear();
+		if (this.jointMesh != null) this.jointMesh.destroy();
+		if (this.snapshotStripMesh != null) this.snapshotStripMesh.destroy();
+		if (this.snapshotPointMesh != null) this.snapshotPointMesh.destroy();
+		this.jointMesh = null;
+		this.snapshotStripMesh = null;
+		this.snapshotPointMesh = null;
+	}
+	
+	/** The Meshes of a SoftBody and the state they were filled with **/
+	protected class ShapeMesh {
 		
-		GL11.glEnable(GL11.GL_LINE_WIDTH);
-		GL11.glLineWidth(this.stripWidth);
-		GL11.glEnable(GL11.GL_BLEND);
-		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		protected Mesh strips = new Mesh();
+		protected Mesh points = new Mesh();
+		protected int topologyVersion;
+		protected boolean sleeping;
+		protected double alpha;
 		
-		GL11.glPushMatrix();
+		protected boolean isValid(SoftBody shape, double alpha) {
+			return this.sleeping && shape.isSleeping() && this.topologyVersion == shape.getTopologyVersion() && this.alpha == alpha;
+		}
 		
-		GL11.glColor4f(this.stripColor.getRed() / 255F, this.stripColor.getGreen() / 255F, this.stripColor.getBlue() / 255F, this.stripColor.getAlpha() / 255F);
-		mesh.draw(GL11.GL_LINES);
+		protected void validate(SoftBody shape, double alpha) {
+			this.sleeping = shape.isSleeping();
+			this.topologyVersion = shape.getTopologyVersion();
+			this.alpha = alpha;
+		}
 		
-		GL11.glPopMatrix();
+		protected void destroy() {
+			this.strips.destroy();
+			this.points.destroy();
+		}
 		
 	}
 	
@@ -188,35 +234,66 @@ public class ShapeBeamRenderer {
 		private int vertexArrayObject;
 		private int vertexBufferObject;
 		private int vertexCount;
+		private int bufferCapacity;
+		private FloatBuffer uploadBuffer;
 		
 		public Mesh() {
 			vertexArrayObject = glGenVertexArrays();
 		}
 		
+		/**
+		 * Replaces all vertices of this Mesh, same as updateVertecies(vertecies, vertecies.length)
+		 * @param vertecies The array with the new vertices
+		 */
 		public void uploadVertecies(float[] vertecies) {
-			glBindVertexArray(vertexArrayObject);
-			vertexBufferObject = glGenBuffers();
-			glBindBuffer(GL_ARRAY_BUFFER, vertexBufferObject);
-			glBufferData(GL_ARRAY_BUFFER, vertecies, GL_STATIC_DRAW);
-			glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
-			glBindVertexArray(0);
-			vertexCount = vertecies.length / 3;
-			
+			updateVertecies(vertecies, vertecies.length);
 		}
-
+		
+		/**
+		 * Replaces the vertices of this Mesh with the remaining floats of the buffer, the vertex-buffer is reused like by updateVertecies()
+		 * @param vertecies The buffer with the new vertices
+		 */
 		public void uploadVertecies(FloatBuffer vertecies) {
+			updateVertecies(vertecies);
+		}
+		
+		/**
+		 * Replaces the vertices of this Mesh, the vertex-buffer is created once and only reallocated if it is too small, otherwise it is updated with glBufferSubData
+		 * @param vertecies The array with the new vertices
+		 * @param size The number of floats to upload from the array
+		 */
+		public void updateVertecies(float[] vertecies, int size) {
+			if (uploadBuffer == null || uploadBuffer.capacity() < size) uploadBuffer = BufferUtils.createFloatBuffer(Math.max(size, uploadBuffer == null ? 0 : uploadBuffer.capacity() * 2));
+			uploadBuffer.clear();
+			uploadBuffer.put(vertecies, 0, size);
+			uploadBuffer.flip();
+			updateVertecies(uploadBuffer);
+		}
+		
+		/**
+		 * Replaces the vertices of this Mesh with the remaining floats of the buffer, the vertex-buffer is created once and only reallocated if it is too small
+		 * @param vertecies The buffer with the new vertices
+		 */
+		public void updateVertecies(FloatBuffer vertecies) {
+			int size = vertecies.remaining();
 			glBindVertexArray(vertexArrayObject);
-			vertexBufferObject = glGenBuffers();
+			if (vertexBufferObject == 0) vertexBufferObject = glGenBuffers();
 			glBindBuffer(GL_ARRAY_BUFFER, vertexBufferObject);
-			glBufferData(GL_ARRAY_BUFFER, vertecies, GL_STATIC_DRAW);
-			glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
+			if (size > bufferCapacity) {
+				bufferCapacity = Math.max(size, bufferCapacity * 2);
+				glBufferData(GL_ARRAY_BUFFER, (long) bufferCapacity * Float.BYTES, GL_DYNAMIC_DRAW);
+				glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
+			}
+			glBufferSubData(GL_ARRAY_BUFFER, 0, vertecies);
 			glBindVertexArray(0);
-			vertexCount = vertecies.capacity() / 3;
+			vertexCount = size / 3;
 		}
 		
 		public void destroy() {
-			glDeleteBuffers(vertexBufferObject);
+			if (vertexBufferObject != 0) glDeleteBuffers(vertexBufferObject);
 			glDeleteVertexArrays(vertexArrayObject);
+			vertexBufferObject = 0;
+			bufferCapacity = 0;
 		}
 		
 		public void draw(int mode) {
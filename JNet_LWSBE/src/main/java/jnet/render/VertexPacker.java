@@ -0,0 +1,144 @@
+package jnet.render;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jnet.physic.SoftBody.Constrain;
+import jnet.physic.SoftBody.Particle;
+import jnet.physic.WorldSnapshot;
+
+/**
+ * Packs the positions of Particles and Constrains in a float array of vertices (x, y, z), used by the ShapeBeamRenderer to fill its vertex-buffers.
+ * The packer does not use OpenGL, so it can be used and tested without a window. The array is reused and only grows.
+ * @author M_Marvin
+ *
+ */
+public class VertexPacker {
+
+	protected static final int INITIAL_CAPACITY = 48;
+
+	protected float[] vertices;
+	protected int size;
+
+	public VertexPacker() {
+		this.vertices = new float[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Removes all vertices, the array is kept
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a vertex at the given position
+	 * @param x The x position
+	 * @param y The y position
+	 */
+	public void put(double x, double y) {
+		if (this.size + 3 > this.vertices.length) this.vertices = Arrays.copyOf(this.vertices, Math.max(this.size + 3, this.vertices.length * 2));
+		this.vertices[this.size++] = (float) x;
+		this.vertices[this.size++] = (float) y;
+		this.vertices[this.size++] = 0;
+	}
+
+	/**
+	 * Adds the interpolated position of a Particle (see Particle.getInterpolatedPos())
+	 * @param particle The Particle
+	 * @param alpha The interpolation factor, 1 for the current position
+	 */
+	public void put(Particle particle, double alpha) {
+		if (alpha >= 1) {
+			put(particle.getX(), particle.getY());
+		} else {
+			put(particle.getPrevX() + (particle.getX() - particle.getPrevX()) * alpha, particle.getPrevY() + (particle.getY() - particle.getPrevY()) * alpha);
+		}
+	}
+
+	/**
+	 * Adds the interpolated position of a Particle in a WorldSnapshot
+	 * @param snapshot The WorldSnapshot
+	 * @param slot The slot of the Particle
+	 * @param alpha The interpolation factor, 1 for the current position
+	 */
+	public void put(WorldSnapshot snapshot, int slot, double alpha) {
+		if (alpha >= 1) {
+			put(snapshot.getX(slot), snapshot.getY(slot));
+		} else {
+			put(snapshot.getX(slot, alpha), snapshot.getY(slot, alpha));
+		}
+	}
+
+	/**
+	 * Adds two vertices (a line) for every Constrain that is not broken
+	 * @param constrains The Constrains
+	 * @param alpha The interpolation factor, 1 for the current positions
+	 */
+	public void packConstrains(List<Constrain> constrains, double alpha) {
+		for (int i = 0; i < constrains.size(); i++) {
+			Constrain constrain = constrains.get(i);
+			if (constrain.broken) continue;
+			put(constrain.pointA, alpha);
+			put(constrain.pointB, alpha);
+		}
+	}
+
+	/**
+	 * Adds a vertex for every Particle
+	 * @param particles The Particles
+	 * @param alpha The interpolation factor, 1 for the current positions
+	 */
+	public void packParticles(List<Particle> particles, double alpha) {
+		for (int i = 0; i < particles.size(); i++) {
+			put(particles.get(i), alpha);
+		}
+	}
+
+	/**
+	 * Adds two vertices (a line) for every Constrain and Joint of a WorldSnapshot that is not broken
+	 * @param snapshot The WorldSnapshot
+	 * @param alpha The interpolation factor, 1 for the current positions
+	 */
+	public void packConstrains(WorldSnapshot snapshot, double alpha) {
+		for (int constrain = 0; constrain < snapshot.getConstrainCount(); constrain++) {
+			if (snapshot.isBroken(constrain)) continue;
+			put(snapshot, snapshot.getSlotA(constrain), alpha);
+			put(snapshot, snapshot.getSlotB(constrain), alpha);
+		}
+	}
+
+	/**
+	 * Adds a vertex for every Particle of the SoftBodys of a WorldSnapshot
+	 * @param snapshot The WorldSnapshot
+	 * @param alpha The interpolation factor, 1 for the current positions
+	 */
+	public void packParticles(WorldSnapshot snapshot, double alpha) {
+		for (int body = 0; body < snapshot.getBodyCount(); body++) {
+			for (int slot = snapshot.getParticleStart(body); slot < snapshot.getParticleEnd(body); slot++) {
+				if (snapshot.isUsed(slot)) put(snapshot, slot, alpha);
+			}
+		}
+	}
+
+	/**
+	 * Gets the array of the vertices, only the first size() values are valid
+	 * @return The array of the vertices
+	 */
+	public float[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Gets the number of floats in the array
+	 * @return The number of floats, three per vertex
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getVertexCount() {
+		return size / 3;
+	}
+
+}
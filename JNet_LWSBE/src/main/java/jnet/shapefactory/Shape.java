@@ -1,12 +1,15 @@
 package jnet.shapefactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 import jnet.JNet;
 import jnet.physic.SoftBody;
 import jnet.physic.SoftBody.Constrain;
 import jnet.physic.SoftBody.Particle;
+import jnet.util.PositionIndex;
 import jnet.util.Vec2d;
 
 /**
@@ -18,10 +21,24 @@ public class Shape {
 	
 	protected List<ConstrainDefinition> constrains;
 	protected List<ParticleDefinition> particles;
+	protected double searchTolerance;
+	
+	// The indices of the search methods, built on the first search and kept in sync by addConstrain()
+	protected PositionIndex nodeIndex;
+	protected HashMap<ParticleDefinition, Integer> nodeIds;
+	protected int[] nodeBeams;
+	protected int[] beamNodes;
+	protected int[] beamNext;
+	// Beam ends whose ParticleDefinition is not in the list (yet), chained by beamNext, resolved when the definition is appended
+	protected HashMap<ParticleDefinition, Integer> unresolvedHeads;
+	protected int indexedParticles;
+	protected int indexedConstrains;
+	protected int unresolvedEnds;
 	
 	public Shape() {
 		this.constrains = new ArrayList<ConstrainDefinition>();
 		this.particles = new ArrayList<ParticleDefinition>();
+		this.searchTolerance = JNet.DEFAULT_SEARCH_TOLERANCE;
 	}
 	
 	/**
@@ -29,9 +46,17 @@ public class Shape {
 	 * @param constrain The constrain definition to add
 	 */
 	public void addConstrain(ConstrainDefinition constrain) {
+		updateIndex();
 		this.constrains.add(constrain);
-		if (!this.particles.contains(constrain.pointA)) this.particles.add(constrain.pointA);
-		if (!this.particles.contains(constrain.pointB)) this.particles.add(constrain.pointB);
+		if (!this.nodeIds.containsKey(constrain.pointA)) {
+			this.particles.add(constrain.pointA);
+			indexParticle(this.indexedParticles);
+		}
+		if (!this.nodeIds.containsKey(constrain.pointB)) {
+			this.particles.add(constrain.pointB);
+			indexParticle(this.indexedParticles);
+		}
+		indexConstrain(this.indexedConstrains);
 	}
 	
 	/**
@@ -40,10 +65,12 @@ public class Shape {
 	 */
 	public void changeMaterial(Material material) {
 		this.constrains.forEach((constrain) -> constrain.changeMaterial(material));
+		invalidateIndex();
 	}
 	
 	/**
 	 * Creates a new SoftBody with the parameters of this Shape
+	 * IMPORTANT: This changes the lastBuild field of the ParticleDefinitions, a Shape can not be built from multiple threads at the same time. Use compile() for that.
 	 * @return A new SoftBody instance with the parameters of this Shape
 	 */
 	public SoftBody build() {
@@ -58,28 +85,151 @@ public class Shape {
 	}
 	
 	/**
-	 * Returns the first ParticleDefinition with the given position or null if no matching ParticleDefinition is found
+	 * Compiles the current state of this Shape to an immutable ShapeTemplate, that can build many SoftBodys fast and from multiple threads
+	 * @return A new ShapeTemplate of this Shape
+	 */
+	public ShapeTemplate compile() {
+		return new ShapeTemplate(this);
+	}
+	
+	/**
+	 * Sets the maximal distance of the position of a ParticleDefinition to the searched position, used by searchNode() and searchBeam()
+	 * @param searchTolerance The search tolerance, 0 to find only ParticleDefinitions at exactly the searched position
+	 */
+	public void setSearchTolerance(double searchTolerance) {
+		if (searchTolerance < 0) throw new RuntimeException(new IllegalArgumentException("The search tolerance can not be negative!"));
+		this.searchTolerance = searchTolerance;
+		invalidateIndex();
+	}
+	
+	public double getSearchTolerance() {
+		return searchTolerance;
+	}
+	
+	/**
+	 * Discards the indices of the search methods, they are rebuilt on the next search.
+	 * Changes made with addConstrain() and definitions appended to the lists are indexed automatically, this has only to be called if definitions are removed or replaced in the lists or if the position or mass of a ParticleDefinition was changed.
+	 */
+	public void invalidateIndex() {
+		this.nodeIndex = null;
+	}
+	
+	/**
+	 * Brings the indices of the search methods up to date, rebuilds them if they were invalidated or definitions were removed from the lists, appended definitions are added incrementally
+	 */
+	protected void updateIndex() {
+		int particleCount = this.particles.size();
+		int constrainCount = this.constrains.size();
+		if (this.nodeIndex == null || particleCount < this.indexedParticles || constrainCount < this.indexedConstrains) {
+			this.nodeIndex = new PositionIndex(this.searchTolerance);
+			this.nodeIds = new HashMap<ParticleDefinition, Integer>();
+			this.unresolvedHeads = new HashMap<ParticleDefinition, Integer>();
+			this.nodeBeams = new int[Math.max(16, particleCount)];
+			this.beamNodes = new int[Math.max(16, constrainCount * 2)];
+			this.beamNext = new int[Math.max(16, constrainCount * 2)];
+			this.indexedParticles = 0;
+			this.indexedConstrains = 0;
+			this.unresolvedEnds = 0;
+		}
+		while (this.indexedParticles < particleCount) indexParticle(this.indexedParticles);
+		while (this.indexedConstrains < constrainCount) indexConstrain(this.indexedConstrains);
+	}
+	
+	protected void indexParticle(int node) {
+		ParticleDefinition particle = this.particles.get(node);
+		if (node == this.nodeBeams.length) this.nodeBeams = Arrays.copyOf(this.nodeBeams, node * 2);
+		this.nodeIndex.add(particle.pos.x, particle.pos.y);
+		this.nodeBeams[node] = -1;
+		this.indexedParticles++;
+		// Equal definitions belong to the first one, like List.contains()
+		if (this.nodeIds.putIfAbsent(particle, node) == null && this.unresolvedEnds > 0) {
+			// Appended ParticleDefinitions can resolve ends of already indexed beams
+			Integer head = this.unresolvedHeads.remove(particle);
+			if (head == null) return;
+			for (int end = head; end >= 0;) {
+				int next = this.beamNext[end];
+				linkBeamEnd(end, node);
+				this.unresolvedEnds--;
+				end = next;
+			}
+		}
+	}
+	
+	protected void indexConstrain(int beam) {
+		ConstrainDefinition constrain = this.constrains.get(beam);
+		if (beam * 2 + 2 > this.beamNodes.length) {
+			this.beamNodes = Arrays.copyOf(this.beamNodes, this.beamNodes.length * 2);
+			this.beamNext = Arrays.copyOf(this.beamNext, this.beamNext.length * 2);
+		}
+		linkBeamEnd(beam * 2, constrain.pointA);
+		linkBeamEnd(beam * 2 + 1, constrain.pointB);
+		this.indexedConstrains++;
+	}
+	
+	protected void linkBeamEnd(int end, ParticleDefinition particle) {
+		Integer node = this.nodeIds.get(particle);
+		if (node == null) {
+			Integer head = this.unresolvedHeads.put(particle, end);
+			this.beamNodes[end] = -1;
+			this.beamNext[end] = head == null ? -1 : head;
+			this.unresolvedEnds++;
+			return;
+		}
+		linkBeamEnd(end, node);
+	}
+	
+	protected void linkBeamEnd(int end, int node) {
+		this.beamNodes[end] = node;
+		this.beamNext[end] = this.nodeBeams[node];
+		this.nodeBeams[node] = end;
+	}
+	
+	/**
+	 * Returns the index of the first ParticleDefinition with the given position
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The index in the list of ParticleDefinitions or -1 if no one is found
+	 */
+	public int searchNodeIndex(double x, double y) {
+		updateIndex();
+		return this.nodeIndex.find(x, y);
+	}
+	
+	/**
+	 * Returns the index of the first ConstrainDefinition between two ParticleDefinitions, in any direction
+	 * @param node1 The index of the first ParticleDefinition
+	 * @param node2 The index of the second ParticleDefinition
+	 * @return The index in the list of ConstrainDefinitions or -1 if no one is found
+	 */
+	public int searchBeamIndex(int node1, int node2) {
+		updateIndex();
+		if (node1 < 0 || node2 < 0) return -1;
+		int found = -1;
+		// Resolved ends are linked later than their beam was added, the chain is not ordered
+		for (int end = this.nodeBeams[node1]; end >= 0; end = this.beamNext[end]) {
+			if (this.beamNodes[end ^ 1] == node2 && (found < 0 || end >> 1 < found)) found = end >> 1;
+		}
+		return found;
+	}
+	
+	/**
+	 * Returns the first ParticleDefinition with the given position (in the range of the search tolerance) or null if no matching ParticleDefinition is found
 	 * @param x The x position of the ParticleDefinition
 	 * @param y The y position of the ParticleDefinition
 	 * @return The first matching ParticleDefinition or null if no one is found
 	 */
 	public ParticleDefinition searchNode(float x, float y) {
-		Vec2d position = new Vec2d(x, y);
-		for (ParticleDefinition node : this.particles) {
-			if (node.pos.equals(position)) return node;
-		}
-		return null;
+		int node = searchNodeIndex(x, y);
+		return node < 0 ? null : this.particles.get(node);
 	}
 	/**
-	 * Returns the first ParticleDefinition with the given position or null if no matching ParticleDefinition is found
+	 * Returns the first ParticleDefinition with the given position (in the range of the search tolerance) or null if no matching ParticleDefinition is found
 	 * @param position The position of the ParticleDefinition
 	 * @return The first matching ParticleDefinition or null if no one is found
 	 */
 	public ParticleDefinition searchNode(Vec2d position) {
-		for (ParticleDefinition node : this.particles) {
-			if (node.pos.equals(position)) return node;
-		}
-		return null;
+		int node = searchNodeIndex(position.x, position.y);
+		return node < 0 ? null : this.particles.get(node);
 	}
 	
 	/**
@@ -89,14 +239,8 @@ public class Shape {
 	 * @return The first matching ConstrainDefinition or null if no one is found
 	 */
 	public ConstrainDefinition searchBeam(Vec2d position1, Vec2d position2) {
-		ParticleDefinition node1 = searchNode(position1);
-		if (node1 == null) return null;
-		ParticleDefinition node2 = searchNode(position2);
-		if (node2 == null) return null;
-		for (ConstrainDefinition beam : this.constrains) {
-			if ((beam.pointA.equals(node1) && beam.pointB.equals(node2)) || (beam.pointA.equals(node2) && beam.pointB.equals(node1))) return beam;
-		}
-		return null;
+		int beam = searchBeamIndex(searchNodeIndex(position1.x, position1.y), searchNodeIndex(position2.x, position2.y));
+		return beam < 0 ? null : this.constrains.get(beam);
 	}
 	
 	/**
@@ -108,14 +252,8 @@ public class Shape {
 	 * @return The first matching ConstrainDefinition or null if no one is found
 	 */
 	public ConstrainDefinition searchBeam(float x1, float y1, float x2, float y2) {
-		ParticleDefinition node1 = searchNode(x1, y1);
-		if (node1 == null) return null;
-		ParticleDefinition node2 = searchNode(x2, y2);
-		if (node2 == null) return null;
-		for (ConstrainDefinition beam : this.constrains) {
-			if ((beam.pointA.equals(node1) && beam.pointB.equals(node2)) || (beam.pointA.equals(node2) && beam.pointB.equals(node1))) return beam;
-		}
-		return null;
+		int beam = searchBeamIndex(searchNodeIndex(x1, y1), searchNodeIndex(x2, y2));
+		return beam < 0 ? null : this.constrains.get(beam);
 	}
 	
 	/** ##########################################################**/
@@ -212,6 +350,14 @@ public class Shape {
 			return false;
 		}
 		
+		@Override
+		public int hashCode() {
+			// Adding 0 turns -0.0 into 0.0, like the == in equals()
+			int hash = Double.hashCode(this.pos.x + 0.0);
+			hash = hash * 31 + Double.hashCode(this.pos.y + 0.0);
+			return hash * 31 + Float.hashCode(this.mass + 0F);
+		}
+		
 	}
 
 	public List<ConstrainDefinition> getConstrains() {
@@ -1,10 +1,14 @@
 package jnet.shapefactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
+import jnet.JNet;
 import jnet.shapefactory.Shape.ConstrainDefinition;
 import jnet.shapefactory.Shape.ParticleDefinition;
+import jnet.util.PositionIndex;
 import jnet.util.Vec2d;
 
 /**
@@ -15,12 +19,14 @@ import jnet.util.Vec2d;
 public class ShapeFactory {
 	
 	protected List<IShapePart> shapeParts;
+	protected double weldTolerance;
 	
 	/**
 	 * Creates a new ShapeFactory and starts a new Shape build
 	 */
 	public ShapeFactory() {
 		this.shapeParts = new ArrayList<IShapePart>();
+		this.weldTolerance = JNet.DEFAULT_WELD_TOLERANCE;
 	}
 	
 	/**
@@ -75,41 +81,124 @@ public class ShapeFactory {
 		return this;
 	}
 	
+	/**
+	 * Sets the maximal distance of two nodes (ParticleDefinitions) of different IShapeParts that are welded to one node, 0 welds only nodes at exactly the same position
+	 * @param weldTolerance The weld tolerance
+	 * @return The ShapeFactory to append more methods
+	 */
+	public ShapeFactory setWeldTolerance(double weldTolerance) {
+		if (weldTolerance < 0) throw new RuntimeException(new IllegalArgumentException("The weld tolerance can not be negative!"));
+		this.weldTolerance = weldTolerance;
+		return this;
+	}
+	
+	public double getWeldTolerance() {
+		return weldTolerance;
+	}
+	
 	/**
 	 * Completes the current build and returns a Shape that is like a definition of a SoftBody and can create multiple identical SoftBodys.
+	 * Nodes in the range of the weld tolerance are welded together, the ParticleDefinition added last is used for the welded node. Identical beams (same nodes and material) are only added once.
+	 * The nodes are found with a PositionIndex and the beams with a hash of their nodes, so the build takes linear time.
 	 * @return A Shape representing the SoftBody
 	 */
 	public Shape build() {
 		
 		Shape shape = new Shape();
+		PositionIndex nodeIndex = new PositionIndex(this.weldTolerance);
+		List<ParticleDefinition> nodes = new ArrayList<ParticleDefinition>();
+		HashSet<BeamKey> beams = new HashSet<BeamKey>();
+		int[] beamNodes = new int[16];
 		
 		for (IShapePart shapePart : this.shapeParts) {
 			List<ConstrainDefinition> partConstrains = shapePart.getConstrains();
 			for (ConstrainDefinition partConstrain : partConstrains) {
 				
-				ParticleDefinition pointA = partConstrain.pointA;
-				shape.getConstrains().forEach((constrain) -> {
-					if (constrain.pointA.pos.equals(pointA.pos)) constrain.pointA = pointA;
-					if (constrain.pointB.pos.equals(pointA.pos)) constrain.pointB = pointA;
-				});
-				
-				ParticleDefinition pointB = partConstrain.pointB;
-				shape.getConstrains().forEach((constrain) -> {
-					if (constrain.pointA.pos.equals(pointB.pos)) constrain.pointA = pointB;
-					if (constrain.pointB.pos.equals(pointB.pos)) constrain.pointB = pointB;
-				});
+				int nodeA = weldNode(nodeIndex, nodes, partConstrain.pointA);
+				int nodeB = weldNode(nodeIndex, nodes, partConstrain.pointB);
 				
-				if (!shape.getConstrains().contains(partConstrain)) shape.getConstrains().add(partConstrain);
+				if (beams.add(new BeamKey(nodeA, nodeB, partConstrain))) {
+					int beam = shape.getConstrains().size();
+					if (beam * 2 + 2 > beamNodes.length) beamNodes = Arrays.copyOf(beamNodes, beamNodes.length * 2);
+					beamNodes[beam * 2] = nodeA;
+					beamNodes[beam * 2 + 1] = nodeB;
+					shape.getConstrains().add(partConstrain);
+				}
 				
 			}
 		}
 		
-		for (ConstrainDefinition constrain : shape.getConstrains()) {
-			if (!shape.getParticles().contains(constrain.pointA)) shape.getParticles().add(constrain.pointA);
-			if (!shape.getParticles().contains(constrain.pointB)) shape.getParticles().add(constrain.pointB);
+		boolean[] nodeAdded = new boolean[nodes.size()];
+		for (int beam = 0; beam < shape.getConstrains().size(); beam++) {
+			ConstrainDefinition constrain = shape.getConstrains().get(beam);
+			int nodeA = beamNodes[beam * 2];
+			int nodeB = beamNodes[beam * 2 + 1];
+			constrain.pointA = nodes.get(nodeA);
+			constrain.pointB = nodes.get(nodeB);
+			if (!nodeAdded[nodeA]) {
+				nodeAdded[nodeA] = true;
+				shape.getParticles().add(constrain.pointA);
+			}
+			if (!nodeAdded[nodeB]) {
+				nodeAdded[nodeB] = true;
+				shape.getParticles().add(constrain.pointB);
+			}
 		}
 		
 		return shape;
 	}
 	
+	protected static int weldNode(PositionIndex nodeIndex, List<ParticleDefinition> nodes, ParticleDefinition particle) {
+		int node = nodeIndex.find(particle.pos.x, particle.pos.y);
+		if (node < 0) {
+			node = nodeIndex.add(particle.pos.x, particle.pos.y);
+			nodes.add(particle);
+		} else {
+			nodes.set(node, particle);
+		}
+		return node;
+	}
+	
+	/**
+	 * The key of a beam in the build, the two welded nodes and the material
+	 */
+	protected static class BeamKey {
+		
+		protected final int nodeA;
+		protected final int nodeB;
+		protected final float stiffness;
+		protected final float deformForce;
+		protected final float maxBending;
+		
+		public BeamKey(int nodeA, int nodeB, ConstrainDefinition constrain) {
+			this.nodeA = nodeA;
+			this.nodeB = nodeB;
+			this.stiffness = constrain.stiffness;
+			this.deformForce = constrain.deformForce;
+			this.maxBending = constrain.maxBending;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof BeamKey) {
+				BeamKey key = (BeamKey) obj;
+				return	key.nodeA == this.nodeA &&
+						key.nodeB == this.nodeB &&
+						key.stiffness == this.stiffness &&
+						key.deformForce == this.deformForce &&
+						key.maxBending == this.maxBending;
+			}
+			return false;
+		}
+		
+		@Override
+		public int hashCode() {
+			int hash = this.nodeA * 0x9E3779B1 + this.nodeB;
+			hash = hash * 31 + Float.hashCode(this.stiffness + 0F);
+			hash = hash * 31 + Float.hashCode(this.deformForce + 0F);
+			return hash * 31 + Float.hashCode(this.maxBending + 0F);
+		}
+		
+	}
+	
 }
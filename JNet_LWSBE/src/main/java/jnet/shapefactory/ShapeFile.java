@@ -0,0 +1,263 @@
+package jnet.shapefactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import jnet.physic.SoftBody;
+import jnet.shapefactory.Shape.ConstrainDefinition;
+import jnet.shapefactory.Shape.ParticleDefinition;
+import jnet.util.Vec2d;
+
+/**
+ * Reads and writes Shapes and ShapeTemplates in a compact binary format, the files are loaded by mapping them in memory, so loading a Shape costs one mmap and a linear pass over the data.
+ * The format stores all values as arrays (little endian): a header (magic, version, number of Particles, number of Constrains), the x positions, y positions and masses of the Particles
+ * and the indices of the Particles A and B, the stiffness, deform force and max bending of the Constrains. The rest lengths of the Constrains are calculated from the positions.
+ * @author M_Marvin
+ *
+ */
+public class ShapeFile {
+
+	/** The first four bytes of every Shape file, "JNSH" **/
+	public static final int MAGIC = 0x4A4E5348;
+	/** The version of the format written by this class **/
+	public static final int VERSION = 1;
+
+	protected static final int HEADER_SIZE = 16;
+	protected static final int PARTICLE_SIZE = 8 + 8 + 4;
+	protected static final int CONSTRAIN_SIZE = 4 + 4 + 4 + 4 + 4;
+
+	/**
+	 * Writes the Particles and Constrains of a Shape to a file, the Particles are written in the order of the Shape
+	 * @param shape The Shape to write
+	 * @param path The file to write, an existing file is replaced
+	 * @throws IOException If the file can not be written
+	 * @throws RuntimeException of a IllegalArgumentException if a ConstrainDefinition uses a ParticleDefinition that is not part of the Shape
+	 */
+	public static void write(Shape shape, Path path) throws IOException {
+		writeBuffer(toBuffer(shape), path);
+	}
+
+	/**
+	 * Writes the Particles and Constrains of a ShapeTemplate to a file
+	 * @param template The ShapeTemplate to write
+	 * @param path The file to write, an existing file is replaced
+	 * @throws IOException If the file can not be written
+	 */
+	public static void write(ShapeTemplate template, Path path) throws IOException {
+		writeBuffer(toBuffer(template.positionsX, template.positionsY, template.masses, template.constrainsA, template.constrainsB, template.stiffness, template.deformForce, template.maxBending), path);
+	}
+
+	/**
+	 * Loads a Shape from a file
+	 * @param path The file to load
+	 * @return A new Shape with the Particles and Constrains of the file
+	 * @throws IOException If the file can not be read
+	 * @throws RuntimeException of a IllegalArgumentException if the file is not a valid Shape file
+	 */
+	public static Shape loadShape(Path path) throws IOException {
+		return toShape(loadTemplate(path));
+	}
+
+	/**
+	 * Loads a ShapeTemplate from a file, the Particles are numbered in the order of the file
+	 * @param path The file to load
+	 * @return A new ShapeTemplate with the Particles and Constrains of the file
+	 * @throws IOException If the file can not be read
+	 * @throws RuntimeException of a IllegalArgumentException if the file is not a valid Shape file
+	 */
+	public static ShapeTemplate loadTemplate(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return readTemplate(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Loads a SoftBody from a file, without creating a Shape first
+	 * @param path The file to load
+	 * @return A new SoftBody with the Particles and Constrains of the file
+	 * @throws IOException If the file can not be read
+	 * @throws RuntimeException of a IllegalArgumentException if the file is not a valid Shape file
+	 */
+	public static SoftBody loadSoftBody(Path path) throws IOException {
+		return loadTemplate(path).build();
+	}
+
+	/**
+	 * Reads a ShapeTemplate from the data of a Shape file, starting at the position of the buffer. The position of the buffer is moved behind the data.
+	 * @param buffer The buffer with the data
+	 * @return A new ShapeTemplate with the Particles and Constrains of the data
+	 * @throws RuntimeException of a IllegalArgumentException if the data is not a valid Shape file
+	 */
+	public static ShapeTemplate readTemplate(ByteBuffer buffer) {
+		ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) throw new RuntimeException(new IllegalArgumentException("The data is not a Shape file!"));
+		int version = data.getInt();
+		if (version != VERSION) throw new RuntimeException(new IllegalArgumentException("The version " + version + " of the Shape file is not supported!"));
+		int particleCount = data.getInt();
+		int constrainCount = data.getInt();
+		if (particleCount < 0 || constrainCount < 0 || data.remaining() < (long) particleCount * PARTICLE_SIZE + (long) constrainCount * CONSTRAIN_SIZE) throw new RuntimeException(new IllegalArgumentException("The Shape file is incomplete!"));
+
+		double[] positionsX = new double[particleCount];
+		double[] positionsY = new double[particleCount];
+		float[] masses = new float[particleCount];
+		int[] constrainsA = new int[constrainCount];
+		int[] constrainsB = new int[constrainCount];
+		float[] stiffness = new float[constrainCount];
+		float[] deformForce = new float[constrainCount];
+		float[] maxBending = new float[constrainCount];
+
+		// Bulk copies from views of the buffer, the position of a view does not move the buffer
+		data.asDoubleBuffer().get(positionsX);
+		data.position(data.position() + particleCount * 8);
+		data.asDoubleBuffer().get(positionsY);
+		data.position(data.position() + particleCount * 8);
+		data.asFloatBuffer().get(masses);
+		data.position(data.position() + particleCount * 4);
+		data.asIntBuffer().get(constrainsA);
+		data.position(data.position() + constrainCount * 4);
+		data.asIntBuffer().get(constrainsB);
+		data.position(data.position() + constrainCount * 4);
+		data.asFloatBuffer().get(stiffness);
+		data.position(data.position() + constrainCount * 4);
+		data.asFloatBuffer().get(deformForce);
+		data.position(data.position() + constrainCount * 4);
+		data.asFloatBuffer().get(maxBending);
+		data.position(data.position() + constrainCount * 4);
+
+		for (int i = 0; i < constrainCount; i++) {
+			if (constrainsA[i] < 0 || constrainsA[i] >= particleCount || constrainsB[i] < 0 || constrainsB[i] >= particleCount) throw new RuntimeException(new IllegalArgumentException("The Constrain " + i + " of the Shape file references a Particle that does not exist!"));
+		}
+
+		buffer.position(buffer.position() + data.position());
+		return new ShapeTemplate(positionsX, positionsY, masses, constrainsA, constrainsB, stiffness, deformForce, maxBending);
+	}
+
+	/**
+	 * Reads a Shape from the data of a Shape file, starting at the position of the buffer. The position of the buffer is moved behind the data.
+	 * @param buffer The buffer with the data
+	 * @return A new Shape with the Particles and Constrains of the data
+	 * @throws RuntimeException of a IllegalArgumentException if the data is not a valid Shape file
+	 */
+	public static Shape readShape(ByteBuffer buffer) {
+		return toShape(readTemplate(buffer));
+	}
+
+	/**
+	 * Creates a Shape with new definitions of the Particles and Constrains of a ShapeTemplate
+	 * @param template The ShapeTemplate
+	 * @return A new Shape
+	 */
+	protected static Shape toShape(ShapeTemplate template) {
+		Shape shape = new Shape();
+		ParticleDefinition[] particles = new ParticleDefinition[template.getParticleCount()];
+		for (int i = 0; i < particles.length; i++) {
+			particles[i] = new ParticleDefinition();
+			particles[i].pos = new Vec2d(template.positionsX[i], template.positionsY[i]);
+			particles[i].mass = template.masses[i];
+			shape.getParticles().add(particles[i]);
+		}
+		for (int i = 0; i < template.getConstrainCount(); i++) {
+			ConstrainDefinition constrain = new ConstrainDefinition();
+			constrain.pointA = particles[template.constrainsA[i]];
+			constrain.pointB = particles[template.constrainsB[i]];
+			constrain.stiffness = template.stiffness[i];
+			constrain.deformForce = template.deformForce[i];
+			constrain.maxBending = template.maxBending[i];
+			shape.getConstrains().add(constrain);
+		}
+		return shape;
+	}
+
+	/**
+	 * Writes the data of a Shape to a new buffer
+	 * @param shape The Shape
+	 * @return The buffer with the data, ready to be read
+	 * @throws RuntimeException of a IllegalArgumentException if a ConstrainDefinition uses a ParticleDefinition that is not part of the Shape
+	 */
+	public static ByteBuffer toBuffer(Shape shape) {
+		List<ParticleDefinition> particles = shape.getParticles();
+		List<ConstrainDefinition> constrains = shape.getConstrains();
+
+		double[] positionsX = new double[particles.size()];
+		double[] positionsY = new double[particles.size()];
+		float[] masses = new float[particles.size()];
+		IdentityHashMap<ParticleDefinition, Integer> particleIndices = new IdentityHashMap<ParticleDefinition, Integer>();
+		HashMap<ParticleDefinition, Integer> equalParticleIndices = new HashMap<ParticleDefinition, Integer>();
+		for (int i = 0; i < particles.size(); i++) {
+			ParticleDefinition particle = particles.get(i);
+			positionsX[i] = particle.pos.x;
+			positionsY[i] = particle.pos.y;
+			masses[i] = particle.mass;
+			particleIndices.putIfAbsent(particle, i);
+			equalParticleIndices.putIfAbsent(particle, i);
+		}
+
+		int[] constrainsA = new int[constrains.size()];
+		int[] constrainsB = new int[constrains.size()];
+		float[] stiffness = new float[constrains.size()];
+		float[] deformForce = new float[constrains.size()];
+		float[] maxBending = new float[constrains.size()];
+		for (int i = 0; i < constrains.size(); i++) {
+			ConstrainDefinition constrain = constrains.get(i);
+			constrainsA[i] = indexOf(constrain.pointA, particleIndices, equalParticleIndices);
+			constrainsB[i] = indexOf(constrain.pointB, particleIndices, equalParticleIndices);
+			stiffness[i] = constrain.stiffness;
+			deformForce[i] = constrain.deformForce;
+			maxBending[i] = constrain.maxBending;
+		}
+
+		return toBuffer(positionsX, positionsY, masses, constrainsA, constrainsB, stiffness, deformForce, maxBending);
+	}
+
+	protected static int indexOf(ParticleDefinition particle, IdentityHashMap<ParticleDefinition, Integer> particleIndices, HashMap<ParticleDefinition, Integer> equalParticleIndices) {
+		Integer index = particleIndices.get(particle);
+		// Like Shape.addConstrain(), an equal definition counts as the same Particle
+		if (index == null) index = equalParticleIndices.get(particle);
+		if (index == null) throw new RuntimeException(new IllegalArgumentException("A ConstrainDefinition uses a ParticleDefinition that is not part of the Shape!"));
+		return index;
+	}
+
+	protected static ByteBuffer toBuffer(double[] positionsX, double[] positionsY, float[] masses, int[] constrainsA, int[] constrainsB, float[] stiffness, float[] deformForce, float[] maxBending) {
+		int particleCount = masses.length;
+		int constrainCount = constrainsA.length;
+		long size = HEADER_SIZE + (long) particleCount * PARTICLE_SIZE + (long) constrainCount * CONSTRAIN_SIZE;
+		if (size > Integer.MAX_VALUE) throw new RuntimeException(new IllegalArgumentException("The Shape is too large for a Shape file!"));
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(particleCount);
+		buffer.putInt(constrainCount);
+		buffer.asDoubleBuffer().put(positionsX);
+		buffer.position(buffer.position() + particleCount * 8);
+		buffer.asDoubleBuffer().put(positionsY);
+		buffer.position(buffer.position() + particleCount * 8);
+		buffer.asFloatBuffer().put(masses);
+		buffer.position(buffer.position() + particleCount * 4);
+		buffer.asIntBuffer().put(constrainsA);
+		buffer.position(buffer.position() + constrainCount * 4);
+		buffer.asIntBuffer().put(constrainsB);
+		buffer.position(buffer.position() + constrainCount * 4);
+		buffer.asFloatBuffer().put(stiffness);
+		buffer.position(buffer.position() + constrainCount * 4);
+		buffer.asFloatBuffer().put(deformForce);
+		buffer.position(buffer.position() + constrainCount * 4);
+		buffer.asFloatBuffer().put(maxBending);
+		buffer.position(buffer.position() + constrainCount * 4);
+		return buffer.flip();
+	}
+
+	protected static void writeBuffer(ByteBuffer buffer, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) channel.write(buffer);
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+package jnet.shapefactory;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import jnet.JNet;
+import jnet.physic.ParticleStorage;
+import jnet.physic.SoftBody;
+import jnet.physic.SoftBody.Constrain;
+import jnet.physic.SoftBody.Particle;
+import jnet.shapefactory.Shape.ConstrainDefinition;
+import jnet.shapefactory.Shape.ParticleDefinition;
+
+/**
+ * A compiled, immutable form of a Shape. The Particles are stored as primitive arrays of their rest positions and masses, the Constrains as index pairs of their Particles and their material-property.
+ * Unlike Shape.build() no state of the definitions is changed, so one template can build SoftBodys from multiple threads at the same time.
+ * The SoftBodys built by a template have the same Particles and Constrains in the same order as the ones built by the Shape.
+ * @author M_Marvin
+ *
+ */
+public final class ShapeTemplate {
+
+	protected final double[] positionsX;
+	protected final double[] positionsY;
+	protected final float[] masses;
+	protected final int[] constrainsA;
+	protected final int[] constrainsB;
+	protected final double[] lengths;
+	protected final float[] stiffness;
+	protected final float[] deformForce;
+	protected final float[] maxBending;
+
+	/**
+	 * Compiles the current state of a Shape to a template, later changes of the Shape do not change the template
+	 * @param shape The Shape to compile
+	 */
+	public ShapeTemplate(Shape shape) {
+		List<ConstrainDefinition> constrains = shape.getConstrains();
+		int constrainCount = constrains.size();
+		this.constrainsA = new int[constrainCount];
+		this.constrainsB = new int[constrainCount];
+		this.lengths = new double[constrainCount];
+		this.stiffness = new float[constrainCount];
+		this.deformForce = new float[constrainCount];
+		this.maxBending = new float[constrainCount];
+
+		// The Particles are numbered in the order they are added to the SoftBody by Shape.build()
+		IdentityHashMap<ParticleDefinition, Integer> particleIndices = new IdentityHashMap<ParticleDefinition, Integer>();
+		ParticleDefinition[] particles = new ParticleDefinition[constrainCount * 2];
+		for (int i = 0; i < constrainCount; i++) {
+			ConstrainDefinition constrain = constrains.get(i);
+			this.constrainsA[i] = indexOf(constrain.pointA, particleIndices, particles);
+			this.constrainsB[i] = indexOf(constrain.pointB, particleIndices, particles);
+			this.lengths[i] = constrain.pointA.pos.distance(constrain.pointB.pos);
+			this.stiffness[i] = constrain.stiffness;
+			this.deformForce[i] = constrain.deformForce;
+			this.maxBending[i] = constrain.maxBending;
+		}
+
+		int particleCount = particleIndices.size();
+		this.positionsX = new double[particleCount];
+		this.positionsY = new double[particleCount];
+		this.masses = new float[particleCount];
+		for (int i = 0; i < particleCount; i++) {
+			this.positionsX[i] = particles[i].pos.x;
+			this.positionsY[i] = particles[i].pos.y;
+			this.masses[i] = particles[i].mass;
+		}
+	}
+
+	/**
+	 * Creates a template from the arrays of its Particles and Constrains, the rest lengths are calculated from the positions. The arrays are not copied and must not be changed later.
+	 * @param positionsX The x positions of the Particles
+	 * @param positionsY The y positions of the Particles
+	 * @param masses The masses of the Particles
+	 * @param constrainsA The indices of the Particles A of the Constrains
+	 * @param constrainsB The indices of the Particles B of the Constrains
+	 * @param stiffness The stiffness of the Constrains
+	 * @param deformForce The deform force of the Constrains
+	 * @param maxBending The max bending of the Constrains
+	 * @throws RuntimeException of a IllegalArgumentException if the arrays have different lengths or a Constrain uses a Particle that does not exist
+	 */
+	protected ShapeTemplate(double[] positionsX, double[] positionsY, float[] masses, int[] constrainsA, int[] constrainsB, float[] stiffness, float[] deformForce, float[] maxBending) {
+		int particleCount = masses.length;
+		int constrainCount = constrainsA.length;
+		if (positionsX.length != particleCount || positionsY.length != particleCount) throw new RuntimeException(new IllegalArgumentException("The Particle arrays have different lengths!"));
+		if (constrainsB.length != constrainCount || stiffness.length != constrainCount || deformForce.length != constrainCount || maxBending.length != constrainCount) throw new RuntimeException(new IllegalArgumentException("The Constrain arrays have different lengths!"));
+		this.positionsX = positionsX;
+		this.positionsY = positionsY;
+		this.masses = masses;
+		this.constrainsA = constrainsA;
+		this.constrainsB = constrainsB;
+		this.lengths = new double[constrainCount];
+		this.stiffness = stiffness;
+		this.deformForce = deformForce;
+		this.maxBending = maxBending;
+		for (int i = 0; i < constrainCount; i++) {
+			int particleA = constrainsA[i];
+			int particleB = constrainsB[i];
+			if (particleA < 0 || particleA >= particleCount || particleB < 0 || particleB >= particleCount) throw new RuntimeException(new IllegalArgumentException("The Constrain " + i + " uses a Particle that does not exist!"));
+			// Same as Vec2d.distance()
+			double distanceX = Math.abs(positionsX[particleA] - positionsX[particleB]);
+			double distanceY = Math.abs(positionsY[particleA] - positionsY[particleB]);
+			this.lengths[i] = Math.sqrt(distanceX * distanceX + distanceY * distanceY);
+		}
+	}
+
+	protected static int indexOf(ParticleDefinition particle, IdentityHashMap<ParticleDefinition, Integer> particleIndices, ParticleDefinition[] particles) {
+		Integer index = particleIndices.get(particle);
+		if (index != null) return index;
+		int newIndex = particleIndices.size();
+		particleIndices.put(particle, newIndex);
+		particles[newIndex] = particle;
+		return newIndex;
+	}
+
+	/**
+	 * Creates a new SoftBody at the rest positions of this template
+	 * @return A new SoftBody instance
+	 */
+	public SoftBody build() {
+		return build(0, 0, 0);
+	}
+
+	/**
+	 * Creates a new SoftBody, the rest positions of this template are rotated around the origin and then moved by the offset
+	 * @param x The x offset
+	 * @param y The y offset
+	 * @param angle The rotation in radians
+	 * @return A new SoftBody instance
+	 */
+	public SoftBody build(double x, double y, double angle) {
+		double cos = Math.cos(angle);
+		double sin = Math.sin(angle);
+
+		// The Particles are created directly in the storage of the new SoftBody
+		SoftBody body = new SoftBody();
+		ParticleStorage storage = body.getStorage();
+		Particle[] particles = new Particle[this.masses.length];
+		storage.ensureCapacity(particles.length);
+		for (int i = 0; i < particles.length; i++) {
+			double positionX = this.positionsX[i] * cos - this.positionsY[i] * sin + x;
+			double positionY = this.positionsX[i] * sin + this.positionsY[i] * cos + y;
+			particles[i] = new Particle(storage, positionX, positionY, this.masses[i]);
+		}
+
+		Constrain[] constrains = new Constrain[this.lengths.length];
+		for (int i = 0; i < constrains.length; i++) {
+			constrains[i] = new Constrain(particles[this.constrainsA[i]], particles[this.constrainsB[i]], this.lengths[i], this.stiffness[i], this.deformForce[i], this.maxBending[i]);
+		}
+
+		body.addAll(particles, constrains);
+		return body;
+	}
+
+	/**
+	 * Creates multiple SoftBodys, like build(x, y, angle) for every SoftBody
+	 * @param count The number of SoftBodys
+	 * @param transforms The transformations of the SoftBodys, three values (x offset, y offset, rotation in radians) per SoftBody or null to build all at the rest positions
+	 * @return The new SoftBodys
+	 */
+	public SoftBody[] buildMany(int count, double[] transforms) {
+		return buildMany(count, transforms, null);
+	}
+
+	/**
+	 * Creates multiple SoftBodys, like build(x, y, angle) for every SoftBody, optionally in parallel
+	 * @param count The number of SoftBodys
+	 * @param transforms The transformations of the SoftBodys, three values (x offset, y offset, rotation in radians) per SoftBody or null to build all at the rest positions
+	 * @param parallelPool The ForkJoinPool to build the SoftBodys on or null to build them sequentially
+	 * @return The new SoftBodys
+	 * @throws RuntimeException of a IllegalArgumentException if the transforms contain less than three values per SoftBody
+	 */
+	public SoftBody[] buildMany(int count, double[] transforms, ForkJoinPool parallelPool) {
+		if (count < 0) throw new RuntimeException(new IllegalArgumentException("The count can not be negative!"));
+		if (transforms != null && transforms.length < count * 3) throw new RuntimeException(new IllegalArgumentException("The transforms need three values per SoftBody!"));
+		SoftBody[] bodys = new SoftBody[count];
+		if (parallelPool == null) {
+			buildRange(bodys, transforms, 0, count);
+		} else {
+			// Every task builds at least DEFAULT_PARALLEL_THRESHOLD Constrains
+			int threshold = Math.max(1, JNet.DEFAULT_PARALLEL_THRESHOLD / Math.max(1, this.lengths.length));
+			BuildTask task = new BuildTask(bodys, transforms, 0, count, threshold);
+			if (ForkJoinTask.inForkJoinPool()) {
+				task.invoke();
+			} else {
+				parallelPool.invoke(task);
+			}
+		}
+		return bodys;
+	}
+
+	protected void buildRange(SoftBody[] bodys, double[] transforms, int start, int end) {
+		for (int i = start; i < end; i++) {
+			bodys[i] = transforms == null ? build() : build(transforms[i * 3], transforms[i * 3 + 1], transforms[i * 3 + 2]);
+		}
+	}
+
+	protected class BuildTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		protected SoftBody[] bodys;
+		protected double[] transforms;
+		protected int start;
+		protected int end;
+		protected int threshold;
+
+		public BuildTask(SoftBody[] bodys, double[] transforms, int start, int end, int threshold) {
+			this.bodys = bodys;
+			this.transforms = transforms;
+			this.start = start;
+			this.end = end;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start <= this.threshold) {
+				buildRange(this.bodys, this.transforms, this.start, this.end);
+				return;
+			}
+			int middle = (this.start + this.end) >>> 1;
+			invokeAll(new BuildTask(this.bodys, this.transforms, this.start, middle, this.threshold), new BuildTask(this.bodys, this.transforms, middle, this.end, this.threshold));
+		}
+
+	}
+
+	public int getParticleCount() {
+		return masses.length;
+	}
+
+	public int getConstrainCount() {
+		return lengths.length;
+	}
+
+	public double getX(int particle) {
+		return positionsX[particle];
+	}
+
+	public double getY(int particle) {
+		return positionsY[particle];
+	}
+
+	public float getMass(int particle) {
+		return masses[particle];
+	}
+
+	public int getParticleA(int constrain) {
+		return constrainsA[constrain];
+	}
+
+	public int getParticleB(int constrain) {
+		return constrainsB[constrain];
+	}
+
+	public double getLength(int constrain) {
+		return lengths[constrain];
+	}
+
+	public float getStiffness(int constrain) {
+		return stiffness[constrain];
+	}
+
+	public float getDeformForce(int constrain) {
+		return deformForce[constrain];
+	}
+
+	public float getMaxBending(int constrain) {
+		return maxBending[constrain];
+	}
+
+}
@@ -0,0 +1,210 @@
+package jnet.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A registry that stores its items densely in a list and gives every item a stable integer handle.
+ * Adding and removing items takes constant time, removed items are replaced by the last item of the list (swap-remove), so the order of the items changes but their handles stay valid.
+ * A handle consists of a slot and a generation, the generation changes when the slot is freed, so old handles of removed items do not find the new items of their slot.
+ * Freed slots are reused in the order they were freed and only if enough slots are free, so a slot is reused rarely. A slot whose generation is used up is never used again, so no handle can find the item of an other handle.
+ * Handles can be reserved before the item is inserted, used to return the handle of changes that are applied later.
+ * @author M_Marvin
+ *
+ * @param <T> The type of the items
+ */
+public class HandleRegistry<T> {
+
+	protected static final int INITIAL_CAPACITY = 16;
+	protected static final int SLOT_BITS = 20;
+	protected static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	// All bits of the positive handle that are not used by the slot
+	protected static final int MAX_GENERATION = Integer.MAX_VALUE >>> SLOT_BITS;
+	// Number of free slots kept before a freed slot is reused
+	protected static final int MINIMUM_FREE_SLOTS = 1024;
+
+	protected ArrayList<T> items;
+	protected List<T> itemView;
+	protected int[] itemHandles;
+	protected Object[] slotItems;
+	protected int[] slotIndices;
+	protected int[] slotGenerations;
+	// Queue of the free slots, in the order they were freed
+	protected int[] freeSlots;
+	protected int freeHead;
+	protected int freeCount;
+	protected int slotCount;
+
+	public HandleRegistry() {
+		this.items = new ArrayList<T>();
+		this.itemView = Collections.unmodifiableList(this.items);
+		this.itemHandles = new int[INITIAL_CAPACITY];
+		this.slotItems = new Object[INITIAL_CAPACITY];
+		this.slotIndices = new int[INITIAL_CAPACITY];
+		this.slotGenerations = new int[INITIAL_CAPACITY];
+		this.freeSlots = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Makes sure that the given number of items can be stored without growing the arrays, used for bulk adds
+	 * @param capacity The number of items
+	 */
+	public void ensureCapacity(int capacity) {
+		this.items.ensureCapacity(capacity);
+		if (this.itemHandles.length < capacity) this.itemHandles = Arrays.copyOf(this.itemHandles, capacity);
+		if (this.slotItems.length < capacity) growSlots(capacity);
+	}
+
+	/**
+	 * Reserves a handle for an item that is inserted later, the item can be found with get() but is not part of the list until it is inserted.
+	 * @param item The item
+	 * @return The new handle of the item
+	 */
+	public int reserve(T item) {
+		int slot;
+		if (this.freeCount > MINIMUM_FREE_SLOTS || (this.freeCount > 0 && this.slotCount > SLOT_MASK)) {
+			slot = this.freeSlots[this.freeHead];
+			this.freeHead = (this.freeHead + 1) % this.freeSlots.length;
+			this.freeCount--;
+		} else {
+			if (this.slotCount > SLOT_MASK) throw new RuntimeException(new IllegalStateException("The registry can not hold more than " + (SLOT_MASK + 1) + " items!"));
+			if (this.slotCount == this.slotItems.length) growSlots(this.slotCount * 2);
+			slot = this.slotCount++;
+		}
+		this.slotItems[slot] = item;
+		this.slotIndices[slot] = -1;
+		return slot | (this.slotGenerations[slot] << SLOT_BITS);
+	}
+
+	/**
+	 * Inserts a item with a reserved handle at the end of the list
+	 * @param handle The reserved handle
+	 */
+	public void insert(int handle) {
+		int slot = slotOf(handle);
+		if (slot < 0 || this.slotIndices[slot] >= 0) throw new RuntimeException(new IllegalArgumentException("The handle is not reserved!"));
+		int index = this.items.size();
+		if (index == this.itemHandles.length) this.itemHandles = Arrays.copyOf(this.itemHandles, index * 2);
+		@SuppressWarnings("unchecked")
+		T item = (T) this.slotItems[slot];
+		this.items.add(item);
+		this.itemHandles[index] = handle;
+		this.slotIndices[slot] = index;
+	}
+
+	/**
+	 * Adds the item at the end of the list
+	 * @param item The item
+	 * @return The new handle of the item
+	 */
+	public int add(T item) {
+		int handle = reserve(item);
+		insert(handle);
+		return handle;
+	}
+
+	/**
+	 * Removes the item of the handle, the last item of the list takes its position. Reserved handles are freed without changing the list.
+	 * @param handle The handle of the item
+	 * @return The removed item or null if the handle is not valid
+	 */
+	public T remove(int handle) {
+		int slot = slotOf(handle);
+		if (slot < 0) return null;
+		@SuppressWarnings("unchecked")
+		T item = (T) this.slotItems[slot];
+		int index = this.slotIndices[slot];
+		if (index >= 0) {
+			int last = this.items.size() - 1;
+			T lastItem = this.items.remove(last);
+			if (index != last) {
+				this.items.set(index, lastItem);
+				this.itemHandles[index] = this.itemHandles[last];
+				this.slotIndices[this.itemHandles[index] & SLOT_MASK] = index;
+			}
+		}
+		this.slotItems[slot] = null;
+		this.slotIndices[slot] = -1;
+		// A slot with the last generation is retired, its handles would repeat otherwise
+		if (this.slotGenerations[slot] == MAX_GENERATION) return item;
+		this.slotGenerations[slot]++;
+		if (this.freeCount == this.freeSlots.length) growFreeSlots();
+		this.freeSlots[(this.freeHead + this.freeCount) % this.freeSlots.length] = slot;
+		this.freeCount++;
+		return item;
+	}
+
+	/**
+	 * Gets the item of a handle, also if it is only reserved
+	 * @param handle The handle of the item
+	 * @return The item or null if the handle is not valid
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int handle) {
+		int slot = slotOf(handle);
+		return slot < 0 ? null : (T) this.slotItems[slot];
+	}
+
+	/**
+	 * Gets the position of the item of a handle in the list
+	 * @param handle The handle of the item
+	 * @return The index or -1 if the handle is not valid or only reserved
+	 */
+	public int indexOf(int handle) {
+		int slot = slotOf(handle);
+		return slot < 0 ? -1 : this.slotIndices[slot];
+	}
+
+	/**
+	 * Checks if the item of a handle is part of the list
+	 * @param handle The handle of the item
+	 * @return true if the item is inserted
+	 */
+	public boolean contains(int handle) {
+		return indexOf(handle) >= 0;
+	}
+
+	/**
+	 * Gets the handle of the item at a position in the list
+	 * @param index The index in the list
+	 * @return The handle of the item
+	 */
+	public int getHandle(int index) {
+		if (index < 0 || index >= this.items.size()) throw new IndexOutOfBoundsException(index);
+		return this.itemHandles[index];
+	}
+
+	/**
+	 * Gets the items in the order of the list, the list can not be modified and reflects all changes of the registry
+	 * @return A view of the list
+	 */
+	public List<T> getItems() {
+		return itemView;
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	protected int slotOf(int handle) {
+		int slot = handle & SLOT_MASK;
+		if (handle < 0 || slot >= this.slotCount || this.slotItems[slot] == null || this.slotGenerations[slot] != (handle >>> SLOT_BITS)) return -1;
+		return slot;
+	}
+
+	protected void growFreeSlots() {
+		int[] freeSlots = new int[this.freeSlots.length * 2];
+		for (int i = 0; i < this.freeCount; i++) freeSlots[i] = this.freeSlots[(this.freeHead + i) % this.freeSlots.length];
+		this.freeSlots = freeSlots;
+		this.freeHead = 0;
+	}
+
+	protected void growSlots(int capacity) {
+		this.slotItems = Arrays.copyOf(this.slotItems, capacity);
+		this.slotIndices = Arrays.copyOf(this.slotIndices, capacity);
+		this.slotGenerations = Arrays.copyOf(this.slotGenerations, capacity);
+	}
+
+}
@@ -0,0 +1,208 @@
+package jnet.util;
+
+import java.util.Arrays;
+
+/**
+ * A spatial hash of positions, every position gets an id (the order they were added in) and positions near a point can be found in constant time.
+ * With a tolerance of 0 only exactly equal positions are found (like Vec2d.equals()), otherwise all positions with a distance smaller or equal to the tolerance.
+ * The positions are stored in primitive arrays, every cell of the hash holds a chain of the ids in the cell.
+ * The cells are stored in an open addressing hash-table of primitive keys, so adding and finding positions does not box any values.
+ * @author M_Marvin
+ *
+ */
+public class PositionIndex {
+
+	protected static final int INITIAL_CAPACITY = 16;
+
+	protected double tolerance;
+	// Hash-table of the occupied cells, a slot is only valid if its stamp matches the current stamp
+	protected long[] cellKeys;
+	protected int[] cellHeads;
+	protected int[] cellStamps;
+	protected int cellCount;
+	protected int stamp = 1;
+	protected double[] positionsX;
+	protected double[] positionsY;
+	protected int[] next;
+	protected int size;
+
+	/**
+	 * Creates a new index
+	 * @param tolerance The maximal distance of two positions that are treated as the same position, 0 for exact matches only
+	 */
+	public PositionIndex(double tolerance) {
+		if (tolerance < 0) throw new RuntimeException(new IllegalArgumentException("The tolerance can not be negative!"));
+		this.tolerance = tolerance;
+		this.cellKeys = new long[INITIAL_CAPACITY * 2];
+		this.cellHeads = new int[INITIAL_CAPACITY * 2];
+		this.cellStamps = new int[INITIAL_CAPACITY * 2];
+		this.positionsX = new double[INITIAL_CAPACITY];
+		this.positionsY = new double[INITIAL_CAPACITY];
+		this.next = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Removes all positions, the arrays are kept
+	 */
+	public void clear() {
+		this.stamp++;
+		if (this.stamp == 0) {
+			// Stamp overflow, old slots could become valid again
+			Arrays.fill(this.cellStamps, 0);
+			this.stamp = 1;
+		}
+		this.cellCount = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a position without checking for existing positions
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The id of the new position
+	 */
+	public int add(double x, double y) {
+		if (this.size == this.positionsX.length) {
+			this.positionsX = Arrays.copyOf(this.positionsX, this.size * 2);
+			this.positionsY = Arrays.copyOf(this.positionsY, this.size * 2);
+			this.next = Arrays.copyOf(this.next, this.size * 2);
+		}
+		int id = this.size++;
+		this.positionsX[id] = x;
+		this.positionsY[id] = y;
+		int slot = findOrCreateSlot(cellKey(x, y));
+		this.next[id] = this.cellHeads[slot];
+		this.cellHeads[slot] = id;
+		return id;
+	}
+
+	/**
+	 * Finds the first added position that matches the given position
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The id of the position or -1 if no position matches
+	 */
+	public int find(double x, double y) {
+		if (this.tolerance == 0) return findInCell(cellKey(x, y), x, y, -1);
+		long cellX = cell(x);
+		long cellY = cell(y);
+		int found = -1;
+		for (long offsetX = -1; offsetX <= 1; offsetX++) {
+			for (long offsetY = -1; offsetY <= 1; offsetY++) {
+				found = findInCell(cellKey(cellX + offsetX, cellY + offsetY), x, y, found);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the first added position that matches the given position and adds the position if there is none
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The id of the matching or the new position
+	 */
+	public int weld(double x, double y) {
+		int id = find(x, y);
+		return id >= 0 ? id : add(x, y);
+	}
+
+	protected int findInCell(long key, double x, double y, int found) {
+		int slot = findSlot(key);
+		if (slot < 0) return found;
+		for (int id = this.cellHeads[slot]; id >= 0; id = this.next[id]) {
+			// The chain is ordered from the last to the first added position
+			if (found >= 0 && id > found) continue;
+			if (matches(id, x, y)) found = id;
+		}
+		return found;
+	}
+
+	protected boolean matches(int id, double x, double y) {
+		if (this.tolerance == 0) return this.positionsX[id] == x && this.positionsY[id] == y;
+		double dx = this.positionsX[id] - x;
+		double dy = this.positionsY[id] - y;
+		return dx * dx + dy * dy <= this.tolerance * this.tolerance;
+	}
+
+	protected static int hash(long key) {
+		// The keys of exact positions have most of their entropy in the high bits, all bits have to be mixed
+		long h = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return (int) (h ^ (h >>> 33));
+	}
+
+	protected int findSlot(long key) {
+		int mask = this.cellKeys.length - 1;
+		for (int slot = hash(key) & mask; this.cellStamps[slot] == this.stamp; slot = (slot + 1) & mask) {
+			if (this.cellKeys[slot] == key) return slot;
+		}
+		return -1;
+	}
+
+	protected int findOrCreateSlot(long key) {
+		if ((this.cellCount + 1) * 2 > this.cellKeys.length) growCells();
+		int mask = this.cellKeys.length - 1;
+		int slot = hash(key) & mask;
+		for (; this.cellStamps[slot] == this.stamp; slot = (slot + 1) & mask) {
+			if (this.cellKeys[slot] == key) return slot;
+		}
+		this.cellStamps[slot] = this.stamp;
+		this.cellKeys[slot] = key;
+		this.cellHeads[slot] = -1;
+		this.cellCount++;
+		return slot;
+	}
+
+	protected void growCells() {
+		long[] oldKeys = this.cellKeys;
+		int[] oldHeads = this.cellHeads;
+		int[] oldStamps = this.cellStamps;
+		int oldStamp = this.stamp;
+		this.cellKeys = new long[oldKeys.length * 2];
+		this.cellHeads = new int[oldKeys.length * 2];
+		this.cellStamps = new int[oldKeys.length * 2];
+		this.stamp = 1;
+		int mask = this.cellKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldStamps[i] != oldStamp) continue;
+			int slot = hash(oldKeys[i]) & mask;
+			while (this.cellStamps[slot] == this.stamp) slot = (slot + 1) & mask;
+			this.cellStamps[slot] = this.stamp;
+			this.cellKeys[slot] = oldKeys[i];
+			this.cellHeads[slot] = oldHeads[i];
+		}
+	}
+
+	protected long cell(double value) {
+		return (long) Math.floor(value / this.tolerance);
+	}
+
+	protected long cellKey(double x, double y) {
+		if (this.tolerance == 0) {
+			// Adding 0 turns -0.0 into 0.0, both are equal positions
+			return Double.doubleToLongBits(x + 0.0) * 31 + Double.doubleToLongBits(y + 0.0);
+		}
+		return cellKey(cell(x), cell(y));
+	}
+
+	protected static long cellKey(long cellX, long cellY) {
+		return cellX * 0x9E3779B97F4A7C15L + cellY;
+	}
+
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	public double getX(int id) {
+		return positionsX[id];
+	}
+
+	public double getY(int id) {
+		return positionsY[id];
+	}
+
+	public int size() {
+		return size;
+	}
+
+}
@@ -54,6 +54,84 @@ public class Vec2d implements IVector<Double> {
 		return new Vec2d(x - v2.x, y - v2.y);
 	}
 	
+	public Vec2d mul(double scale, Vec2d out) {
+		out.x = x * scale;
+		out.y = y * scale;
+		return out;
+	}
+	
+	public Vec2d div(double scale, Vec2d out) {
+		out.x = x / scale;
+		out.y = y / scale;
+		return out;
+	}
+	
+	public Vec2d add(Vec2d v2, Vec2d out) {
+		out.x = x + v2.x;
+		out.y = y + v2.y;
+		return out;
+	}
+	
+	public Vec2d sub(Vec2d v2, Vec2d out) {
+		out.x = x - v2.x;
+		out.y = y - v2.y;
+		return out;
+	}
+	
+	public Vec2d set(double x, double y) {
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+	
+	public Vec2d set(Vec2d v) {
+		this.x = v.x;
+		this.y = v.y;
+		return this;
+	}
+	
+	public Vec2d mulLocal(Vec2d v2) {
+		this.x *= v2.x;
+		this.y *= v2.y;
+		return this;
+	}
+	
+	public Vec2d mulLocal(double scale) {
+		this.x *= scale;
+		this.y *= scale;
+		return this;
+	}
+	
+	public Vec2d divLocal(Vec2d v2) {
+		this.x /= v2.x;
+		this.y /= v2.y;
+		return this;
+	}
+	
+	public Vec2d divLocal(double scale) {
+		this.x /= scale;
+		this.y /= scale;
+		return this;
+	}
+	
+	public Vec2d addLocal(Vec2d v2) {
+		this.x += v2.x;
+		this.y += v2.y;
+		return this;
+	}
+	
+	public Vec2d addLocal(double x, double y) {
+		this.x += x;
+		this.y += y;
+		return this;
+	}
+	
+	public Vec2d subLocal(Vec2d v2) {
+		this.x -= v2.x;
+		this.y -= v2.y;
+		return this;
+	}
+	
 	public double dot(Vec2d v2) {
 		return x * v2.x + y * v2.y;
 	}
@@ -77,6 +155,10 @@ public class Vec2d implements IVector<Double> {
 		
 	}
 	
+	public Vec2d forceByAngle(double angle, Vec2d out) {
+		return out.set(Math.sin(angle) * x, Math.cos(angle) * y);
+	}
+	
 	public double summ() {
 		return Math.abs(x) + Math.abs(y);
 	}
@@ -99,9 +181,23 @@ public class Vec2d implements IVector<Double> {
 		return this.div(magnitude);
 	}
 
+	public Vec2d normalize(Vec2d out) {
+		double magnitude = Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
+		return this.div(magnitude, out);
+	}
+	
+	public Vec2d normalizeLocal() {
+		return normalize(this);
+	}
+
 	public Vec2d noramlVec(Vec2d target) {
 		Vec2d velocity = target.sub(this);
 		return velocity.div(velocity.summ());
 	}
 	
+	public Vec2d noramlVec(Vec2d target, Vec2d out) {
+		target.sub(this, out);
+		return out.divLocal(out.summ());
+	}
+	
 }
@@ -0,0 +1,164 @@
+package jnet.physic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import jnet.physic.SoftBody.Constrain;
+import jnet.physic.SoftBody.Particle;
+import jnet.util.Vec2d;
+
+/**
+ * Compares the Constrains found by the CollisionGrid with a brute-force search over all Constrains
+ * @author M_Marvin
+ *
+ */
+public class CollisionGridTest {
+
+	protected static final int BODY_COUNT = 6;
+	protected static final int PARTICLE_COUNT = 40;
+	protected static final int CONSTRAIN_COUNT = 60;
+
+	@Test
+	public void gridFindsTheSameContactsAsBruteForce() {
+		PhysicSolver solver = new PhysicSolver(new PhysicWorld());
+		for (long seed = 0; seed < 20; seed++) {
+			List<SoftBody> bodys = randomBodys(new Random(seed), 8);
+			CollisionGrid grid = buildGrid(bodys, 10);
+			int contacts = 0;
+			for (SoftBody body : bodys) {
+				for (Particle particle : body.getParticles()) {
+					Set<Constrain> expected = bruteForceContacts(solver, bodys, particle);
+					assertEquals(expected, gridContacts(solver, grid, particle), "Seed " + seed);
+					contacts += expected.size();
+				}
+			}
+			assertTrue(contacts > 0, "Seed " + seed + " has no contacts");
+		}
+	}
+
+	@Test
+	public void paddedGridFindsContactsAfterTheParticlesMoved() {
+		PhysicSolver solver = new PhysicSolver(new PhysicWorld());
+		for (long seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			List<SoftBody> bodys = randomBodys(random, 8);
+			CollisionGrid grid = buildGrid(bodys, 10);
+			// Move the Particles like the iterations of a step do, not further than their own motion
+			for (SoftBody body : bodys) {
+				for (Particle particle : body.getParticles()) {
+					double motion = Math.max(Math.abs(particle.getX() - particle.getLastX()), Math.abs(particle.getY() - particle.getLastY()));
+					particle.move((random.nextDouble() * 2 - 1) * motion, (random.nextDouble() * 2 - 1) * motion);
+				}
+			}
+			for (SoftBody body : bodys) {
+				for (Particle particle : body.getParticles()) {
+					Set<Constrain> expected = bruteForceContacts(solver, bodys, particle);
+					assertTrue(gridContacts(solver, grid, particle).containsAll(expected), "Seed " + seed);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void queryReportsEveryConstrainOnce() {
+		List<SoftBody> bodys = randomBodys(new Random(42), 30);
+		CollisionGrid grid = buildGrid(bodys, 3);
+		CollisionGrid.Candidates candidates = new CollisionGrid.Candidates();
+		int count = grid.query(-1000, -1000, 1000, 1000, candidates);
+		Set<Constrain> found = Collections.newSetFromMap(new IdentityHashMap<Constrain, Boolean>());
+		for (int i = 0; i < count; i++) {
+			Constrain constrain = candidates.getConstrain(i);
+			assertTrue(found.add(constrain));
+			assertTrue(candidates.getBody(i).getConstrains().get(candidates.getIndex(i)) == constrain);
+		}
+		assertEquals(BODY_COUNT * CONSTRAIN_COUNT, found.size());
+	}
+
+	@Test
+	public void nonFinitePositionsAreSkipped() {
+		SoftBody body = new SoftBody();
+		Constrain finite = new Constrain(new Particle(new Vec2d(0, 0)), new Particle(new Vec2d(10, 10)));
+		body.addConstrain(finite);
+		body.addConstrain(new Constrain(new Particle(new Vec2d(0, 0)), new Particle(new Vec2d(Double.POSITIVE_INFINITY, 0))));
+		body.addConstrain(new Constrain(new Particle(new Vec2d(Double.NaN, 0)), new Particle(new Vec2d(5, 5))));
+		CollisionGrid grid = buildGrid(List.of(body), 10);
+		CollisionGrid.Candidates candidates = new CollisionGrid.Candidates();
+		assertEquals(1, grid.query(-1000, -1000, 1000, 1000, candidates));
+		assertTrue(candidates.getConstrain(0) == finite);
+		assertEquals(0, grid.query(Double.NEGATIVE_INFINITY, 0, 0, Double.NaN, candidates));
+	}
+
+	/**
+	 * Creates SoftBodys with random Constrains between random Particles, the Particles move up to the given distance per axis
+	 */
+	protected static List<SoftBody> randomBodys(Random random, double motion) {
+		List<SoftBody> bodys = new ArrayList<SoftBody>();
+		for (int i = 0; i < BODY_COUNT; i++) {
+			Particle[] particles = new Particle[PARTICLE_COUNT];
+			for (int i2 = 0; i2 < PARTICLE_COUNT; i2++) {
+				particles[i2] = new Particle(new Vec2d(random.nextDouble() * 100, random.nextDouble() * 100));
+				particles[i2].setLastPos(particles[i2].getX() + (random.nextDouble() * 2 - 1) * motion, particles[i2].getY() + (random.nextDouble() * 2 - 1) * motion);
+			}
+			SoftBody body = new SoftBody();
+			for (int i2 = 0; i2 < CONSTRAIN_COUNT; i2++) {
+				int a = random.nextInt(PARTICLE_COUNT);
+				int b = (a + 1 + random.nextInt(PARTICLE_COUNT - 1)) % PARTICLE_COUNT;
+				body.addConstrain(new Constrain(particles[a], particles[b]));
+			}
+			bodys.add(body);
+		}
+		return bodys;
+	}
+
+	/**
+	 * Updates the padded bounds, like the PhysicSolver does before it rebuilds the grid
+	 */
+	protected static CollisionGrid buildGrid(List<SoftBody> bodys, double cellSize) {
+		for (SoftBody body : bodys) {
+			ParticleStorage storage = body.getStorage();
+			body.resetBounds();
+			for (int index = 0; index < storage.size; index++) {
+				if (storage.particles[index] != null) body.expandBounds(storage, index);
+			}
+			body.padBounds();
+		}
+		CollisionGrid grid = new CollisionGrid(cellSize);
+		grid.rebuild(bodys);
+		return grid;
+	}
+
+	protected static Set<Constrain> bruteForceContacts(PhysicSolver solver, List<SoftBody> bodys, Particle particle) {
+		Set<Constrain> contacts = Collections.newSetFromMap(new IdentityHashMap<Constrain, Boolean>());
+		for (SoftBody body : bodys) {
+			for (Constrain constrain : body.getConstrains()) {
+				if (isContact(solver, particle, constrain)) contacts.add(constrain);
+			}
+		}
+		return contacts;
+	}
+
+	protected static Set<Constrain> gridContacts(PhysicSolver solver, CollisionGrid grid, Particle particle) {
+		Set<Constrain> contacts = Collections.newSetFromMap(new IdentityHashMap<Constrain, Boolean>());
+		CollisionGrid.Candidates candidates = new CollisionGrid.Candidates();
+		int count = grid.query(Math.min(particle.getX(), particle.getLastX()), Math.min(particle.getY(), particle.getLastY()), Math.max(particle.getX(), particle.getLastX()), Math.max(particle.getY(), particle.getLastY()), candidates);
+		for (int i = 0; i < count; i++) {
+			if (isContact(solver, particle, candidates.getConstrain(i))) contacts.add(candidates.getConstrain(i));
+		}
+		return contacts;
+	}
+
+	protected static boolean isContact(PhysicSolver solver, Particle particle, Constrain constrain) {
+		if (constrain.pointA == particle || constrain.pointB == particle) return false;
+		return solver.checkContact(particle, constrain).isCollision();
+	}
+
+}
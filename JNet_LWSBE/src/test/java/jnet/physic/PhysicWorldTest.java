@@ -0,0 +1,82 @@
+package jnet.physic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jnet.JNet;
+import jnet.physic.SoftBody.Constrain;
+
+/**
+ * Tests adding and removing SoftBodys and Joints, also during a simulation-step
+ * @author M_Marvin
+ *
+ */
+public class PhysicWorldTest {
+
+	@Test
+	public void removingASoftBodyRemovesItsJoints() {
+		PhysicWorld world = TestScenes.fallingBodys(4);
+		List<SoftBody> bodys = world.getSoftBodys();
+		SoftBody body = bodys.get(3);
+		assertEquals(1, body.getJoints().size());
+		Constrain joint = body.getJoints().get(0);
+		assertTrue(world.removeSoftBody(body));
+		assertNull(joint.world);
+		assertEquals(1, world.getJoints().size());
+		assertTrue(body.getJoints().isEmpty());
+	}
+
+	@Test
+	public void addingASoftBodyAgainCancelsItsRemoval() {
+		PhysicWorld world = TestScenes.fallingBodys(4);
+		SoftBody body = world.getSoftBodys().get(1);
+		int handle = body.getHandle();
+		world.lock();
+		assertTrue(world.removeSoftBody(body));
+		assertEquals(handle, world.addSoftBody(body));
+		world.unlock();
+		assertSame(body, world.getSoftBody(handle));
+		assertSame(world, body.getWorld());
+		assertEquals(2, world.getJoints().size());
+	}
+
+	@Test
+	public void addingAJointAgainCancelsItsRemoval() {
+		PhysicWorld world = TestScenes.fallingBodys(4);
+		Constrain joint = world.getJoints().get(0);
+		int handle = joint.getHandle();
+		world.lock();
+		assertTrue(world.removeJoint(joint));
+		assertEquals(handle, world.addJoint(joint));
+		world.unlock();
+		assertSame(joint, world.getJoint(handle));
+	}
+
+	@Test
+	public void brokenListsOnlyKeepTheLastStep() {
+		PhysicWorld world = TestScenes.fallingBodys(4);
+		PhysicSolver solver = JNet.setupSolver(world);
+		SoftBody body = world.getSoftBodys().get(2);
+		Constrain constrain = body.getConstrains().get(0);
+		Constrain joint = world.getJoints().get(0);
+		// Sleeping SoftBodys are compacted too
+		body.setSleeping(true);
+		constrain.broken = true;
+		joint.broken = true;
+		solver.solve(0.1F);
+		assertEquals(List.of(constrain), body.getBrokenConstrains());
+		assertEquals(List.of(joint), world.getBrokenJoints());
+		assertFalse(body.getConstrains().contains(constrain));
+		solver.solve(0.1F);
+		assertTrue(body.getBrokenConstrains().isEmpty());
+		assertTrue(world.getBrokenJoints().isEmpty());
+	}
+
+}
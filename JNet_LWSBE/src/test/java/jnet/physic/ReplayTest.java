@@ -0,0 +1,97 @@
+package jnet.physic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jnet.JNet;
+import jnet.physic.SoftBody.Constrain;
+import jnet.physic.SoftBody.Particle;
+import jnet.shapefactory.Shape;
+import jnet.util.Vec2d;
+
+/**
+ * Records simulations with the ReplayRecorder and checks that the ReplayPlayer reproduces them bit for bit
+ * @author M_Marvin
+ *
+ */
+public class ReplayTest {
+
+	protected static final int STEPS = 150;
+
+	/**
+	 * Records a simulation with changes of the forces, SoftBodys and settings between the steps
+	 * @param world The PhysicWorld to simulate
+	 * @return The data of the replay
+	 */
+	protected static byte[] record(PhysicWorld world) throws IOException {
+		PhysicSolver solver = JNet.setupSolver(world);
+		for (int i = 0; i < 10; i++) solver.solve(0.1F);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Shape shape = JNet.buildShape().addShapeRectangleCross(0, 0, 100, 100).build();
+		try (ReplayRecorder recorder = new ReplayRecorder(solver, Channels.newChannel(output))) {
+			SoftBody added = null;
+			for (int i = 0; i < STEPS; i++) {
+				if (i % 7 == 0) {
+					List<Constrain> constrains = world.getSoftBodys().get(1 + i % (world.getSoftBodys().size() - 1)).getConstrains();
+					constrains.get(i % constrains.size()).pointA.addAcceleration(200, 0);
+				}
+				if (i == 30) world.setGlobalForce(new Vec2d(1, -12));
+				if (i == 50) {
+					added = shape.build();
+					for (Particle particle : added.getParticles()) particle.setPos(particle.getX() + 50, particle.getY() + 1200);
+					recorder.addSoftBody(added);
+				}
+				if (i == 70) solver.setItterationCount(12);
+				if (i == 90) recorder.removeSoftBody(world.getSoftBodys().get(5));
+				if (i == 110) solver.setWarmStartFactor(0.5F);
+				// Fixed and variable steps
+				if (i % 2 == 0) {
+					solver.solve(0.1F);
+				} else {
+					solver.step(0.23);
+				}
+			}
+		}
+		return output.toByteArray();
+	}
+
+	@Test
+	public void replayReproducesTheSimulationBitForBit() throws IOException {
+		PhysicWorld world = TestScenes.fallingBodys(10);
+		byte[] replay = record(world);
+		ReplayPlayer player = new ReplayPlayer(ByteBuffer.wrap(replay));
+		long steps = player.playToEnd();
+		assertEquals(steps, player.getStepCount());
+		TestScenes.assertSameState(world, player.getWorld());
+	}
+
+	@Test
+	public void replayCanBePlayedInParts() throws IOException {
+		byte[] replay = record(TestScenes.fallingBodys(6));
+		ReplayPlayer whole = new ReplayPlayer(ByteBuffer.wrap(replay));
+		ReplayPlayer parts = new ReplayPlayer(ByteBuffer.wrap(replay));
+		long steps = whole.playToEnd();
+		long played = 0;
+		while (parts.step()) played++;
+		assertEquals(steps, played);
+		assertEquals(0, parts.play(10));
+		TestScenes.assertSameState(whole.getWorld(), parts.getWorld());
+	}
+
+	@Test
+	public void truncatedReplayPlaysUntilTheLastCompleteStep() throws IOException {
+		byte[] replay = record(TestScenes.fallingBodys(6));
+		long steps = new ReplayPlayer(ByteBuffer.wrap(replay)).playToEnd();
+		ReplayPlayer truncated = new ReplayPlayer(ByteBuffer.wrap(Arrays.copyOf(replay, replay.length - 3)));
+		assertEquals(steps - 1, truncated.playToEnd());
+	}
+
+}
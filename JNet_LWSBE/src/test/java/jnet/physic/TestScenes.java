@@ -0,0 +1,85 @@
+package jnet.physic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import jnet.JNet;
+import jnet.physic.SoftBody.Constrain;
+import jnet.physic.SoftBody.Particle;
+import jnet.shapefactory.Material;
+import jnet.shapefactory.Shape;
+import jnet.util.Vec2d;
+
+/**
+ * Scenes and state comparisons shared by the tests of the physic package
+ * @author M_Marvin
+ *
+ */
+public class TestScenes {
+
+	/**
+	 * Creates a world with a floor, a stack of SoftBodys that fall on it and Joints between some of them
+	 * @param count The number of falling SoftBodys, at least 4
+	 * @return The new PhysicWorld
+	 */
+	public static PhysicWorld fallingBodys(int count) {
+		PhysicWorld world = JNet.setupWorld(new Vec2d(0, -10));
+		Shape floor = JNet.buildShape().addShapeRectangleCross(-2000, -400, 4000, -380).build();
+		floor.changeMaterial(new Material(0.9F, -1F, -1F, 100000F));
+		world.addSoftBody(floor.build());
+		Shape shape = JNet.buildShape().addShapeRectangleCross(-300, -300, -200, -200).addShapeRectangleCross(-300, -200, -200, -100).addTriangle(-300, -100, -200, -100, -250, -20).build();
+		for (int i = 0; i < count; i++) {
+			SoftBody body = shape.build();
+			for (Particle particle : body.getParticles()) particle.setPos(particle.getX() + (i % 5) * 250, particle.getY() + (i / 5) * 300 + 100);
+			world.addSoftBody(body);
+		}
+		List<SoftBody> bodys = world.getSoftBodys();
+		world.addJoint(new Constrain(bodys.get(1).getParticles().get(0), bodys.get(2).getParticles().get(0)));
+		world.addJoint(new Constrain(new Particle(new Vec2d(100, 500)), bodys.get(3).getParticles().get(2)));
+		return world;
+	}
+
+	/**
+	 * Checks that the Particles, Constrains and Joints of both worlds are bit for bit the same
+	 */
+	public static void assertSameState(PhysicWorld expected, PhysicWorld actual) {
+		List<SoftBody> expectedBodys = expected.getSoftBodys();
+		List<SoftBody> actualBodys = actual.getSoftBodys();
+		assertEquals(expectedBodys.size(), actualBodys.size());
+		for (int i = 0; i < expectedBodys.size(); i++) {
+			SoftBody expectedBody = expectedBodys.get(i);
+			SoftBody actualBody = actualBodys.get(i);
+			assertEquals(expectedBody.isSleeping(), actualBody.isSleeping(), "Sleeping of SoftBody " + i);
+			assertEquals(expectedBody.getParticles().size(), actualBody.getParticles().size(), "Particles of SoftBody " + i);
+			for (int i2 = 0; i2 < expectedBody.getParticles().size(); i2++) {
+				assertSameParticle(expectedBody.getParticles().get(i2), actualBody.getParticles().get(i2), "Particle " + i2 + " of SoftBody " + i);
+			}
+			assertEquals(expectedBody.getConstrains().size(), actualBody.getConstrains().size(), "Constrains of SoftBody " + i);
+			for (int i2 = 0; i2 < expectedBody.getConstrains().size(); i2++) {
+				assertSameConstrain(expectedBody.getConstrains().get(i2), actualBody.getConstrains().get(i2), "Constrain " + i2 + " of SoftBody " + i);
+			}
+		}
+		assertEquals(expected.getJoints().size(), actual.getJoints().size());
+		for (int i = 0; i < expected.getJoints().size(); i++) {
+			assertSameConstrain(expected.getJoints().get(i), actual.getJoints().get(i), "Joint " + i);
+			assertSameParticle(expected.getJoints().get(i).pointA, actual.getJoints().get(i).pointA, "Joint " + i);
+			assertSameParticle(expected.getJoints().get(i).pointB, actual.getJoints().get(i).pointB, "Joint " + i);
+		}
+	}
+
+	public static void assertSameParticle(Particle expected, Particle actual, String message) {
+		assertEquals(expected.getX(), actual.getX(), message);
+		assertEquals(expected.getY(), actual.getY(), message);
+		assertEquals(expected.getLastX(), actual.getLastX(), message);
+		assertEquals(expected.getLastY(), actual.getLastY(), message);
+		assertEquals(expected.getMass(), actual.getMass(), message);
+	}
+
+	public static void assertSameConstrain(Constrain expected, Constrain actual, String message) {
+		assertEquals(expected.length, actual.length, message);
+		assertEquals(expected.originalLength, actual.originalLength, message);
+		assertEquals(expected.broken, actual.broken, message);
+	}
+
+}
@@ -0,0 +1,77 @@
+package jnet.physic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import jnet.JNet;
+
+/**
+ * Saves PhysicWorlds with the WorldFile and checks that the restored worlds continue exactly like the original ones
+ * @author M_Marvin
+ *
+ */
+public class WorldFileTest {
+
+	@Test
+	public void restoredWorldContinuesBitForBit() {
+		PhysicWorld world = TestScenes.fallingBodys(10);
+		PhysicSolver solver = JNet.setupSolver(world);
+		// The warm start fills the ContactCaches, they are part of the file
+		solver.setWarmStartFactor(0.5F);
+		for (int i = 0; i < 100; i++) solver.solve(0.1F);
+		int cachedContacts = 0;
+		for (SoftBody body : world.getSoftBodys()) cachedContacts += body.getContactCache().size();
+		assertTrue(cachedContacts > 0);
+
+		PhysicWorld restored = WorldFile.read(WorldFile.toBuffer(world));
+		TestScenes.assertSameState(world, restored);
+
+		PhysicSolver restoredSolver = JNet.setupSolver(restored);
+		restoredSolver.setWarmStartFactor(0.5F);
+		for (int i = 0; i < 50; i++) {
+			solver.solve(0.1F);
+			restoredSolver.solve(0.1F);
+		}
+		TestScenes.assertSameState(world, restored);
+	}
+
+	@Test
+	public void fileRoundTripKeepsTheWorld() throws IOException {
+		PhysicWorld world = TestScenes.fallingBodys(6);
+		PhysicSolver solver = JNet.setupSolver(world);
+		for (int i = 0; i < 40; i++) solver.solve(0.1F);
+		Path path = Files.createTempFile("world", ".jnwd");
+		try {
+			WorldFile.save(world, path);
+			TestScenes.assertSameState(world, WorldFile.load(path));
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void bufferIsReused() {
+		PhysicWorld world = TestScenes.fallingBodys(4);
+		ByteBuffer buffer = WorldFile.toBuffer(world);
+		ByteBuffer reused = WorldFile.toBuffer(world, ByteBuffer.allocate(buffer.capacity() * 2));
+		assertEquals(buffer.remaining(), reused.remaining());
+		assertEquals(buffer, reused);
+	}
+
+	@Test
+	public void truncatedFileIsRejected() {
+		ByteBuffer buffer = WorldFile.toBuffer(TestScenes.fallingBodys(4));
+		buffer.limit(buffer.limit() - 7);
+		RuntimeException exception = assertThrows(RuntimeException.class, () -> WorldFile.read(buffer));
+		assertTrue(exception.getCause() instanceof IllegalArgumentException);
+	}
+
+}
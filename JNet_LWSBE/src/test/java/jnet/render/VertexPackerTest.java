@@ -0,0 +1,116 @@
+package jnet.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jnet.JNet;
+import jnet.physic.PhysicWorld;
+import jnet.physic.SoftBody;
+import jnet.physic.SoftBody.Constrain;
+import jnet.physic.SoftBody.Particle;
+import jnet.physic.WorldSnapshot;
+import jnet.util.Vec2d;
+
+/**
+ * Tests the packed layout of the VertexPacker (x, y, 0 per vertex), without OpenGL
+ * @author M_Marvin
+ *
+ */
+public class VertexPackerTest {
+
+	@Test
+	public void putPacksThreeFloatsPerVertex() {
+		VertexPacker packer = new VertexPacker();
+		packer.put(1.5, -2.5);
+		packer.put(3, 4);
+		assertEquals(6, packer.size());
+		assertEquals(2, packer.getVertexCount());
+		float[] vertices = packer.getVertices();
+		assertEquals(1.5F, vertices[0]);
+		assertEquals(-2.5F, vertices[1]);
+		assertEquals(0F, vertices[2]);
+		assertEquals(3F, vertices[3]);
+		assertEquals(4F, vertices[4]);
+		assertEquals(0F, vertices[5]);
+	}
+
+	@Test
+	public void arrayGrowsAndIsKeptByClear() {
+		VertexPacker packer = new VertexPacker();
+		int count = VertexPacker.INITIAL_CAPACITY;
+		for (int i = 0; i < count; i++) packer.put(i, -i);
+		assertEquals(count * 3, packer.size());
+		float[] vertices = packer.getVertices();
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, vertices[i * 3]);
+			assertEquals(-i, vertices[i * 3 + 1]);
+			assertEquals(0F, vertices[i * 3 + 2]);
+		}
+		packer.clear();
+		assertEquals(0, packer.size());
+		packer.put(7, 8);
+		assertSame(vertices, packer.getVertices());
+		assertEquals(7F, vertices[0]);
+		assertEquals(3, packer.size());
+	}
+
+	@Test
+	public void particlesAreInterpolated() {
+		Particle particle = new Particle(new Vec2d(0, 0));
+		particle.move(10, 20);
+		VertexPacker packer = new VertexPacker();
+		packer.put(particle, 0.5);
+		packer.put(particle, 1);
+		float[] vertices = packer.getVertices();
+		assertEquals(5F, vertices[0]);
+		assertEquals(10F, vertices[1]);
+		assertEquals(10F, vertices[3]);
+		assertEquals(20F, vertices[4]);
+	}
+
+	@Test
+	public void brokenConstrainsAreSkipped() {
+		Particle a = new Particle(new Vec2d(0, 0));
+		Particle b = new Particle(new Vec2d(1, 0));
+		Particle c = new Particle(new Vec2d(2, 0));
+		Constrain kept = new Constrain(a, b);
+		Constrain broken = new Constrain(b, c);
+		broken.broken = true;
+		VertexPacker packer = new VertexPacker();
+		packer.packConstrains(List.of(broken, kept), 1);
+		assertEquals(2, packer.getVertexCount());
+		assertEquals(0F, packer.getVertices()[0]);
+		assertEquals(1F, packer.getVertices()[3]);
+	}
+
+	@Test
+	public void snapshotPacksLikeTheSoftBodys() {
+		PhysicWorld world = JNet.setupWorld(new Vec2d(0, -10));
+		SoftBody body = JNet.buildShape().addShapeRectangleCross(0, 0, 10, 10).build().build();
+		world.addSoftBody(body);
+		WorldSnapshot snapshot = new WorldSnapshot();
+		snapshot.capture(world, 0, 1);
+
+		VertexPacker fromBody = new VertexPacker();
+		VertexPacker fromSnapshot = new VertexPacker();
+		fromBody.packParticles(body.getParticles(), 1);
+		fromSnapshot.packParticles(snapshot, 1);
+		assertPacked(fromBody, fromSnapshot);
+
+		fromBody.clear();
+		fromSnapshot.clear();
+		fromBody.packConstrains(body.getConstrains(), 1);
+		fromSnapshot.packConstrains(snapshot, 1);
+		assertPacked(fromBody, fromSnapshot);
+	}
+
+	protected static void assertPacked(VertexPacker expected, VertexPacker actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) assertEquals(expected.getVertices()[i], actual.getVertices()[i]);
+	}
+
+}
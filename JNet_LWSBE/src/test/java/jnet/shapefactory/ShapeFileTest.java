@@ -0,0 +1,113 @@
+package jnet.shapefactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jnet.JNet;
+import jnet.physic.SoftBody;
+import jnet.physic.SoftBody.Particle;
+import jnet.shapefactory.Shape.ConstrainDefinition;
+import jnet.shapefactory.Shape.ParticleDefinition;
+
+/**
+ * Writes Shapes with the ShapeFile and reads them again
+ * @author M_Marvin
+ *
+ */
+public class ShapeFileTest {
+
+	protected static Shape testShape() {
+		Shape shape = JNet.buildShape().addShapeRectangleCross(-30, -20, 10, 20).addTriangle(-30, 20, 10, 20, -10, 50).build();
+		shape.getConstrains().get(0).changeMaterial(JNet.DEFAULT_MATERIAL_METAL);
+		return shape;
+	}
+
+	@Test
+	public void bufferRoundTripKeepsTheShape() {
+		Shape shape = testShape();
+		ByteBuffer buffer = ShapeFile.toBuffer(shape);
+		int length = buffer.remaining();
+		Shape read = ShapeFile.readShape(buffer);
+		assertEquals(length, buffer.position());
+		assertShapeEquals(shape, read);
+	}
+
+	@Test
+	public void fileRoundTripKeepsTheShape() throws IOException {
+		Shape shape = testShape();
+		Path path = Files.createTempFile("shape", ".jnsh");
+		try {
+			ShapeFile.write(shape, path);
+			assertShapeEquals(shape, ShapeFile.loadShape(path));
+			ShapeFile.write(ShapeFile.loadTemplate(path), path);
+			assertShapeEquals(shape, ShapeFile.loadShape(path));
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void templateBuildsTheSameSoftBody() {
+		Shape shape = testShape();
+		SoftBody expected = shape.build();
+		SoftBody read = ShapeFile.readTemplate(ShapeFile.toBuffer(shape)).build();
+		List<Particle> particles = read.getParticles();
+		assertEquals(expected.getParticles().size(), particles.size());
+		for (int i = 0; i < particles.size(); i++) {
+			assertEquals(expected.getParticles().get(i).getPos(), particles.get(i).getPos());
+			assertEquals(expected.getParticles().get(i).getMass(), particles.get(i).getMass());
+		}
+		assertEquals(expected.getConstrains().size(), read.getConstrains().size());
+		for (int i = 0; i < read.getConstrains().size(); i++) {
+			assertEquals(expected.getConstrains().get(i).length, read.getConstrains().get(i).length);
+			assertEquals(expected.getConstrains().get(i).stiffness, read.getConstrains().get(i).stiffness);
+		}
+	}
+
+	@Test
+	public void invalidConstrainIndexIsRejected() {
+		Shape shape = testShape();
+		int particleCount = shape.getParticles().size();
+		ByteBuffer buffer = ShapeFile.toBuffer(shape).order(ByteOrder.LITTLE_ENDIAN);
+		// The first index of the first Constrain follows the positions and masses of the Particles
+		buffer.putInt(ShapeFile.HEADER_SIZE + particleCount * ShapeFile.PARTICLE_SIZE, particleCount);
+		RuntimeException exception = assertThrows(RuntimeException.class, () -> ShapeFile.readTemplate(buffer));
+		assertTrue(exception.getCause() instanceof IllegalArgumentException);
+	}
+
+	@Test
+	public void wrongMagicIsRejected() {
+		ByteBuffer buffer = ShapeFile.toBuffer(testShape()).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(0, 0);
+		RuntimeException exception = assertThrows(RuntimeException.class, () -> ShapeFile.readShape(buffer));
+		assertTrue(exception.getCause() instanceof IllegalArgumentException);
+	}
+
+	protected static void assertShapeEquals(Shape expected, Shape actual) {
+		List<ParticleDefinition> particles = actual.getParticles();
+		assertEquals(expected.getParticles().size(), particles.size());
+		for (int i = 0; i < particles.size(); i++) {
+			assertEquals(expected.getParticles().get(i), particles.get(i));
+		}
+		List<ConstrainDefinition> constrains = actual.getConstrains();
+		assertEquals(expected.getConstrains().size(), constrains.size());
+		for (int i = 0; i < constrains.size(); i++) {
+			assertEquals(expected.getConstrains().get(i), constrains.get(i));
+			// The ends have to be the definitions of the list, not only equal ones
+			assertSame(particles.get(expected.getParticles().indexOf(expected.getConstrains().get(i).pointA)), constrains.get(i).pointA);
+			assertSame(particles.get(expected.getParticles().indexOf(expected.getConstrains().get(i).pointB)), constrains.get(i).pointB);
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package jnet.physic;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The SIMD implementation of the ISegmentKernel, tests multiple segments at once using the Vector API.
+ * <strong>Requires the jdk.incubator.vector module</strong> (--add-modules jdk.incubator.vector), it is compiled in its own source set and jar (classifier vector), use JNet.setupSegmentKernel() to get this kernel only if the module is available.
+ * The remaining segments that do not fill a whole vector are tested by the ScalarSegmentKernel, both calculate exactly the same values.
+ * @author M_Marvin
+ *
+ */
+public class VectorSegmentKernel implements ISegmentKernel {
+	
+	protected static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	@Override
+	public int intersect(double pathAX, double pathAY, double pathBX, double pathBY, SegmentBatch batch) {
+		
+		double pathDX = pathBX - pathAX;
+		double pathDY = pathBY - pathAY;
+		int bound = SPECIES.loopBound(batch.size);
+		int hitCount = 0;
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			
+			DoubleVector ax = DoubleVector.fromArray(SPECIES, batch.ax, i);
+			DoubleVector ay = DoubleVector.fromArray(SPECIES, batch.ay, i);
+			DoubleVector segmentDX = DoubleVector.fromArray(SPECIES, batch.bx, i).sub(ax);
+			DoubleVector segmentDY = DoubleVector.fromArray(SPECIES, batch.by, i).sub(ay);
+			
+			// Phase 1 check: Vector (infinity line) intersectioncheck
+			DoubleVector denom = segmentDX.mul(pathDY).sub(segmentDY.mul(pathDX));
+			
+			// Phase 2 check: Line intersection check
+			DoubleVector offsetX = ax.sub(pathAX);
+			DoubleVector offsetY = ay.sub(pathAY);
+			DoubleVector ua = offsetY.mul(pathDX).sub(offsetX.mul(pathDY)).div(denom);
+			DoubleVector ub = segmentDX.mul(offsetY).sub(segmentDY.mul(offsetX)).div(denom);
+			ua.intoArray(batch.ua, i);
+			ub.intoArray(batch.ub, i);
+			VectorMask<Double> hit = denom.abs().compare(VectorOperators.GE, ScalarSegmentKernel.PARALLEL_EPSILON)
+					.and(ua.compare(VectorOperators.GE, 0)).and(ua.compare(VectorOperators.LE, 1))
+					.and(ub.compare(VectorOperators.GE, 0)).and(ub.compare(VectorOperators.LE, 1));
+			
+			// Write the hits in the order of the segments
+			for (long lanes = hit.toLong(); lanes != 0; lanes &= lanes - 1) {
+				batch.hits[hitCount++] = i + Long.numberOfTrailingZeros(lanes);
+			}
+			
+		}
+		batch.hitCount = ScalarSegmentKernel.intersect(pathAX, pathAY, pathBX, pathBY, batch, i, hitCount);
+		return batch.hitCount;
+		
+	}
+	
+}